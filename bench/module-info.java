@@ -0,0 +1,8 @@
+/**
+ * Benchmarks and differential checks of twentyfourpoints.core. Nothing here is used by the engine itself.
+ * @version 2.0
+ */
+module twentyfourpoints.bench {
+    requires twentyfourpoints.core;
+    requires jdk.management; //Benchmark measures the memory each thread allocates
+}
@@ -0,0 +1,154 @@
+package twentyfourpoints.bench;
+
+import twentyfourpoints.CompiledExpression;
+import twentyfourpoints.Expression;
+import twentyfourpoints.ExpressionBatch;
+import twentyfourpoints.IntStack;
+import twentyfourpoints.Rules;
+import twentyfourpoints.Solver;
+import twentyfourpoints.StackException;
+
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+
+/**
+ * Checks that ExpressionBatch gives exactly the results of Expression.evaluate(), then compares how fast
+ * the two evaluate the same expressions. The corpus is every solution of every hand, random expressions
+ * with numbers from 0 to 20 (so some divide by zero and some overflow), and random strings of digits,
+ * operators and parentheses (so some have too few operands, leftover parentheses or numbers too large).
+ *
+ *     java -cp out twentyfourpoints.bench.BatchCheck [random expressions] [seed]
+ *
+ * Prints the number of mismatches, which must be 0, and exits with status 1 if there are any.
+ * @version 2.0
+ */
+public class BatchCheck {
+
+    private static final String SYMBOLS = "0123456789()+-*/";
+    private static final char[] OPERATORS = {'+', '-', '*', '/'};
+
+    public static void main(String[] args) {
+        int randomCount = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        SplittableRandom random = new SplittableRandom(args.length > 1 ? Long.parseLong(args[1]) : 24);
+
+        ArrayList<String> corpus = new ArrayList<>();
+        Solver solver = new Solver();
+        for (int a = 1; a <= Rules.HIGHEST_VALUE; ++a) {
+            for (int b = a; b <= Rules.HIGHEST_VALUE; ++b) {
+                for (int c = b; c <= Rules.HIGHEST_VALUE; ++c) {
+                    for (int d = c; d <= Rules.HIGHEST_VALUE; ++d) {
+                        corpus.addAll(solver.solve(a, b, c, d));
+                    }
+                }
+            }
+        }
+        int solutions = corpus.size();
+        for (int i = 0; i < randomCount; ++i) {
+            corpus.add(random.nextBoolean() ? randomExpression(random, 1 + random.nextInt(8)) : randomString(random));
+        }
+
+        ExpressionBatch batch = new ExpressionBatch();
+        CompiledExpression[] programs = new CompiledExpression[corpus.size()];
+        for (int i = 0; i < programs.length; ++i) {
+            programs[i] = new Expression(corpus.get(i)).compile();
+            batch.add(programs[i]);
+        }
+        int[] results = new int[batch.size()];
+        byte[] statuses = new byte[batch.size()];
+        batch.evaluate(results, statuses);
+
+        int mismatches = 0;
+        int[] statusCounts = new int[4];
+        for (int i = 0; i < programs.length; ++i) {
+            byte expectedStatus = ExpressionBatch.OK;
+            int expected = 0;
+            try {
+                expected = new Expression(corpus.get(i)).evaluate();
+            } catch (ArithmeticException err) {
+                expectedStatus = ExpressionBatch.ARITHMETIC_ERROR;
+            } catch (StackException err) {
+                expectedStatus = ExpressionBatch.STACK_ERROR;
+            } catch (NumberFormatException err) {
+                expectedStatus = ExpressionBatch.NUMBER_ERROR;
+            }
+            ++statusCounts[expectedStatus];
+            if (statuses[i] != expectedStatus || results[i] != expected) {
+                if (++mismatches <= 10) {
+                    System.out.printf("Mismatch for %s: expected %d (status %d), got %d (status %d)%n",
+                            corpus.get(i), expected, expectedStatus, results[i], statuses[i]);
+                }
+            }
+        }
+        System.out.printf("%d expressions (%d solutions, %d random) in %d shapes: %d ok, %d division by zero,"
+                        + " %d stack errors, %d number errors%n", programs.length, solutions, randomCount,
+                batch.getGroupCount(), statusCounts[0], statusCounts[1], statusCounts[2], statusCounts[3]);
+        System.out.println("Mismatches: " + mismatches);
+
+        //Compare throughput on the solutions alone, the workload the batch is meant for
+        ExpressionBatch solutionBatch = new ExpressionBatch();
+        for (int i = 0; i < solutions; ++i) {
+            solutionBatch.add(programs[i]);
+        }
+        IntStack stack = new IntStack();
+        long sink = 0;
+        for (int round = 0; round < 2; ++round) { //The first round warms up the JIT
+            long start = System.nanoTime();
+            int repeats = 200;
+            for (int r = 0; r < repeats; ++r) {
+                for (int i = 0; i < solutions; ++i) {
+                    try {
+                        sink += programs[i].evaluate(stack);
+                    } catch (ArithmeticException err) {
+                        ++sink;
+                    }
+                }
+            }
+            double single = (System.nanoTime() - start) / (double) repeats / solutions;
+            start = System.nanoTime();
+            for (int r = 0; r < repeats; ++r) {
+                solutionBatch.evaluate(results, statuses);
+                sink += results[r % solutions];
+            }
+            double batched = (System.nanoTime() - start) / (double) repeats / solutions;
+            if (round == 1) {
+                System.out.printf("One at a time: %.1f ns per expression, batched: %.1f ns per expression (%.1fx)%n",
+                        single, batched, single / batched);
+            }
+        }
+        if (sink == 42) {
+            System.out.println(); //Keeps the results in use
+        }
+        if (mismatches > 0) {
+            System.exit(1);
+        }
+    }//End main()
+
+    /**
+     * @return A well formed expression with random numbers and operators, bracketed at random.
+     */
+    private static String randomExpression(SplittableRandom random, int numbers) {
+        if (numbers == 1) {
+            return Integer.toString(random.nextInt(21));
+        }
+        int left = 1 + random.nextInt(numbers - 1);
+        String expression = randomExpression(random, left) + OPERATORS[random.nextInt(OPERATORS.length)]
+                + randomExpression(random, numbers - left);
+        return random.nextInt(3) == 0 ? "(" + expression + ")" : expression;
+    }
+
+    /**
+     * @return Random symbols, with the occasional run of digits too long for an int.
+     */
+    private static String randomString(SplittableRandom random) {
+        StringBuilder expression = new StringBuilder();
+        int length = random.nextInt(16);
+        for (int i = 0; i < length; ++i) {
+            if (random.nextInt(40) == 0) {
+                expression.append("98765432109");
+            } else {
+                expression.append(SYMBOLS.charAt(random.nextInt(SYMBOLS.length())));
+            }
+        }
+        return expression.toString();
+    }
+}
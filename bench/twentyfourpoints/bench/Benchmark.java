@@ -0,0 +1,209 @@
+package twentyfourpoints.bench;
+
+import twentyfourpoints.CompiledExpression;
+import twentyfourpoints.Expression;
+import twentyfourpoints.GenericStack;
+import twentyfourpoints.IntStack;
+import twentyfourpoints.RationalStack;
+import twentyfourpoints.Rules;
+import twentyfourpoints.Solver;
+import twentyfourpoints.Tokenizer;
+import twentyfourpoints.Verifier;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Measures the throughput, average time and allocation rate of parsing, evaluating, checking numbers and
+ * solving, so every optimization can be compared against a baseline. Runs without any libraries or the
+ * JavaFX runtime, only needing the twentyfourpoints classes on the class path:
+ *
+ *     java -cp out twentyfourpoints.bench.Benchmark [name filter] [seconds per iteration]
+ *
+ * Each benchmark cycles through a corpus of inputs: a solution to every solvable hand,
+ * the four values of every hand, and randomly generated malformed expressions.
+ * Allocation is read from the HotSpot per-thread allocation counter and reported as bytes per operation.
+ * @version 2.0
+ */
+public class Benchmark {
+
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASURED_ITERATIONS = 5;
+
+    /**
+     * A single benchmarked operation. The index selects the input from the corpus and the result
+     * is consumed so the JIT can not remove the work.
+     */
+    private interface Operation {
+        long run(int index) throws Exception;
+    }
+
+    private static volatile long sink; //Results are written here so they are not optimized away
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    public static void main(String[] args) throws Exception {
+        String filter = args.length > 0 ? args[0] : "";
+        double seconds = args.length > 1 ? Double.parseDouble(args[1]) : 1.0;
+
+        //Build the corpora
+        Solver solver = new Solver();
+        ArrayList<int[]> hands = new ArrayList<>();
+        ArrayList<String> solutions = new ArrayList<>();
+        ArrayList<int[]> solvedHands = new ArrayList<>();
+        for (int a = 1; a <= Rules.HIGHEST_VALUE; ++a) {
+            for (int b = a; b <= Rules.HIGHEST_VALUE; ++b) {
+                for (int c = b; c <= Rules.HIGHEST_VALUE; ++c) {
+                    for (int d = c; d <= Rules.HIGHEST_VALUE; ++d) {
+                        int[] hand = {a, b, c, d};
+                        hands.add(hand);
+                        String solution = solver.findSolution(hand);
+                        if (solution != null) {
+                            solutions.add(solution);
+                            solvedHands.add(hand);
+                        }
+                    }
+                }
+            }
+        }
+        String[] valid = solutions.toArray(new String[0]);
+        int[][] validHands = solvedHands.toArray(new int[0][]);
+        int[][] allHands = hands.toArray(new int[0][]);
+        String[] malformed = malformedCorpus(4096, new Random(24));
+        CompiledExpression[] compiled = new CompiledExpression[valid.length];
+        for (int i = 0; i < valid.length; ++i) {
+            compiled[i] = new Expression(valid[i]).compile();
+        }
+        RationalStack rationalScratch = new RationalStack();
+        GenericStack<Integer> genericStack = new GenericStack<>();
+        IntStack intStack = new IntStack();
+        Tokenizer tokenizer = new Tokenizer();
+        Verifier verifier = new Verifier();
+
+        System.out.println("Corpus: " + valid.length + " solutions, " + allHands.length + " hands, "
+                + malformed.length + " malformed expressions");
+        System.out.printf("%-28s %14s %12s %10s%n", "Benchmark", "ops/s", "ns/op", "B/op");
+
+        run("infixToPostfix", filter, seconds, valid.length,
+                i -> new Expression(valid[i]).infixToPostfix().size());
+        //Some solutions need fractions and divide by zero once division drops the remainder
+        run("evaluate", filter, seconds, valid.length,
+                i -> evaluateQuietly(valid[i]));
+        run("evaluateRational", filter, seconds, valid.length,
+                i -> new Expression(valid[i]).evaluateRational());
+        run("evaluateCompiledRational", filter, seconds, compiled.length,
+                i -> compiled[i].evaluateRational(rationalScratch));
+        run("evaluateMalformed", filter, seconds, malformed.length,
+                i -> evaluateQuietly(malformed[i]));
+        run("genericStackPushPop", filter, seconds, 1, i -> {
+            for (int n = 0; n < Rules.HAND_SIZE; ++n) {
+                genericStack.push(n);
+            }
+            long total = 0;
+            while (!genericStack.isEmpty()) {
+                total += genericStack.pop();
+            }
+            return total;
+        });
+        run("intStackPushPop", filter, seconds, 1, i -> {
+            for (int n = 0; n < Rules.HAND_SIZE; ++n) {
+                intStack.push(n);
+            }
+            long total = 0;
+            while (!intStack.isEmpty()) {
+                total += intStack.pop();
+            }
+            return total;
+        });
+        run("checkNumbers", filter, seconds, valid.length,
+                i -> Rules.numbersMatch(validHands[i], Rules.splitNumbers(valid[i])) ? 1 : 0);
+        run("tokenizerParse", filter, seconds, valid.length,
+                i -> tokenizer.parse(valid[i], validHands[i]) == null ? 1 : 0);
+        //Whole-hand validation runs the same checks as the GUI does when Calculate is pressed
+        run("validateHand", filter, seconds, valid.length,
+                i -> verifier.verify(validHands[i], valid[i]).ordinal());
+        run("validateMalformed", filter, seconds, malformed.length,
+                i -> verifier.verify(allHands[i % allHands.length], malformed[i]).ordinal());
+        run("solverIsSolvable", filter, seconds, allHands.length,
+                i -> solver.isSolvable(allHands[i]) ? 1 : 0);
+        run("solverSolveAll", filter, seconds, allHands.length,
+                i -> solver.solve(allHands[i]).size());
+    }//End main()
+
+    private static long evaluateQuietly(String expression) {
+        try {
+            return new Expression(expression).evaluate();
+        } catch (RuntimeException err) {
+            return -1;
+        }
+    }
+
+    /**
+     * Builds expressions out of random digits, operators and parentheses, most of which are not valid.
+     */
+    private static String[] malformedCorpus(int size, Random random) {
+        String symbols = "0123456789+-*/() x";
+        String[] corpus = new String[size];
+        for (int i = 0; i < size; ++i) {
+            StringBuilder builder = new StringBuilder();
+            int length = 1 + random.nextInt(16);
+            for (int n = 0; n < length; ++n) {
+                builder.append(symbols.charAt(random.nextInt(symbols.length())));
+            }
+            corpus[i] = builder.toString();
+        }
+        return corpus;
+    }
+
+    /**
+     * Warms up and then measures an operation, printing its throughput, average time and allocation.
+     * @param name The name of the benchmark.
+     * @param filter Only benchmarks with a name containing this are run.
+     * @param seconds The length of each iteration.
+     * @param corpusSize The number of different inputs, the index passed to the operation cycles through them.
+     * @param operation The operation being measured.
+     */
+    private static void run(String name, String filter, double seconds, int corpusSize, Operation operation)
+            throws Exception {
+        if (!name.contains(filter)) {
+            return;
+        }
+        long threadId = Thread.currentThread().getId();
+        long duration = (long) (seconds * 1_000_000_000L);
+        long operations = 0;
+        long elapsed = 0;
+        long allocated = 0;
+
+        for (int iteration = 0; iteration < WARMUP_ITERATIONS + MEASURED_ITERATIONS; ++iteration) {
+            long count = 0;
+            long result = 0;
+            int index = 0;
+            long bytesBefore = THREADS.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            long end = start + duration;
+            long now;
+            //Check the clock every 1024 operations so reading it does not dominate short operations
+            do {
+                for (int n = 0; n < 1024; ++n) {
+                    result += operation.run(index);
+                    if (++index == corpusSize) {
+                        index = 0;
+                    }
+                }
+                count += 1024;
+                now = System.nanoTime();
+            } while (now < end);
+            long bytesAfter = THREADS.getThreadAllocatedBytes(threadId);
+            sink += result;
+            if (iteration >= WARMUP_ITERATIONS) {
+                operations += count;
+                elapsed += now - start;
+                allocated += bytesAfter - bytesBefore;
+            }
+        }
+        System.out.printf("%-28s %14.0f %12.1f %10.1f%n", name,
+                operations * 1e9 / elapsed, (double) elapsed / operations, (double) allocated / operations);
+    }//End run()
+}
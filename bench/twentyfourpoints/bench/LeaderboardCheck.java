@@ -0,0 +1,119 @@
+package twentyfourpoints.bench;
+
+import twentyfourpoints.Leaderboard;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Checks that Leaderboard.top() reads the ranking as it was at one moment while many threads score players,
+ * and measures how fast scoring and reading are while the other goes on.
+ *
+ * Writer threads score random players with random times as fast as they can. One reader keeps reading the
+ * whole leaderboard, which every change matters to, and another keeps reading the top ten. A read is wrong
+ * if it is not in order, lists a player twice, misses a player (for the whole leaderboard) or shows a player
+ * with fewer hands solved than an earlier read did. Once the writers are done, every player's total must be
+ * the sum of what the writers scored for them.
+ *
+ *     java -cp core.jar:bench.jar twentyfourpoints.bench.LeaderboardCheck [writers] [solves per writer] [players]
+ *
+ * Prints the number of wrong reads and totals, which must be 0, and exits with status 1 if there are any.
+ * @version 2.0
+ */
+public class LeaderboardCheck {
+
+    private static final int TOP = 10;
+
+    public static void main(String[] args) throws InterruptedException {
+        int writers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int solves = args.length > 1 ? Integer.parseInt(args[1]) : 500_000;
+        int players = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+
+        Leaderboard leaderboard = new Leaderboard();
+        for (int player = 0; player < players; ++player) {
+            leaderboard.join(player);
+        }
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicLong wrong = new AtomicLong();
+        AtomicLong wholeReads = new AtomicLong();
+        AtomicLong topReads = new AtomicLong();
+        Thread whole = new Thread(() -> read(leaderboard, players + 1, players, done, wrong, wholeReads));
+        Thread top = new Thread(() -> read(leaderboard, TOP, players, done, wrong, topReads));
+        whole.start();
+        top.start();
+
+        long[][] solved = new long[writers][players];
+        long[][] times = new long[writers][players];
+        Thread[] threads = new Thread[writers];
+        long start = System.nanoTime();
+        for (int w = 0; w < writers; ++w) {
+            int writer = w;
+            threads[w] = new Thread(() -> {
+                SplittableRandom random = new SplittableRandom(writer);
+                for (int i = 0; i < solves; ++i) {
+                    int player = random.nextInt(players);
+                    long time = random.nextInt(1000);
+                    leaderboard.recordSolve(player, time);
+                    ++solved[writer][player];
+                    times[writer][player] += time;
+                }
+            });
+            threads[w].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        done.set(true);
+        whole.join();
+        top.join();
+
+        long wrongTotals = 0;
+        for (int player = 0; player < players; ++player) {
+            long playerSolved = 0;
+            long playerTime = 0;
+            for (int w = 0; w < writers; ++w) {
+                playerSolved += solved[w][player];
+                playerTime += times[w][player];
+            }
+            Leaderboard.Standing standing = leaderboard.get(player);
+            if (standing.getSolved() != playerSolved || standing.getTime() != playerTime) {
+                ++wrongTotals;
+            }
+        }
+        System.out.printf("%d writers: %.0f solves/s, %d reads of all %d players and %d reads of the top %d%n",
+                writers, writers * solves / seconds, wholeReads.get(), players, topReads.get(), TOP);
+        System.out.println("Wrong reads: " + wrong.get() + ", wrong totals: " + wrongTotals);
+        if (wrong.get() > 0 || wrongTotals > 0) {
+            System.exit(1);
+        }
+    }//End main()
+
+    /**
+     * Keeps reading the top of the leaderboard until the writers are done, counting wrong reads.
+     */
+    private static void read(Leaderboard leaderboard, int count, int players, AtomicBoolean done, AtomicLong wrong,
+            AtomicLong reads) {
+        int[] seen = new int[players]; //Hands solved by each player in the last read showing the player
+        boolean[] listed = new boolean[players];
+        while (!done.get()) {
+            List<Leaderboard.Standing> standings = leaderboard.top(count);
+            boolean right = standings.size() == Math.min(count, players);
+            Arrays.fill(listed, false);
+            for (int i = 0; i < standings.size() && right; ++i) {
+                Leaderboard.Standing standing = standings.get(i);
+                right = !listed[standing.getPlayer()] && standing.getSolved() >= seen[standing.getPlayer()]
+                        && (i == 0 || standings.get(i - 1).compareTo(standing) < 0);
+                listed[standing.getPlayer()] = true;
+                seen[standing.getPlayer()] = standing.getSolved();
+            }
+            if (!right) {
+                wrong.incrementAndGet();
+            }
+            reads.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package twentyfourpoints.bench;
+
+import twentyfourpoints.Limits;
+import twentyfourpoints.RecordVerifier;
+import twentyfourpoints.Tokenizer;
+import twentyfourpoints.Verdict;
+import twentyfourpoints.VerdictCache;
+import twentyfourpoints.Verifier;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Checks that holding expressions to Limits only ever changes a verdict into LIMIT_EXCEEDED, at the first
+ * character over a limit, and changes nothing about expressions within the limits.
+ *
+ * Each random input is read by a Tokenizer without limits and by Tokenizers with Limits.DEFAULT and with
+ * limits small enough to be broken often. A simple scan of the text finds where, if anywhere, it first goes
+ * over each set of limits: past the length, a number with too many digits, parentheses open too deep or too
+ * many operators. If it goes over one before any character that is not allowed, the limited tokenizer must
+ * give LIMIT_EXCEEDED at that character and name that limit. Otherwise it must give the same verdict and
+ * error position as the tokenizer without limits. A Verifier with the small limits and a cache is held to the
+ * same rule, checking each expression twice so the second verdict comes from the cache when it was stored.
+ * Last, a record of ten million digits is checked to see that it is rejected without being read.
+ *
+ *     java -cp core.jar:bench.jar twentyfourpoints.bench.LimitsCheck [inputs] [seed]
+ *
+ * Prints the number of mismatches, which must be 0, and exits with status 1 if there are any.
+ * @version 2.0
+ */
+public class LimitsCheck {
+
+    private static final String SYMBOLS = "0123456789()+-*/";
+    private static final Limits SMALL = new Limits(24, 3, 2, 5);
+
+    /**
+     * Where a text first goes over its limits.
+     */
+    private static final class Break {
+        private final Limits.Limit limit;
+        private final int position;
+
+        Break(Limits.Limit limit, int position) {
+            this.limit = limit;
+            this.position = position;
+        }
+    }
+
+    private static int mismatches;
+
+    public static void main(String[] args) {
+        int inputs = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        SplittableRandom random = new SplittableRandom(args.length > 1 ? Long.parseLong(args[1]) : 20);
+
+        Tokenizer unlimited = new Tokenizer();
+        Tokenizer defaults = new Tokenizer();
+        defaults.setLimits(Limits.DEFAULT);
+        Tokenizer small = new Tokenizer();
+        small.setLimits(SMALL);
+        VerdictCache cache = new VerdictCache(1 << 20);
+        Verifier cached = new Verifier(cache, 24);
+        cached.setLimits(SMALL);
+        Verifier uncached = new Verifier(null, 24);
+
+        int rejected = 0;
+        for (int i = 0; i < inputs; ++i) {
+            String expression = randomInput(random);
+            int[] hand = random.nextInt(4) == 0 ? null : new int[] {1 + random.nextInt(13), 1 + random.nextInt(13),
+                    1 + random.nextInt(13), 1 + random.nextInt(13)};
+            Verdict expected = unlimited.parse(expression, hand);
+            int expectedPosition = unlimited.getErrorPosition();
+            compare(defaults, Limits.DEFAULT, expression, hand, expected, expectedPosition);
+            if (compare(small, SMALL, expression, hand, expected, expectedPosition)) {
+                ++rejected;
+            }
+
+            if (hand != null) {
+                Verdict truth = uncached.verify(hand, expression);
+                Break broken = firstBroken(expression, SMALL);
+                for (int time = 0; time < 2; ++time) {
+                    Verdict verdict = cached.verify(hand, expression);
+                    boolean right = broken == null
+                            ? verdict == truth && cached.getErrorPosition() == uncached.getErrorPosition()
+                            : verdict == Verdict.LIMIT_EXCEEDED && cached.getErrorPosition() == broken.position;
+                    if (!right) {
+                        report(expression, hand, "verifier with a cache", verdict + " at " + cached.getErrorPosition(),
+                                broken == null ? truth + " at " + uncached.getErrorPosition()
+                                : "LIMIT_EXCEEDED at " + broken.position);
+                    }
+                }
+            }
+        }
+
+        //A record far over the length limit must be rejected without reading or copying it all
+        StringBuilder huge = new StringBuilder("3 8 8 3,");
+        for (int i = 0; i < 10_000_000; ++i) {
+            huge.append('1');
+        }
+        byte[] record = huge.toString().getBytes(StandardCharsets.US_ASCII);
+        RecordVerifier recordVerifier = new RecordVerifier(cache);
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < 5; ++i) {
+            long start = System.nanoTime();
+            Verdict verdict = recordVerifier.verify(record, 0, record.length);
+            best = Math.min(best, System.nanoTime() - start);
+            if (verdict != Verdict.LIMIT_EXCEEDED) {
+                report("ten million digits", null, "record verifier", String.valueOf(verdict), "LIMIT_EXCEEDED");
+            }
+        }
+
+        System.out.printf("%d inputs, %d over the small limits, a 10 MB record rejected in %.1f us%n", inputs,
+                rejected, best / 1e3);
+        System.out.println("Mismatches: " + mismatches);
+        if (mismatches > 0) {
+            System.exit(1);
+        }
+    }//End main()
+
+    /**
+     * Checks the verdict of a limited tokenizer against the one without limits.
+     * @return True if the expression breaks the limits.
+     */
+    private static boolean compare(Tokenizer tokenizer, Limits limits, String expression, int[] hand,
+            Verdict expected, int expectedPosition) {
+        Verdict verdict = tokenizer.parse(expression, hand);
+        Break broken = firstBroken(expression, limits);
+        if (broken == null) {
+            if (verdict != expected || tokenizer.getErrorPosition() != expectedPosition
+                    || tokenizer.getExceededLimit() != null) {
+                report(expression, hand, limits.toString(), verdict + " at " + tokenizer.getErrorPosition(),
+                        expected + " at " + expectedPosition);
+            }
+            return false;
+        }
+        if (verdict != Verdict.LIMIT_EXCEEDED || tokenizer.getErrorPosition() != broken.position
+                || tokenizer.getExceededLimit() != broken.limit) {
+            report(expression, hand, limits.toString(), verdict + " " + tokenizer.getExceededLimit() + " at "
+                    + tokenizer.getErrorPosition(), "LIMIT_EXCEEDED " + broken.limit + " at " + broken.position);
+        }
+        return true;
+    }
+
+    /**
+     * Finds where the text first goes over the limits, reading it the simplest way.
+     * @return The limit broken and the position of the character that broke it, or null if the text stays within
+     *         the limits or has a character that is not allowed first.
+     */
+    private static Break firstBroken(String expression, Limits limits) {
+        if (expression.length() > limits.getMaxLength()) {
+            return new Break(Limits.Limit.LENGTH, limits.getMaxLength());
+        }
+        int digits = 0;
+        int open = 0;
+        int operators = 0;
+        for (int i = 0; i < expression.length(); ++i) {
+            char symbol = expression.charAt(i);
+            if (SYMBOLS.indexOf(symbol) < 0) {
+                return null;
+            }
+            digits = Character.isDigit(symbol) ? digits + 1 : 0;
+            if (digits > limits.getMaxDigits()) {
+                return new Break(Limits.Limit.DIGITS, i);
+            }
+            if (symbol == '(' && ++open > limits.getMaxDepth()) {
+                return new Break(Limits.Limit.DEPTH, i);
+            }
+            if (symbol == ')' && open > 0) {
+                --open;
+            }
+            if ("+-*/".indexOf(symbol) >= 0 && ++operators > limits.getMaxOperators()) {
+                return new Break(Limits.Limit.OPERATORS, i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Makes an input that is sometimes within the small limits and sometimes over one of them: random symbols,
+     * deep parentheses, long numbers or long sums, now and then with a character that is not allowed.
+     */
+    private static String randomInput(SplittableRandom random) {
+        StringBuilder text = new StringBuilder();
+        int length = random.nextInt(random.nextInt(8) == 0 ? 400 : 30);
+        switch (random.nextInt(4)) {
+            case 0:
+                for (int i = 0; i < length; ++i) {
+                    text.append(SYMBOLS.charAt(random.nextInt(SYMBOLS.length())));
+                }
+                break;
+            case 1:
+                int depth = random.nextInt(8);
+                for (int i = 0; i < depth; ++i) {
+                    text.append('(');
+                }
+                text.append(1 + random.nextInt(13));
+                for (int i = 0; i < depth; ++i) {
+                    text.append(random.nextBoolean() ? "+" + (1 + random.nextInt(13)) + ")" : ")");
+                }
+                break;
+            case 2:
+                text.append(1 + random.nextInt(13)).append('*');
+                for (int i = 0; i < 1 + random.nextInt(5); ++i) {
+                    text.append((char) ('1' + random.nextInt(9)));
+                }
+                break;
+            default:
+                text.append(1 + random.nextInt(13));
+                for (int i = 0; i < random.nextInt(9); ++i) {
+                    text.append("+-*/".charAt(random.nextInt(4))).append(1 + random.nextInt(13));
+                }
+                break;
+        }
+        if (random.nextInt(10) == 0 && text.length() > 0) {
+            text.insert(random.nextInt(text.length()), random.nextBoolean() ? ' ' : 'x');
+        }
+        return text.toString();
+    }
+
+    private static void report(String expression, int[] hand, String what, String actual, String expected) {
+        if (++mismatches <= 10) {
+            System.out.printf("Mismatch for '%s' with hand %s (%s): %s, expected %s%n", expression.length() > 60
+                    ? expression.substring(0, 60) + "..." : expression, Arrays.toString(hand), what, actual, expected);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package twentyfourpoints.bench;
+
+import twentyfourpoints.Solver;
+import twentyfourpoints.SubmissionLog;
+import twentyfourpoints.SubmissionReplay;
+import twentyfourpoints.Verdict;
+import twentyfourpoints.Verifier;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Checks that SubmissionLog keeps every record through rotation, reopening and a torn write, in a temporary
+ * directory with segments just big enough for the largest record, so a few thousand records fill one.
+ *
+ * Records are appended with a commit thread running, then the log is opened again and every record is read
+ * back and compared, one hand is looked up with forEachByHand() with its cards in another order, and the
+ * whole log is replayed. The last record is then torn by changing its last byte and the index of the first
+ * segment is deleted: opening the log must drop only the torn record, write the index again, find the same
+ * records for the hand and carry on appending from the right sequence number. Last, a few threads append
+ * while another keeps looking up one hand, which must never see a wrong record or fewer records than before,
+ * and every full segment must have its index once the log is closed.
+ *
+ *     java -cp core.jar:bench.jar twentyfourpoints.bench.LogCheck [records] [seed]
+ *
+ * Prints the number of failures, which must be 0, and exits with status 1 if there are any.
+ * @version 2.0
+ */
+public class LogCheck {
+
+    private static final int SEGMENT_SIZE = 70_000;
+    private static final int SEGMENT_HEADER = 16;
+    private static final int THREADS = 4;
+
+    private static int failures;
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int records = args.length > 0 ? Integer.parseInt(args[0]) : 30_000;
+        SplittableRandom random = new SplittableRandom(args.length > 1 ? Long.parseLong(args[1]) : 5);
+        Path directory = Files.createTempDirectory("logcheck");
+        try {
+            check(directory, records, random);
+            checkConcurrent(Files.createDirectory(directory.resolve("concurrent")), records);
+        } finally {
+            delete(directory);
+        }
+        System.out.println("Failures: " + failures);
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }//End main()
+
+    private static void check(Path directory, int records, SplittableRandom random) throws IOException,
+            InterruptedException {
+        List<int[]> hands = new ArrayList<>();
+        List<String> expressions = new ArrayList<>();
+        List<Verdict> verdicts = new ArrayList<>();
+        Solver solver = new Solver();
+        Verifier verifier = new Verifier();
+        try (SubmissionLog log = SubmissionLog.open(directory, SEGMENT_SIZE)) {
+            log.startCommitting(5);
+            for (int i = 0; i < records; ++i) {
+                int[] hand = new int[4];
+                for (int j = 0; j < hand.length; ++j) {
+                    hand[j] = 1 + random.nextInt(13);
+                }
+                List<String> solutions = solver.solve(hand);
+                String expression = solutions.isEmpty() || random.nextBoolean()
+                        ? hand[0] + "+" + hand[1] + "*" + hand[2] + "-" + hand[3] : solutions.get(0);
+                Verdict verdict = verifier.verify(hand, expression);
+                expect("sequence number of record " + i, i, log.append(hand, 24, expression, verdict));
+                hands.add(hand);
+                expressions.add(expression);
+                verdicts.add(verdict);
+            }
+            System.out.println(records + " records in " + log.getSegmentCount() + " segments");
+        }
+
+        int[] hand = hands.get(records / 2);
+        int[] reversed = {hand[3], hand[2], hand[1], hand[0]};
+        long forHand = hands.stream().filter(other -> sameHand(other, hand)).count();
+        try (SubmissionLog log = SubmissionLog.open(directory, SEGMENT_SIZE)) {
+            expect("records after reopening", records, log.getRecordCount());
+            long[] wrong = {0};
+            log.forEach(record -> {
+                int i = (int) record.getSequence();
+                if (!Arrays.equals(record.getValues(), hands.get(i)) || record.getTarget() != 24
+                        || !record.getExpression().toString().equals(expressions.get(i))
+                        || record.getVerdict() != verdicts.get(i)) {
+                    ++wrong[0];
+                }
+            });
+            expect("records read back wrong", 0, wrong[0]);
+            expect("records for " + Arrays.toString(hand), forHand, forHand(log, hand));
+            SubmissionReplay replay = new SubmissionReplay(2);
+            long[][] counts = replay.replay(log);
+            long changed = 0;
+            for (int old = 0; old < counts.length; ++old) {
+                for (int verdict = 0; verdict < counts[old].length; ++verdict) {
+                    changed += old != verdict ? counts[old][verdict] : 0;
+                }
+            }
+            expect("records replayed", records, replay.getRecordCount());
+            expect("verdicts changed by replay", 0, changed);
+            log.append(reversed, 24, "1+2+3+4", Verdict.INCORRECT);
+            log.append(new int[] {5, 5, 5, 1}, 24, "5*(5-1/5)", Verdict.CORRECT);
+        }
+
+        //Tear the last record and lose the first segment's index, as if the process had stopped while writing
+        Path last = null;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "segment-*.log")) {
+            for (Path path : files) {
+                last = last == null || path.compareTo(last) > 0 ? path : last;
+            }
+        }
+        try (FileChannel channel = FileChannel.open(last, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            int previous = SEGMENT_HEADER;
+            for (int position = SEGMENT_HEADER; buffer.getInt(position) != 0; position += buffer.getInt(position)) {
+                previous = position;
+            }
+            int end = previous + buffer.getInt(previous) - 1;
+            buffer.put(end, (byte) (buffer.get(end) ^ 1));
+            buffer.force();
+        }
+        Path index = directory.resolve(String.format("segment-%019d.idx", 0));
+        Files.delete(index);
+        try (SubmissionLog log = SubmissionLog.open(directory, SEGMENT_SIZE)) {
+            expect("records after a torn write", records + 1, log.getRecordCount());
+            expect("index written again", true, Files.isRegularFile(index));
+            expect("records for " + Arrays.toString(hand) + " after a torn write", forHand + 1, forHand(log, hand));
+            expect("sequence number after a torn write", records + 1,
+                    log.append(new int[] {1, 1, 1, 1}, 24, "1", Verdict.INCORRECT));
+        }
+    }//End check()
+
+    /**
+     * Appends from several threads into small segments while another thread keeps looking up one hand.
+     */
+    private static void checkConcurrent(Path directory, int records) throws IOException, InterruptedException {
+        int[] hand = {3, 8, 8, 3};
+        String answer = "8/(3-8/3)";
+        AtomicBoolean done = new AtomicBoolean();
+        AtomicLong wrong = new AtomicLong();
+        AtomicLong lookups = new AtomicLong();
+        int segments;
+        try (SubmissionLog log = SubmissionLog.open(directory, SEGMENT_SIZE)) {
+            log.startCommitting(1);
+            Thread reader = new Thread(() -> {
+                long previous = 0;
+                try {
+                    while (!done.get()) {
+                        long found = log.forEachByHand(new int[] {8, 3, 3, 8}, record -> {
+                            if (!record.getExpression().toString().equals(answer)) {
+                                wrong.incrementAndGet();
+                            }
+                        });
+                        if (found < previous) {
+                            wrong.incrementAndGet();
+                        }
+                        previous = found;
+                        lookups.incrementAndGet();
+                    }
+                } catch (IOException err) {
+                    err.printStackTrace();
+                    wrong.incrementAndGet();
+                }
+            });
+            reader.start();
+            Thread[] writers = new Thread[THREADS];
+            for (int t = 0; t < THREADS; ++t) {
+                writers[t] = new Thread(() -> {
+                    try {
+                        for (int i = 0; i < records; ++i) {
+                            long sequence = i % 3 == 0 ? log.append(hand, 24, answer, Verdict.CORRECT)
+                                    : log.append(new int[] {1, 2, 3, 4}, 24, "1*2*3*4+" + i, Verdict.INCORRECT);
+                            if (i % 5000 == 0) {
+                                log.commit(sequence);
+                            }
+                        }
+                    } catch (IOException err) {
+                        err.printStackTrace();
+                        wrong.incrementAndGet();
+                    }
+                });
+                writers[t].start();
+            }
+            for (Thread writer : writers) {
+                writer.join();
+            }
+            done.set(true);
+            reader.join();
+            segments = log.getSegmentCount();
+        }
+        expect("wrong or shrinking lookups while appending", 0, wrong.get());
+        int indexes = 0;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "segment-*.idx")) {
+            for (Path ignored : files) {
+                ++indexes;
+            }
+        }
+        expect("indexes of full segments", segments - 1, indexes);
+        try (SubmissionLog log = SubmissionLog.open(directory, SEGMENT_SIZE)) {
+            expect("records appended by " + THREADS + " threads", (long) THREADS * records, log.getRecordCount());
+            expect("records for " + Arrays.toString(hand), (long) THREADS * ((records + 2) / 3), forHand(log, hand));
+            long[] next = {0};
+            long[] outOfOrder = {0};
+            log.forEach(record -> {
+                if (record.getSequence() != next[0]++) {
+                    ++outOfOrder[0];
+                }
+            });
+            expect("records out of order", 0, outOfOrder[0]);
+        }
+        System.out.println(THREADS + " threads appended " + THREADS * records + " records into " + segments
+                + " segments during " + lookups.get() + " lookups");
+    }//End checkConcurrent()
+
+    private static long forHand(SubmissionLog log, int[] hand) throws IOException {
+        long[] wrong = {0};
+        long found = log.forEachByHand(hand, record -> {
+            if (!sameHand(record.getValues(), hand)) {
+                ++wrong[0];
+            }
+        });
+        expect("records of other hands found for " + Arrays.toString(hand), 0, wrong[0]);
+        return found;
+    }
+
+    private static boolean sameHand(int[] a, int[] b) {
+        int[] sortedA = a.clone();
+        int[] sortedB = b.clone();
+        Arrays.sort(sortedA);
+        Arrays.sort(sortedB);
+        return Arrays.equals(sortedA, sortedB);
+    }
+
+    private static void expect(String what, long expected, long actual) {
+        if (expected != actual) {
+            ++failures;
+            System.out.println("Wrong " + what + ": " + actual + ", expected " + expected);
+        }
+    }
+
+    private static void expect(String what, boolean expected, boolean actual) {
+        if (expected != actual) {
+            ++failures;
+            System.out.println("Wrong " + what + ": " + actual + ", expected " + expected);
+        }
+    }
+
+    private static void delete(Path path) throws IOException {
+        if (Files.isDirectory(path)) {
+            try (DirectoryStream<Path> files = Files.newDirectoryStream(path)) {
+                for (Path file : files) {
+                    delete(file);
+                }
+            }
+        }
+        Files.delete(path);
+    }
+}
@@ -0,0 +1,108 @@
+package twentyfourpoints.bench;
+
+import twentyfourpoints.IncrementalParser;
+import twentyfourpoints.Rational;
+import twentyfourpoints.RationalStack;
+import twentyfourpoints.Tokenizer;
+import twentyfourpoints.Verdict;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * Checks that IncrementalParser gives exactly the results of Tokenizer.parse() while an expression is edited.
+ * Each trial starts from an empty field (or a correct start to the hand) and makes random edits: characters
+ * typed at the end or in the middle, deleted, or replaced, using digits, operators, parentheses and a few
+ * characters that are not allowed. After every edit the verdict, error position and number count must match
+ * the tokenizer's, the value must match the tokenizer's program evaluated with exact fractions, and a new
+ * IncrementalParser given the whole text at once must agree on everything, so the checkpoints never go stale.
+ * A third of the trials have no hand, so the numbers used are not checked.
+ *
+ *     java -cp core.jar:bench.jar twentyfourpoints.bench.ParseCheck [trials] [seed]
+ *
+ * Prints the number of mismatches, which must be 0, and exits with status 1 if there are any.
+ * @version 2.0
+ */
+public class ParseCheck {
+
+    private static final String SYMBOLS = "0123456789()+-*/(1234)+*x 9";
+    private static final int EDITS = 40; //Edits in each trial
+
+    public static void main(String[] args) {
+        int trials = args.length > 0 ? Integer.parseInt(args[0]) : 20_000;
+        SplittableRandom random = new SplittableRandom(args.length > 1 ? Long.parseLong(args[1]) : 7);
+
+        Tokenizer tokenizer = new Tokenizer();
+        RationalStack stack = new RationalStack();
+        IncrementalParser parser = new IncrementalParser();
+        long edits = 0;
+        long rescanned = 0;
+        long length = 0;
+        int mismatches = 0;
+        for (int trial = 0; trial < trials; ++trial) {
+            int[] hand = random.nextInt(3) == 0 ? null : new int[] {1 + random.nextInt(13), 1 + random.nextInt(13),
+                    1 + random.nextInt(13), 1 + random.nextInt(13)};
+            parser.setHand(hand);
+            StringBuilder text = new StringBuilder();
+            if (hand != null && random.nextBoolean()) {
+                text.append(hand[0]).append('*').append(hand[1]).append("+(").append(hand[2]).append('-')
+                        .append(hand[3]).append(')');
+            }
+            for (int edit = 0; edit < EDITS; ++edit) {
+                edit(random, text);
+                Verdict verdict = parser.update(text);
+                Verdict expected = tokenizer.parse(text, hand);
+                ++edits;
+                rescanned += parser.getRescanned();
+                length += text.length();
+
+                boolean same = verdict == expected && parser.getErrorPosition() == tokenizer.getErrorPosition()
+                        && (verdict == Verdict.INVALID_CHARACTER || parser.getNumberCount() == tokenizer.getNumberCount());
+                if (same && expected == null) {
+                    long value;
+                    try {
+                        value = tokenizer.evaluateRational(stack);
+                    } catch (ArithmeticException err) {
+                        value = 0; //The parser shows no value after a division by zero
+                    }
+                    same = value == parser.getValue();
+                }
+                if (same) {
+                    IncrementalParser fresh = new IncrementalParser();
+                    fresh.setHand(hand);
+                    fresh.update(text);
+                    same = fresh.getVerdict() == verdict && fresh.getValue() == parser.getValue()
+                            && fresh.getOpenParentheses() == parser.getOpenParentheses()
+                            && fresh.getCardsUsed() == parser.getCardsUsed();
+                }
+                if (!same && ++mismatches <= 10) {
+                    System.out.printf("Mismatch for '%s' with hand %s: %s at %d, expected %s at %d, value %s%n", text,
+                            Arrays.toString(hand), verdict, parser.getErrorPosition(), expected,
+                            tokenizer.getErrorPosition(), parser.getValue() == 0 ? "none" : Rational.toString(parser.getValue()));
+                }
+            }
+        }
+        System.out.printf("%d edits in %d trials, %.1f characters read per edit for an average length of %.1f%n",
+                edits, trials, rescanned / (double) edits, length / (double) edits);
+        System.out.println("Mismatches: " + mismatches);
+        if (mismatches > 0) {
+            System.exit(1);
+        }
+    }//End main()
+
+    /**
+     * Makes one random edit: mostly typing, sometimes deleting or replacing, usually at the end of the text.
+     */
+    private static void edit(SplittableRandom random, StringBuilder text) {
+        int kind = random.nextInt(10);
+        if (kind < 6 || text.length() == 0) {
+            int position = random.nextInt(4) == 0 ? random.nextInt(text.length() + 1) : text.length();
+            text.insert(position, SYMBOLS.charAt(random.nextInt(SYMBOLS.length())));
+        } else if (kind < 9) {
+            int position = random.nextInt(4) == 0 ? random.nextInt(text.length()) : text.length() - 1;
+            text.deleteCharAt(position);
+        } else {
+            text.setCharAt(random.nextInt(text.length()), SYMBOLS.charAt(random.nextInt(SYMBOLS.length())));
+        }
+    }
+}
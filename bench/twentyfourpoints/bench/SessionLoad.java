@@ -0,0 +1,155 @@
+package twentyfourpoints.bench;
+
+import twentyfourpoints.Dealer;
+import twentyfourpoints.SessionServer;
+import twentyfourpoints.SolvabilityTable;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Plays many games against a SessionServer at once and reports how long each reply took. Every connection
+ * repeatedly deals a hand and answers it with the solution from the solvability table, so both the dealer
+ * and the full answer check are measured. Without a host and port a server is started in the same process,
+ * listening on the loopback address.
+ *
+ *     java -cp out twentyfourpoints.bench.SessionLoad [connections] [rounds] [host port]
+ *
+ * Each connection opens a socket on both ends, so the limit on open files must allow twice the connections.
+ * @version 2.0
+ */
+public class SessionLoad {
+
+    /**
+     * One simulated player.
+     */
+    private static class Player {
+        private final SocketChannel channel;
+        private final ByteBuffer input = ByteBuffer.allocate(512);
+        private int rounds; //Rounds finished
+        private long sentAt;
+
+        Player(SocketChannel channel) {
+            this.channel = channel;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+        SolvabilityTable table = SolvabilityTable.load(SolvabilityTable.DEFAULT_PATH);
+
+        SessionServer server = null;
+        InetSocketAddress address;
+        if (args.length > 3) {
+            address = new InetSocketAddress(args[2], Integer.parseInt(args[3]));
+        } else {
+            server = new SessionServer(Runtime.getRuntime().availableProcessors(), table, null);
+            server.start(new InetSocketAddress("127.0.0.1", 0));
+            address = new InetSocketAddress("127.0.0.1", server.getPort());
+        }
+
+        Selector selector = Selector.open();
+        long connectStart = System.nanoTime();
+        for (int i = 0; i < connections; ++i) {
+            SocketChannel channel = SocketChannel.open(address);
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ, new Player(channel));
+        }
+        System.out.printf("Connected %d players in %.0f ms%n", connections, (System.nanoTime() - connectStart) / 1e6);
+
+        long[] latencies = new long[connections * rounds * 2];
+        int measured = 0;
+        int finished = 0;
+        int correct = 0;
+        int[] cards = new int[4];
+        int[] values = new int[4];
+        long start = System.nanoTime();
+        for (SelectionKey key : selector.keys()) {
+            send((Player) key.attachment(), "DEAL\n");
+        }
+        while (finished < connections) {
+            selector.select();
+            Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+            while (keys.hasNext()) {
+                SelectionKey key = keys.next();
+                keys.remove();
+                Player player = (Player) key.attachment();
+                if (player.channel.read(player.input) < 0) {
+                    throw new IOException("The server closed a connection");
+                }
+                String line;
+                while ((line = nextLine(player.input)) != null) {
+                    latencies[measured++] = System.nanoTime() - player.sentAt;
+                    if (line.startsWith("HAND ")) {
+                        String[] numbers = line.substring(5).split(" ");
+                        for (int i = 0; i < cards.length; ++i) {
+                            cards[i] = Integer.parseInt(numbers[i]);
+                        }
+                        Dealer.values(cards, values);
+                        send(player, "ANSWER " + table.getSolution(values) + "\n");
+                    } else if (line.startsWith("VERDICT ")) {
+                        correct += line.equals("VERDICT CORRECT") ? 1 : 0;
+                        if (++player.rounds == rounds) {
+                            key.cancel();
+                            player.channel.close();
+                            ++finished;
+                        } else {
+                            send(player, "DEAL\n");
+                        }
+                    } else {
+                        throw new IOException("Unexpected reply: " + line);
+                    }
+                }
+            }
+        }//End while loop
+        long elapsed = System.nanoTime() - start;
+        selector.close();
+        if (server != null) {
+            server.close();
+        }
+
+        Arrays.sort(latencies, 0, measured);
+        System.out.printf("%d requests in %.0f ms, %.0f requests/s, %d of %d answers correct%n",
+                measured, elapsed / 1e6, measured / (elapsed / 1e9), correct, connections * rounds);
+        System.out.printf("Latency (us): p50 %.0f, p99 %.0f, p99.9 %.0f, max %.0f%n",
+                percentile(latencies, measured, 0.50), percentile(latencies, measured, 0.99),
+                percentile(latencies, measured, 0.999), latencies[measured - 1] / 1e3);
+    }//End main()
+
+    private static void send(Player player, String request) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(request.getBytes(StandardCharsets.US_ASCII));
+        player.sentAt = System.nanoTime();
+        while (buffer.hasRemaining()) {
+            player.channel.write(buffer);
+        }
+    }
+
+    /**
+     * Takes the next complete line out of the buffer.
+     * @return The line without its line break, or null if no complete line has been read yet.
+     */
+    private static String nextLine(ByteBuffer input) {
+        byte[] data = input.array();
+        for (int i = 0; i < input.position(); ++i) {
+            if (data[i] == '\n') {
+                String line = new String(data, 0, i, StandardCharsets.US_ASCII);
+                System.arraycopy(data, i + 1, data, 0, input.position() - i - 1);
+                input.position(input.position() - i - 1);
+                return line;
+            }
+        }
+        return null;
+    }
+
+    private static double percentile(long[] sorted, int count, double fraction) {
+        return sorted[Math.min(count - 1, (int) (count * fraction))] / 1e3;
+    }
+}
@@ -0,0 +1,109 @@
+package twentyfourpoints.bench;
+
+import twentyfourpoints.Check;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures the time to the first verdict: a new JVM is started to check one answer with twentyfourpoints.Check
+ * and the time is taken from starting the process to reading the verdict it prints. Each way of launching is
+ * run several times, alternating between them, and the median and fastest times are printed.
+ *
+ *  - default CDS: the headless core on the class path, with the JDK's own class data sharing archive
+ *  - no CDS:      the same with class data sharing turned off, the cost of loading every class from scratch
+ *  - AppCDS:      the same with an archive of the core's classes, if one is given (see scripts/build-core.sh)
+ *  - JavaFX:      the same with the JavaFX modules added, as the GUI's launch configuration does, if the
+ *                 JavaFX lib directory is given. This is the cost of the JavaFX runtime that every check had
+ *                 to pay when the engine was only used through the GUI, without the window itself.
+ *
+ *     java -cp core.jar:bench.jar twentyfourpoints.bench.StartupTime [runs] [archive] [JavaFX lib directory]
+ *
+ * The JVMs started are given only the jar or directory twentyfourpoints.Check was loaded from. The archive is
+ * only used if that is a jar, as with the core.jar made by the build script.
+ * @version 2.0
+ */
+public class StartupTime {
+
+    private static final String RECORD = "3 8 8 3,8/(3-8/3)";
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int runs = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        Path archive = args.length > 1 ? Paths.get(args[1]) : null;
+        Path javafx = args.length > 2 ? Paths.get(args[2]) : null;
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        //Launch with the core alone, wherever it was loaded from, so the benchmarks are not on the class path
+        String classPath;
+        try {
+            classPath = Paths.get(Check.class.getProtectionDomain().getCodeSource().getLocation().toURI()).toString();
+        } catch (URISyntaxException err) {
+            throw new IllegalStateException("Can not find where twentyfourpoints.Check was loaded from", err);
+        }
+
+        List<String> names = new ArrayList<>();
+        List<List<String>> commands = new ArrayList<>();
+        names.add("default CDS");
+        commands.add(List.of(java, "-cp", classPath, "twentyfourpoints.Check", RECORD));
+        names.add("no CDS");
+        commands.add(List.of(java, "-Xshare:off", "-cp", classPath, "twentyfourpoints.Check", RECORD));
+        if (archive != null) {
+            if (!Files.isRegularFile(archive)) {
+                System.err.println("No archive at " + archive + ", run scripts/build-core.sh first");
+                System.exit(2);
+            }
+            names.add("AppCDS");
+            commands.add(List.of(java, "-XX:SharedArchiveFile=" + archive, "-cp", classPath,
+                    "twentyfourpoints.Check", RECORD));
+        }
+        if (javafx != null) {
+            names.add("JavaFX");
+            commands.add(List.of(java, "--module-path", javafx.toString(), "--add-modules", "javafx.controls",
+                    "-cp", classPath, "twentyfourpoints.Check", RECORD));
+        }
+
+        long[][] times = new long[commands.size()][runs];
+        for (int run = -1; run < runs; ++run) { //The first round only warms up the disk cache
+            for (int i = 0; i < commands.size(); ++i) {
+                long time = timeToVerdict(commands.get(i));
+                if (run >= 0) {
+                    times[i][run] = time;
+                }
+            }
+        }
+        System.out.printf("Time to first verdict over %d runs:%n", runs);
+        for (int i = 0; i < commands.size(); ++i) {
+            Arrays.sort(times[i]);
+            System.out.printf("  %-12s median %6.1f ms, fastest %6.1f ms%n", names.get(i),
+                    times[i][runs / 2] / 1e6, times[i][0] / 1e6);
+        }
+    }//End main()
+
+    /**
+     * Starts a JVM and waits for it to print the verdict.
+     * @return Nanoseconds from starting the process to reading the verdict.
+     */
+    private static long timeToVerdict(List<String> command) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        String line;
+        try (BufferedReader output = new BufferedReader(
+                new InputStreamReader(process.getInputStream(), StandardCharsets.US_ASCII))) {
+            line = output.readLine();
+            long time = System.nanoTime() - start;
+            process.waitFor();
+            if (!"CORRECT".equals(line)) {
+                throw new IllegalStateException("Expected CORRECT from " + String.join(" ", command) + " but got " + line);
+            }
+            return time;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+/**
+ * The JavaFX GUI of the game, built on twentyfourpoints.core.
+ * @version 2.0
+ */
+module twentyfourpoints.gui {
+    requires twentyfourpoints.core;
+    requires javafx.controls;
+
+    exports twentyfourpoints.gui to javafx.graphics; //So JavaFX can start the Application
+}
@@ -0,0 +1,102 @@
+package twentyfourpoints.gui;
+
+import javafx.scene.image.Image;
+import twentyfourpoints.Rules;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Holds a decoded Image for every card so each card's PNG is only read from disk and decoded once,
+ * no matter how many times the cards are dealt. The images can be loaded in the background so the
+ * window shows up before every card has been decoded. The same Image can be shown by any number of ImageViews.
+ * @version 2.0
+ */
+public class CardImages {
+
+    private final Image[] images = new Image[Rules.DECK_SIZE + 1]; //Indexed by card number, 0 is unused
+    private final long startTime;
+    private final AtomicInteger loaded = new AtomicInteger();
+    private volatile long loadTime = -1; //Nanoseconds taken to load every image, -1 until finished
+    private Runnable onLoaded;
+
+    /**
+     * Starts loading the image of every card.
+     * @param directory The directory holding the card images, named 1.png to 52.png.
+     * @param background True to decode the images on a background thread, false to decode them before returning.
+     */
+    public CardImages(String directory, boolean background) {
+        this.startTime = System.nanoTime();
+        for (int card = 1; card <= Rules.DECK_SIZE; ++card) {
+            Image image = new Image("file:" + directory + "/" + card + ".png", background);
+            this.images[card] = image;
+            //Progress is only updated on the JavaFX thread, which is also the thread creating the images,
+            //so an image can not finish loading between this check and adding the listener.
+            if (image.getProgress() >= 1.0) {
+                this.imageLoaded();
+            } else {
+                image.progressProperty().addListener((observable, oldProgress, progress) -> {
+                    if (progress.doubleValue() >= 1.0) {
+                        this.imageLoaded();
+                    }
+                });
+            }
+        }
+    }
+
+    private void imageLoaded() {
+        if (this.loaded.incrementAndGet() == Rules.DECK_SIZE) {
+            this.loadTime = System.nanoTime() - this.startTime;
+            Runnable action = this.onLoaded;
+            if (action != null) {
+                action.run();
+            }
+        }
+    }
+
+    /**
+     * @param action Run once every image has finished loading, or straight away if they already have.
+     */
+    public void setOnLoaded(Runnable action) {
+        this.onLoaded = action;
+        if (this.isLoaded()) {
+            action.run();
+        }
+    }
+
+    /**
+     * @param card The number of the card, from 1 to 52.
+     * @return The shared image of the card.
+     */
+    public Image get(int card) {
+        return this.images[card];
+    }
+
+    /**
+     * @return True once every image has finished loading.
+     */
+    public boolean isLoaded() {
+        return this.loadTime >= 0;
+    }
+
+    /**
+     * @return The memory taken by the decoded images in bytes, assuming 4 bytes per pixel.
+     */
+    public long getDecodedBytes() {
+        long bytes = 0;
+        for (int card = 1; card <= Rules.DECK_SIZE; ++card) {
+            bytes += (long) this.images[card].getWidth() * (long) this.images[card].getHeight() * 4;
+        }
+        return bytes;
+    }
+
+    /**
+     * @return How long loading took and how much memory the images use.
+     */
+    public String getReport() {
+        if (!this.isLoaded()) {
+            return this.loaded.get() + " of " + Rules.DECK_SIZE + " card images loaded";
+        }
+        return String.format("Loaded %d card images in %.1f ms, %d KB decoded",
+                Rules.DECK_SIZE, this.loadTime / 1e6, this.getDecodedBytes() / 1024);
+    }
+}
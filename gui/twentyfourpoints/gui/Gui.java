@@ -0,0 +1,304 @@
+package twentyfourpoints.gui;
+
+import javafx.application.Application;
+import javafx.stage.Stage;
+import javafx.scene.Scene;
+import javafx.scene.image.ImageView;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.VBox;
+import javafx.scene.control.TextField;
+import javafx.geometry.Insets;
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.event.EventHandler;
+import javafx.event.ActionEvent;
+import javafx.scene.control.Alert;
+import javafx.scene.control.Alert.AlertType;
+import javafx.scene.control.ButtonType;
+import twentyfourpoints.Dealer;
+import twentyfourpoints.IncrementalParser;
+import twentyfourpoints.Metrics;
+import twentyfourpoints.Rational;
+import twentyfourpoints.Rules;
+import twentyfourpoints.SolvabilityTable;
+import twentyfourpoints.SubmissionLog;
+import twentyfourpoints.Verdict;
+import twentyfourpoints.Verifier;
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Represents the GUI of the twenty four point game. The goal of the game is to create a
+ * mathematical expression that evaluates to 24 using the values of the four cards given.
+ * The expression can consist of addition, subtraction, multiplcation, and/or division.
+ * Parentheses can also be used to change the order of operations
+ * (ex. addition before multiplication, such as (1+2)*3).
+ * The expression used should NOT contain any spaces, otherwise a warning will be issued.
+ * If the user chooses, they can change the set of cards dealt by hitting the refresh button.
+ * Numbered cards have the same value as their number, Jack is worth 11, Queen is worth 12,
+ * King is worth 13, and Ace is worth 1.
+ * Enjoy!
+ * @author Sandeep Bindra
+ * @version 2.0
+ */
+
+public class Gui extends Application {
+    //Shown in the calculation box until the user clicks on it
+    private static final String PROMPT = "Enter calculation here";
+    //Deals the cards, the four dealt are kept in 'hand'
+    private final Dealer dealer = new Dealer();
+    private final int[] hand = new int[Rules.HAND_SIZE];
+    //Used to only deal hands that can be solved, null until it is loaded or if it could not be loaded.
+    //Set by the thread loading it, so it is volatile.
+    private volatile SolvabilityTable solvable;
+    //Used to display the four cards the user will be working with.
+    private ImageView cardView1;
+    private ImageView cardView2;
+    private ImageView cardView3;
+    private ImageView cardView4;
+    //The image of every card, loaded once when the game starts
+    private CardImages cardImages;
+    //Used to take in the user's calculation based on the four cards
+    private TextField calculation;
+    //Checks the user's calculation against the cards shown
+    private final Verifier verifier = new Verifier();
+    //Checks the calculation as it is typed, only reading the part that changed
+    private final IncrementalParser liveParser = new IncrementalParser();
+    //Shows the cards used, open parentheses and value so far below the calculation
+    private Label feedback;
+    //Keeps every calculation checked, null if the log could not be opened
+    private SubmissionLog submissions;
+
+    public static void main(String[] args) {
+        launch(args);
+    }
+
+    /**
+     * Responsible for displaying the GUI and calling the appropriate handlers for when
+     * the user interacts with different components.
+     * @param primaryStage Will hold all the containers/buttons and allows them to be displayed
+     */
+    public void start(Stage primaryStage) {
+
+        calculation = new TextField(PROMPT);
+        //If the user clicks on the TextField input box, clear it if "Enter calculation here" is still present.
+        calculation.setOnMouseClicked(mouseEvent -> {
+            if(calculation.getText().equals(PROMPT)) {
+                calculation.clear();
+            }
+        });
+        //Give feedback on every keystroke, each edit only costs the tokens it changed.
+        feedback = new Label();
+        calculation.textProperty().addListener((observable, oldText, newText) -> showFeedback(newText));
+
+        //The first time the game is run every hand is solved to make the table, which takes a few seconds,
+        //so it is loaded away from the JavaFX thread and any hand is dealt until it is ready.
+        Thread tableLoader = new Thread(() -> {
+            try {
+                solvable = SolvabilityTable.load(SolvabilityTable.DEFAULT_PATH);
+            } catch (IOException err) {
+                //Without the table any hand can be dealt, even one with no solution.
+                System.err.println("Could not load the solvability table: " + err.getMessage());
+            }
+        }, "solvability table");
+        tableLoader.setDaemon(true);
+        tableLoader.start();
+        try {
+            submissions = SubmissionLog.open(SubmissionLog.DEFAULT_DIRECTORY);
+            submissions.startCommitting(1000);
+        } catch (IOException err) {
+            //The game can be played without keeping the calculations.
+            submissions = null;
+        }
+        dealHand();
+        showFeedback(calculation.getText());
+
+        /**
+         * Button used to get a new set of four cards.
+         */
+        Button refresh = new Button("Refresh Cards");
+        refresh.setOnAction(new RefreshClickHandler());
+
+        /**
+         * Button used to calculate the user's total and check if it equal to 24.
+         * Displays an alert if the user has used numbers not corresponding
+         * to the values of the four cards displayed.
+         */
+        Button calcButton = new Button("Calculate");
+        calcButton.setOnAction(new CalculationHandler());
+        HBox calculateBox = new HBox(10, calculation, calcButton);
+        calculateBox.setAlignment(Pos.CENTER);
+
+        //Represents each of the four cards to be displayed.
+        //Every card image is decoded once, in the background, and shared from then on.
+        cardImages = new CardImages("cards", true);
+        //The load time and memory used are only reported along with the other metrics.
+        if (Metrics.ENABLED) {
+            cardImages.setOnLoaded(() -> System.out.println(cardImages.getReport()));
+        }
+
+        cardView1 = new ImageView();
+        cardView2 = new ImageView();
+        cardView3 = new ImageView();
+        cardView4 = new ImageView();
+        showCards();
+
+        HBox cardsBox = new HBox(10, cardView1, cardView2, cardView3, cardView4);
+        cardsBox.setPadding(new Insets(10));
+        cardsBox.setAlignment(Pos.CENTER);
+
+        VBox vbox = new VBox(refresh, cardsBox, calculateBox, feedback);
+        vbox.setPadding(new Insets(10));
+        vbox.setAlignment(Pos.CENTER);
+
+        Scene scene = new Scene(vbox);
+
+        //Display the GUI
+        primaryStage.setTitle("24 Point Game");
+        primaryStage.setScene(scene);
+        primaryStage.show();
+    }//End start()
+
+    /**
+     * Used to select a new set of four cards whenever the "New Cards" button is clicked.
+     */
+    private class RefreshClickHandler implements EventHandler<ActionEvent> {
+        @Override
+        public void handle(ActionEvent handle) {
+
+            dealHand();
+            showCards();
+            showFeedback(calculation.getText());
+        }
+    }//End class RefreshClickHandler
+
+    /**
+     * Displays the four cards dealt using the images that have already been loaded.
+     */
+    private void showCards() {
+        cardView1.setImage(cardImages.get(hand[0]));
+        cardView2.setImage(cardImages.get(hand[1]));
+        cardView3.setImage(cardImages.get(hand[2]));
+        cardView4.setImage(cardImages.get(hand[3]));
+    }
+
+    /**
+     * Deals four new cards, only dealing hands that can be solved once the solvability table is loaded.
+     */
+    private void dealHand() {
+        SolvabilityTable table = solvable;
+        if (table != null) {
+            dealer.deal(hand, Dealer.solvableOnly(table));
+        } else {
+            dealer.deal(hand);
+        }
+        liveParser.setHand(handValues());
+    }
+
+    /**
+     * Updates the feedback below the calculation box for the text entered so far.
+     * Errors are only shown once they can no longer be fixed by typing more, such as a character that is not allowed.
+     * @param text The text currently in the calculation box
+     */
+    private void showFeedback(String text) {
+        if (text.equals(PROMPT)) {
+            feedback.setText("");
+            return;
+        }
+        Verdict verdict = liveParser.update(text);
+        StringBuilder msg = new StringBuilder();
+        msg.append("Cards used: ").append(liveParser.getCardsUsed()).append(" of ").append(hand.length);
+        if (liveParser.getOpenParentheses() > 0) {
+            msg.append("   Open parentheses: ").append(liveParser.getOpenParentheses());
+        }
+        long value = liveParser.getValue();
+        if (value != 0) {
+            msg.append("   Value: ").append(Rational.toString(value));
+        }
+        boolean misplacedNumber = verdict == Verdict.NUMBERS_MISMATCH && liveParser.getErrorPosition() >= 0;
+        if (verdict == Verdict.INVALID_CHARACTER || verdict == Verdict.NUMBER_ERROR || misplacedNumber) {
+            msg.append("   ").append(verdict.getMessage(hand.length, verifier.getTarget()))
+                    .append(" (at character ").append(liveParser.getErrorPosition() + 1).append(")");
+        }
+        feedback.setText(msg.toString());
+    }
+
+    /**
+     * @return The values of the four cards currently being displayed.
+     */
+    private int[] handValues() {
+        int[] values = new int[Rules.HAND_SIZE];
+        for (int i = 0; i < Rules.HAND_SIZE; ++i) {
+            values[i] = Rules.cardValue(hand[i]);
+        }
+        return values;
+    }
+
+    /**
+     * Evaluates the mathematical expression the user entered.
+     */
+    private class CalculationHandler implements EventHandler<ActionEvent> {
+        @Override
+        public void handle(ActionEvent handle) {
+            String expression = calculation.getText();
+            expression.trim();
+
+            //The checks themselves do not depend on the GUI so they can also be run headless.
+            int[] values = handValues();
+            Verdict verdict = verifier.verify(values, expression);
+            logSubmission(values, expression, verdict);
+            String msg = verdict.getMessage(hand.length, verifier.getTarget());
+            if (verifier.getErrorPosition() >= 0) {
+                //Point out where the problem is, counting characters from 1.
+                msg += " (at character " + (verifier.getErrorPosition() + 1) + ")";
+            }
+            Alert.AlertType alertType = verdict.isError() ? Alert.AlertType.ERROR : Alert.AlertType.INFORMATION;
+            displayAlert(msg, verdict.getTitle(), alertType);
+        }
+    }//End class CalculationHandler
+
+    /**
+     * Adds a checked calculation to the submission log, if it is open.
+     */
+    private void logSubmission(int[] values, String expression, Verdict verdict) {
+        if (submissions == null || expression.length() > SubmissionLog.MAX_EXPRESSION) {
+            return;
+        }
+        try {
+            submissions.append(values, verifier.getTarget(), expression, verdict);
+        } catch (IOException err) {
+            System.err.println("Could not log the calculation: " + err.getMessage());
+        }
+    }
+
+    /**
+     * Forces the submission log to disk when the window is closed.
+     */
+    @Override
+    public void stop() {
+        if (submissions != null) {
+            try {
+                submissions.close();
+            } catch (IOException err) {
+                System.err.println("Could not close the submission log: " + err.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Displays a custom error message using an Alert
+     * @param msg The message to be displayed within the alert
+     * @param alertType An enum from Alert.AlertType to determine what type of alert will show up
+     * @param title The title of the alert window displayed
+     */
+    private void displayAlert(String msg, String title, Alert.AlertType alertType) {
+        Alert alert = new Alert(alertType);
+        alert.setTitle(title);
+        alert.setContentText(msg);
+        Optional<ButtonType> result = alert.showAndWait();
+        if (result.isPresent() && result.get() == ButtonType.OK) {
+            alert.close();
+        }
+    }
+}
@@ -0,0 +1,24 @@
+#!/bin/sh
+# Builds the headless core (everything under src, no JavaFX) into core.jar, then trains a class data sharing
+# archive, core.jsa, by checking a few answers with twentyfourpoints.Check and archiving every class it loaded.
+# Start the JVM with -XX:SharedArchiveFile=core.jsa to load those classes from the archive instead of the jar.
+# The archive only matches the JDK and the core.jar it was made with, so run this again after changing either.
+# The benchmarks under bench are built into bench.jar, which is not needed to run the core.
+#
+#     scripts/build-core.sh
+#     java -XX:SharedArchiveFile=core.jsa -cp core.jar twentyfourpoints.Check "3 8 8 3,8/(3-8/3)"
+#     java -cp core.jar:bench.jar twentyfourpoints.bench.StartupTime 20 core.jsa [JavaFX lib directory]
+set -e
+cd "$(dirname "$0")/.."
+
+rm -rf out/core out/bench core.jar core.jsa bench.jar
+javac --release 15 -d out/core $(find src -name '*.java')
+jar --create --file core.jar -C out/core .
+javac --release 15 -p core.jar -d out/bench $(find bench -name '*.java')
+jar --create --file bench.jar -C out/bench .
+
+# Training run: a correct answer, a wrong one and errors, so the classes for every kind of verdict are loaded.
+# Check exits with 1 since not every answer is correct.
+java -XX:ArchiveClassesAtExit=core.jsa -cp core.jar twentyfourpoints.Check \
+    "3 8 8 3,8/(3-8/3)" "1 2 3 4,1+2+3-4" "1 2 3 4,(1+2)*(3+4" "1 2 3 4,1/(2-2)*3*4" "1 2 3 4,1 + 2" > /dev/null || true
+echo "Built core.jar, core.jsa and bench.jar"
@@ -0,0 +1,12 @@
+/**
+ * The game engine: parsing and checking answers, solving, dealing, and the headless tools built on them.
+ * It has no dependency on JavaFX, so it can be used from the command line, a server or a short-lived
+ * worker without loading the JavaFX runtime. The GUI is the separate module twentyfourpoints.gui and the
+ * benchmarks are twentyfourpoints.bench.
+ * @version 2.0
+ */
+module twentyfourpoints.core {
+    requires java.management; //Metrics are published through JMX
+
+    exports twentyfourpoints;
+}
@@ -0,0 +1,95 @@
+package twentyfourpoints;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Checks a file of submissions without starting the GUI. Each line of the input file is a record of the
+ * form "hand,expression" (see RecordVerifier) and the verdict for each is written to the same line of the
+ * output file. The input is read through a memory-mapped window and the output is written as it goes,
+ * so memory use does not grow with the size of the files.
+ *
+ *     java twentyfourpoints.BatchVerifier input.txt verdicts.txt [cache megabytes]
+ * @version 2.0
+ */
+public class BatchVerifier {
+
+    private final RecordReader reader;
+    private VerdictCache cache; //Null if verdicts are not cached
+
+    public BatchVerifier() {
+        this(new RecordReader());
+    }
+
+    /**
+     * @param reader Used to read the lines of the input file.
+     */
+    public BatchVerifier(RecordReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * @param cache A cache of verdicts placed in front of the checks, or null to check every record.
+     */
+    public void setCache(VerdictCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Checks every record in the input file and writes the verdicts in the same order.
+     * @param input The file of submissions.
+     * @param writer Receives the verdict of each record.
+     * @return The number of records checked.
+     */
+    public long verify(Path input, VerdictWriter writer) throws IOException {
+        RecordVerifier verifier = new RecordVerifier(this.cache);
+        return this.reader.read(input, (window, start, end) -> writer.write(verifier.verify(window, start, end)));
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2 && args.length != 3) {
+            System.err.println("Usage: java twentyfourpoints.BatchVerifier <input file> <output file> [cache megabytes]");
+            System.exit(2);
+        }
+        BatchVerifier batchVerifier = new BatchVerifier();
+        VerdictCache cache = createCache(args, 2);
+        batchVerifier.setCache(cache);
+
+        long start = System.nanoTime();
+        long records;
+        try (VerdictWriter writer = new VerdictWriter(Paths.get(args[1]))) {
+            records = batchVerifier.verify(Paths.get(args[0]), writer);
+            printSummary(writer, records, System.nanoTime() - start);
+        }
+        if (cache != null) {
+            System.out.println("Cache: " + cache);
+        }
+    }
+
+    /**
+     * Creates a cache from the size in megabytes given on the command line, if there is one.
+     * @param args The command line arguments.
+     * @param index The position of the cache size within the arguments.
+     * @return The cache, or null if no size was given or the size is 0.
+     */
+    static VerdictCache createCache(String[] args, int index) {
+        if (args.length <= index || Long.parseLong(args[index]) <= 0) {
+            return null;
+        }
+        return new VerdictCache(Long.parseLong(args[index]) * 1024 * 1024);
+    }
+
+    /**
+     * Prints how many of each verdict were given and how quickly the records were checked.
+     */
+    static void printSummary(VerdictWriter writer, long records, long nanos) {
+        System.out.printf("Checked %d records in %.3f s (%.0f records/s)%n",
+                records, nanos / 1e9, records * 1e9 / Math.max(nanos, 1));
+        for (Verdict verdict : Verdict.values()) {
+            if (writer.getCount(verdict) > 0) {
+                System.out.printf("  %-18s %d%n", verdict, writer.getCount(verdict));
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package twentyfourpoints;
+
+/**
+ * A stack of char values stored in an array that grows when it runs out of room,
+ * so values are never boxed. Calling reset() allows the same stack to be reused.
+ * @version 2.0
+ */
+public class CharStack implements PrimitiveStackInterface {
+
+    private static final int DEFAULT_CAPACITY = 8;
+
+    private char[] stack;
+    private int size; //Number of values currently on the stack
+
+    /**
+     * Create an empty stack.
+     */
+    public CharStack() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create an empty stack with room for the number of values given before it has to grow.
+     * @param capacity The starting capacity.
+     */
+    public CharStack(int capacity) {
+        this.stack = new char[Math.max(capacity, 1)];
+    }
+
+    /**
+     * @return The number of items currently stored on the stack.
+     */
+    public int getSize() {
+        return this.size;
+    }
+
+    /**
+     * Retrieves the value at the top of the stack without removing it.
+     * @return The value at the top of the stack.
+     */
+    public char peek() throws StackException {
+        if (this.size == 0) {
+            throw new StackException("Empty Stack");
+        }
+        return this.stack[this.size - 1];
+    }
+
+    /**
+     * Pushes a value onto the stack.
+     * @param value The value to be placed on the stack.
+     */
+    public void push(char value) {
+        if (this.size == this.stack.length) {
+            this.ensureCapacity(this.size * 2);
+        }
+        this.stack[this.size++] = value;
+    }
+
+    /**
+     * Removes and returns the value at the top of the stack.
+     * @return The value at the top of the stack.
+     */
+    public char pop() throws StackException {
+        if (this.size == 0) {
+            throw new StackException("Empty Stack");
+        }
+        return this.stack[--this.size];
+    }
+
+    /**
+     * Tells us if the stack is empty or not.
+     * @return True if the stack is empty, otherwise false.
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Empties the stack, keeping the array for later use.
+     */
+    public void reset() {
+        this.size = 0;
+    }
+
+    /**
+     * Grows the stack so it can hold at least the number of values given without growing again.
+     * @param capacity The number of values the stack should be able to hold.
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > this.stack.length) {
+            char[] larger = new char[capacity];
+            System.arraycopy(this.stack, 0, larger, 0, this.size);
+            this.stack = larger;
+        }
+    }
+}
@@ -0,0 +1,403 @@
+package twentyfourpoints;
+
+import java.util.ArrayList;
+
+/**
+ * An immutable, pre-parsed form of an Expression. The postfix expression is stored as a
+ * list of opcodes with a matching list of operands so it can be evaluated any number of times
+ * without tokenizing or parsing the infix expression again.
+ * @version 2.0
+ */
+public final class CompiledExpression {
+
+    //Opcodes used within the program.
+    static final byte PUSH = 0;       //Push the operand at the same position onto the stack
+    static final byte ADD = 1;
+    static final byte SUBTRACT = 2;
+    static final byte MULTIPLY = 3;
+    static final byte DIVIDE = 4;
+    static final byte DISCARD = 5;    //Pops two values without pushing a result (left over '(' in the postfix expression)
+    static final byte BAD_NUMBER = 6; //A number too large to be stored as an int
+
+    private final byte[] opcodes;
+    private final int[] operands;
+    private final int maxDepth; //The most values that will ever be on the stack at one time
+
+    /**
+     * Creates a program from already assembled opcodes and operands.
+     * @param opcodes The opcodes in postfix order.
+     * @param operands The operand for each PUSH opcode, unused for every other opcode.
+     */
+    private CompiledExpression(byte[] opcodes, int[] operands) {
+        this.opcodes = opcodes;
+        this.operands = operands;
+        this.maxDepth = findMaxDepth(opcodes);
+    }
+
+    /**
+     * Builds a program from the postfix expression produced by Expression.infixToPostfix().
+     * Numbers are made up of single digits and end with a ';'.
+     * @param postFix The postfix expression.
+     * @return The compiled version of the postfix expression.
+     */
+    public static CompiledExpression compile(ArrayList<String> postFix) {
+        byte[] opcodes = new byte[postFix.size()];
+        int[] operands = new int[postFix.size()];
+        int size = 0; //Number of opcodes used so far
+
+        long number = 0; //The number currently being read from the postfix expression
+        boolean overflow = false; //Set if 'number' has grown past Integer.MAX_VALUE
+
+        for (String token : postFix) {
+            char symbol = token.charAt(0);
+            if (Character.isDigit(symbol)) {
+                if (!overflow) {
+                    number = number * 10 + Character.digit(symbol, 10);
+                    overflow = number > Integer.MAX_VALUE;
+                }
+            } else if (symbol == ';') { //End of the current number
+                opcodes[size] = overflow ? BAD_NUMBER : PUSH;
+                operands[size] = (int) number;
+                ++size;
+                number = 0;
+                overflow = false;
+            } else {
+                opcodes[size++] = toOpcode(symbol);
+            }
+        }
+        return new CompiledExpression(trim(opcodes, size), trim(operands, size));
+    }//End compile()
+
+    /**
+     * Builds a program from the first part of already assembled opcode and operand arrays, copying them.
+     * @param length The number of opcodes in the program.
+     */
+    static CompiledExpression copyOf(byte[] opcodes, int[] operands, int length) {
+        byte[] opcodeCopy = new byte[length];
+        int[] operandCopy = new int[length];
+        System.arraycopy(opcodes, 0, opcodeCopy, 0, length);
+        System.arraycopy(operands, 0, operandCopy, 0, length);
+        return new CompiledExpression(opcodeCopy, operandCopy);
+    }
+
+    /**
+     * @param symbol An operator from the postfix expression.
+     * @return The opcode representing the operator.
+     */
+    private static byte toOpcode(char symbol) {
+        switch (symbol) {
+            case '+':
+                return ADD;
+            case '-':
+                return SUBTRACT;
+            case '*':
+                return MULTIPLY;
+            case '/':
+                return DIVIDE;
+            default:
+                return DISCARD;
+        }
+    }
+
+    /**
+     * Works out how large the stack needs to be to run the program. Anything after the
+     * first operator without enough operands is never reached, since evaluating it throws.
+     * @param opcodes The program being checked.
+     * @return The most values that will be on the stack at one time.
+     */
+    private static int findMaxDepth(byte[] opcodes) {
+        int depth = 0;
+        int max = 0;
+        for (byte opcode : opcodes) {
+            if (opcode == PUSH) {
+                max = Math.max(max, ++depth);
+            } else if (opcode == BAD_NUMBER) {
+                break;
+            } else if (depth < 2) {
+                break;
+            } else {
+                depth -= (opcode == DISCARD) ? 2 : 1;
+            }
+        }
+        return max;
+    }
+
+    private static byte[] trim(byte[] array, int size) {
+        if (array.length == size) {
+            return array;
+        }
+        byte[] trimmed = new byte[size];
+        System.arraycopy(array, 0, trimmed, 0, size);
+        return trimmed;
+    }
+
+    private static int[] trim(int[] array, int size) {
+        if (array.length == size) {
+            return array;
+        }
+        int[] trimmed = new int[size];
+        System.arraycopy(array, 0, trimmed, 0, size);
+        return trimmed;
+    }
+
+    /**
+     * @return The most values that will be on the stack at one time while evaluating the program.
+     */
+    public int getMaxDepth() {
+        return this.maxDepth;
+    }
+
+    /**
+     * @return The number of opcodes in the program.
+     */
+    public int getLength() {
+        return this.opcodes.length;
+    }
+
+    byte getOpcode(int index) {
+        return this.opcodes[index];
+    }
+
+    /**
+     * @return The number pushed by the opcode at the index, 0 for every opcode other than PUSH.
+     */
+    int getOperand(int index) {
+        return this.operands[index];
+    }
+
+    /**
+     * Evaluates the program using a newly created stack.
+     * @return The result of the expression.
+     */
+    public int evaluate() throws NumberFormatException, StackException {
+        return evaluate(new IntStack(this.maxDepth));
+    }
+
+    /**
+     * Evaluates the program using the stack given, which is reset first. Once the stack has grown
+     * to getMaxDepth() repeated calls do not allocate anything.
+     * Results match those of Expression.evaluate(), including the exceptions thrown.
+     * @param stack The stack to use.
+     * @return The result of the expression.
+     */
+    public int evaluate(IntStack stack) throws NumberFormatException, StackException {
+        stack.ensureCapacity(this.maxDepth);
+        return evaluate(this.opcodes, this.operands, this.opcodes.length, stack);
+    }
+
+    /**
+     * Runs a program held in arrays that may be longer than the program itself, such as the buffers
+     * a Tokenizer fills, using whole number arithmetic.
+     * @param length The number of opcodes in the program.
+     */
+    static int evaluate(byte[] opcodes, int[] operands, int length, IntStack stack)
+            throws NumberFormatException, StackException {
+        long start = Metrics.start();
+        try {
+            return run(opcodes, operands, length, stack);
+        } finally {
+            Metrics.stop(Metrics.Timer.EVALUATE, start);
+        }
+    }
+
+    private static int run(byte[] opcodes, int[] operands, int length, IntStack stack)
+            throws NumberFormatException, StackException {
+        stack.reset();
+
+        for (int index = 0; index < length; ++index) {
+            byte opcode = opcodes[index];
+            if (opcode == PUSH) {
+                stack.push(operands[index]);
+                continue;
+            } else if (opcode == BAD_NUMBER) {
+                Metrics.error(Metrics.ErrorType.NUMBER_FORMAT);
+                throw new NumberFormatException("Number is too large");
+            }
+            int num2 = stack.pop();
+            int num1 = stack.pop();
+            switch (opcode) {
+                case ADD:
+                    stack.push(num1 + num2);
+                    break;
+                case SUBTRACT:
+                    stack.push(num1 - num2);
+                    break;
+                case MULTIPLY:
+                    stack.push(num1 * num2);
+                    break;
+                case DIVIDE:
+                    stack.push(num1 / num2);
+                    break;
+                default: //DISCARD leaves both values off the stack
+                    break;
+            }
+        }//End for loop
+        return stack.pop();
+    }//End run()
+
+    /**
+     * Evaluates the program with whole numbers like evaluate(), but throws instead of wrapping around on overflow.
+     * @param stack The stack to use, reset before it is used.
+     * @return The result of the expression.
+     * @throws ArithmeticException If there is a division by zero or a result does not fit in an int.
+     */
+    public int evaluateChecked(IntStack stack) throws NumberFormatException, StackException, ArithmeticException {
+        stack.ensureCapacity(this.maxDepth);
+        long start = Metrics.start();
+        try {
+            return runChecked(this.opcodes, this.operands, this.opcodes.length, stack);
+        } finally {
+            Metrics.stop(Metrics.Timer.EVALUATE, start);
+        }
+    }
+
+    private static int runChecked(byte[] opcodes, int[] operands, int length, IntStack stack)
+            throws NumberFormatException, StackException, ArithmeticException {
+        stack.reset();
+
+        for (int index = 0; index < length; ++index) {
+            byte opcode = opcodes[index];
+            if (opcode == PUSH) {
+                stack.push(operands[index]);
+                continue;
+            } else if (opcode == BAD_NUMBER) {
+                Metrics.error(Metrics.ErrorType.NUMBER_FORMAT);
+                throw new NumberFormatException("Number is too large");
+            }
+            int num2 = stack.pop();
+            int num1 = stack.pop();
+            switch (opcode) {
+                case ADD:
+                    stack.push(Math.addExact(num1, num2));
+                    break;
+                case SUBTRACT:
+                    stack.push(Math.subtractExact(num1, num2));
+                    break;
+                case MULTIPLY:
+                    stack.push(Math.multiplyExact(num1, num2));
+                    break;
+                case DIVIDE:
+                    if (num1 == Integer.MIN_VALUE && num2 == -1) {
+                        throw new ArithmeticException("integer overflow");
+                    }
+                    stack.push(num1 / num2);
+                    break;
+                default: //DISCARD leaves both values off the stack
+                    break;
+            }
+        }//End for loop
+        return stack.pop();
+    }//End runChecked()
+
+    /**
+     * Evaluates the program with exact fractions using a newly created stack.
+     * @return The result of the expression as a packed Rational.
+     */
+    public long evaluateRational() throws NumberFormatException, StackException, ArithmeticException {
+        return evaluateRational(new RationalStack(this.maxDepth));
+    }
+
+    /**
+     * Evaluates the program with exact fractions using the stack given, which is reset first.
+     * Once the stack has grown to getMaxDepth() repeated calls do not allocate anything.
+     * @param stack The stack to use.
+     * @return The result of the expression as a packed Rational.
+     * @throws ArithmeticException If there is a division by zero or a fraction grows too large for an int.
+     */
+    public long evaluateRational(RationalStack stack)
+            throws NumberFormatException, StackException, ArithmeticException {
+        stack.ensureCapacity(this.maxDepth);
+        return evaluateRational(this.opcodes, this.operands, this.opcodes.length, stack);
+    }
+
+    /**
+     * Runs a program held in arrays that may be longer than the program itself, such as the buffers
+     * a Tokenizer fills, using exact fractions.
+     * @param length The number of opcodes in the program.
+     */
+    static long evaluateRational(byte[] opcodes, int[] operands, int length, RationalStack stack)
+            throws NumberFormatException, StackException, ArithmeticException {
+        long start = Metrics.start();
+        try {
+            return runRational(opcodes, operands, length, stack);
+        } finally {
+            Metrics.stop(Metrics.Timer.EVALUATE, start);
+        }
+    }
+
+    private static long runRational(byte[] opcodes, int[] operands, int length, RationalStack stack)
+            throws NumberFormatException, StackException, ArithmeticException {
+        stack.reset();
+
+        for (int index = 0; index < length; ++index) {
+            byte opcode = opcodes[index];
+            if (opcode == PUSH) {
+                stack.push(operands[index], 1);
+                continue;
+            } else if (opcode == BAD_NUMBER) {
+                Metrics.error(Metrics.ErrorType.NUMBER_FORMAT);
+                throw new NumberFormatException("Number is too large");
+            }
+            long right = stack.pop();
+            long left = stack.pop();
+            int n1 = Rational.numerator(left);
+            int d1 = Rational.denominator(left);
+            int n2 = Rational.numerator(right);
+            int d2 = Rational.denominator(right);
+            switch (opcode) {
+                case ADD:
+                    stack.push(Rational.add(n1, d1, n2, d2));
+                    break;
+                case SUBTRACT:
+                    stack.push(Rational.subtract(n1, d1, n2, d2));
+                    break;
+                case MULTIPLY:
+                    stack.push(Rational.multiply(n1, d1, n2, d2));
+                    break;
+                case DIVIDE:
+                    stack.push(Rational.divide(n1, d1, n2, d2));
+                    break;
+                default: //DISCARD leaves both values off the stack
+                    break;
+            }
+        }//End for loop
+        return stack.pop();
+    }//End runRational()
+
+    /**
+     * Checks if the program evaluates to the target using the arithmetic chosen and a newly created stack.
+     * @param target The value the expression should evaluate to.
+     * @param mode Whether to use whole number or exact arithmetic.
+     * @return True if the result is exactly the target, otherwise false.
+     */
+    public boolean evaluatesTo(int target, EvaluationMode mode)
+            throws NumberFormatException, StackException, ArithmeticException {
+        if (mode == EvaluationMode.RATIONAL) {
+            return evaluatesTo(target, mode, null, new RationalStack(this.maxDepth));
+        }
+        return evaluatesTo(target, mode, new IntStack(this.maxDepth), null);
+    }
+
+    /**
+     * Checks if the program evaluates to the target using the arithmetic chosen and the stacks given, which are
+     * reset first. Every mode runs the same loop as evaluate(IntStack), evaluateChecked() or
+     * evaluateRational(RationalStack), so once the stack used has grown to getMaxDepth() repeated calls do not
+     * allocate anything.
+     * @param target The value the expression should evaluate to.
+     * @param mode Whether to use whole number or exact arithmetic.
+     * @param ints The stack used by INTEGER and CHECKED, may be null for RATIONAL.
+     * @param rationals The stack used by RATIONAL, may be null for the other modes.
+     * @return True if the result is exactly the target, otherwise false.
+     */
+    public boolean evaluatesTo(int target, EvaluationMode mode, IntStack ints, RationalStack rationals)
+            throws NumberFormatException, StackException, ArithmeticException {
+        switch (mode) {
+            case RATIONAL:
+                return evaluateRational(rationals) == Rational.valueOf(target);
+            case CHECKED:
+                return evaluateChecked(ints) == target;
+            default:
+                return evaluate(ints) == target;
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,340 @@
+package twentyfourpoints;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Deals hands the same way the GUI does (four cards from a deck of 52, valued by Rules.cardValue()) and counts
+ * how often each hand of values comes up, which gives the share of deals that can be solved and how many
+ * solutions a dealt hand usually has, looked up in the SolvabilityTable.
+ *
+ * The deals are split into chunks of CHUNK_SIZE. Every chunk has its own Dealer seeded from the run's seed and
+ * the chunk's number, so the results depend only on the seed and not on the number of threads or on how
+ * often the run was stopped. Each thread counts the hands it deals in its own array and the arrays are only
+ * added together once every thread has finished its chunks, so nothing is shared while dealing.
+ * The chunks are worked through in rounds, and after each round the totals are written to a checkpoint
+ * file and a line of progress is printed. A run that is stopped loses at most the round in progress and
+ * carries on from the checkpoint when it is started again with the same seed and number of deals.
+ *
+ * Checkpoint layout (big-endian):
+ * header:   magic, version (2 ints), seed, deals (2 longs), chunk size (int), next chunk (long), hands (int)
+ * tallies:  the number of times each hand was dealt, in order of rank (1 long per hand)
+ *
+ *     java twentyfourpoints.DealSimulation [deals] [threads] [seed] [checkpoint file]
+ * @version 2.0
+ */
+public class DealSimulation {
+
+    public static final Path DEFAULT_CHECKPOINT = Paths.get("simulation.ckpt");
+    public static final int CHUNK_SIZE = 1 << 20;
+
+    private static final int MAGIC = 0x32345353; //"24SS"
+    private static final int VERSION = 1;
+    private static final int HAND_COUNT = SolvabilityTable.HAND_COUNT;
+    private static final int HEADER_SIZE = 40;
+    private static final int CHUNKS_PER_THREAD = 16; //Chunks each thread deals in a round
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+
+    private final long deals;
+    private final long seed;
+    private final int threads;
+    private final long chunkCount;
+    private final long[] tallies = new long[HAND_COUNT]; //Deals of each hand, in order of rank
+    private final int[] solutionCounts = new int[HAND_COUNT]; //Solutions of each hand, in order of rank
+    private long nextChunk; //Chunks before this one have been dealt and counted
+
+    /**
+     * @param table Gives the solution count of each hand.
+     * @param deals The number of hands to deal.
+     * @param seed The seed every chunk's dealer is derived from.
+     * @param threads The number of threads dealing at once.
+     */
+    public DealSimulation(SolvabilityTable table, long deals, long seed, int threads) {
+        if (deals < 0 || threads < 1) {
+            throw new IllegalArgumentException("The number of deals can not be negative and at least one thread is needed");
+        }
+        this.deals = deals;
+        this.seed = seed;
+        this.threads = threads;
+        this.chunkCount = (deals + CHUNK_SIZE - 1) / CHUNK_SIZE;
+        int[] values = new int[Rules.HAND_SIZE];
+        for (values[0] = 1; values[0] <= Rules.HIGHEST_VALUE; ++values[0]) {
+            for (values[1] = values[0]; values[1] <= Rules.HIGHEST_VALUE; ++values[1]) {
+                for (values[2] = values[1]; values[2] <= Rules.HIGHEST_VALUE; ++values[2]) {
+                    for (values[3] = values[2]; values[3] <= Rules.HIGHEST_VALUE; ++values[3]) {
+                        this.solutionCounts[SolvabilityTable.rank(values)] = table.getSolutionCount(values);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Deals every chunk not yet dealt, carrying on from the checkpoint if there is one for this run.
+     * @param checkpoint The checkpoint file, or null to run without one.
+     * @param progress Where to print a line after each round, or null for no progress.
+     * @throws IOException If the checkpoint could not be read or written.
+     * @throws IllegalArgumentException If the checkpoint is for a different seed or number of deals.
+     */
+    public void run(Path checkpoint, PrintStream progress) throws IOException {
+        if (checkpoint != null && Files.isRegularFile(checkpoint)) {
+            this.restore(checkpoint);
+            if (progress != null) {
+                progress.printf("Resuming from %s with %d of %d deals done%n", checkpoint, this.getDealsDone(), this.deals);
+            }
+        }
+        long start = System.nanoTime();
+        long dealtBefore = this.getDealsDone();
+        ExecutorService workers = Executors.newFixedThreadPool(this.threads);
+        try {
+            while (this.nextChunk < this.chunkCount) {
+                long roundEnd = Math.min(this.chunkCount, this.nextChunk + (long) this.threads * CHUNKS_PER_THREAD);
+                this.runRound(workers, roundEnd);
+                if (checkpoint != null) {
+                    this.save(checkpoint);
+                }
+                if (progress != null) {
+                    double seconds = (System.nanoTime() - start) / 1e9;
+                    double rate = (this.getDealsDone() - dealtBefore) / seconds;
+                    progress.printf("%,d of %,d deals (%.1f%%), %.1f million deals/s, solvable %.4f%%, %.0f s left%n",
+                            this.getDealsDone(), this.deals, 100.0 * this.getDealsDone() / Math.max(this.deals, 1),
+                            rate / 1e6, 100 * this.getSolvableRate(), (this.deals - this.getDealsDone()) / rate);
+                }
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+    }//End run()
+
+    /**
+     * Deals the chunks up to the end of the round on every thread and adds each thread's counts to the totals.
+     */
+    private void runRound(ExecutorService workers, long roundEnd) {
+        AtomicLong next = new AtomicLong(this.nextChunk);
+        ArrayList<Future<long[]>> running = new ArrayList<>(this.threads);
+        for (int t = 0; t < this.threads; ++t) {
+            running.add(workers.submit(() -> {
+                long[] counts = new long[HAND_COUNT];
+                for (long chunk = next.getAndIncrement(); chunk < roundEnd; chunk = next.getAndIncrement()) {
+                    this.dealChunk(chunk, counts);
+                }
+                return counts;
+            }));
+        }
+        //Only add the round to the totals once every thread has finished, so a failed round leaves them as they were
+        long[] round = new long[HAND_COUNT];
+        try {
+            for (Future<long[]> worker : running) {
+                long[] counts = worker.get();
+                for (int rank = 0; rank < HAND_COUNT; ++rank) {
+                    round[rank] += counts[rank];
+                }
+            }
+        } catch (InterruptedException err) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while dealing", err);
+        } catch (ExecutionException err) {
+            throw new IllegalStateException("Failed to deal a chunk", err.getCause());
+        }
+        for (int rank = 0; rank < HAND_COUNT; ++rank) {
+            this.tallies[rank] += round[rank];
+        }
+        this.nextChunk = roundEnd;
+    }
+
+    /**
+     * Deals one chunk and counts the hands into the array given.
+     */
+    private void dealChunk(long chunk, long[] counts) {
+        //Seeds from SplittableRandom.nextLong() are well mixed, so the chunks' streams do not overlap in practice.
+        Dealer dealer = new Dealer(new SplittableRandom(this.seed + chunk * GOLDEN_GAMMA).nextLong());
+        long size = Math.min(CHUNK_SIZE, this.deals - chunk * CHUNK_SIZE);
+        int[] cards = new int[Rules.HAND_SIZE];
+        for (long i = 0; i < size; ++i) {
+            dealer.deal(cards);
+            ++counts[SolvabilityTable.rank(Rules.cardValue(cards[0]), Rules.cardValue(cards[1]),
+                    Rules.cardValue(cards[2]), Rules.cardValue(cards[3]))];
+        }
+    }
+
+    /**
+     * Writes the totals so far to a temporary file first, so a partly written checkpoint is never loaded.
+     */
+    private void save(Path checkpoint) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + HAND_COUNT * 8).order(ByteOrder.BIG_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putLong(this.seed).putLong(this.deals)
+                .putInt(CHUNK_SIZE).putLong(this.nextChunk).putInt(HAND_COUNT);
+        for (long tally : this.tallies) {
+            buffer.putLong(tally);
+        }
+        Path temporary = Files.createTempFile(checkpoint.toAbsolutePath().getParent(), "simulation", ".tmp");
+        try {
+            Files.write(temporary, buffer.array());
+            Files.move(temporary, checkpoint, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private void restore(Path checkpoint) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(checkpoint)).order(ByteOrder.BIG_ENDIAN);
+        if (buffer.capacity() != HEADER_SIZE + HAND_COUNT * 8 || buffer.getInt(0) != MAGIC
+                || buffer.getInt(4) != VERSION || buffer.getInt(24) != CHUNK_SIZE || buffer.getInt(36) != HAND_COUNT) {
+            throw new IOException(checkpoint + " is not a simulation checkpoint");
+        }
+        if (buffer.getLong(8) != this.seed || buffer.getLong(16) != this.deals) {
+            throw new IllegalArgumentException(checkpoint + " is for a run of " + buffer.getLong(16)
+                    + " deals with seed " + buffer.getLong(8));
+        }
+        this.nextChunk = buffer.getLong(28);
+        for (int rank = 0; rank < HAND_COUNT; ++rank) {
+            this.tallies[rank] = buffer.getLong(HEADER_SIZE + rank * 8);
+        }
+    }
+
+    public long getDealsDone() {
+        return Math.min(this.deals, this.nextChunk * CHUNK_SIZE);
+    }
+
+    /**
+     * @param rank The rank of a hand of values, see SolvabilityTable.rank().
+     * @return The number of times the hand was dealt.
+     */
+    public long getTally(int rank) {
+        return this.tallies[rank];
+    }
+
+    /**
+     * @return The share of the deals so far that can be solved.
+     */
+    public double getSolvableRate() {
+        long solvable = 0;
+        long total = 0;
+        for (int rank = 0; rank < HAND_COUNT; ++rank) {
+            total += this.tallies[rank];
+            if (this.solutionCounts[rank] > 0) {
+                solvable += this.tallies[rank];
+            }
+        }
+        return total == 0 ? 0 : (double) solvable / total;
+    }
+
+    /**
+     * @return The number of deals with each solution count, indexed by the count.
+     */
+    public long[] getSolutionCountHistogram() {
+        int highest = 0;
+        for (int count : this.solutionCounts) {
+            highest = Math.max(highest, count);
+        }
+        long[] histogram = new long[highest + 1];
+        for (int rank = 0; rank < HAND_COUNT; ++rank) {
+            histogram[this.solutionCounts[rank]] += this.tallies[rank];
+        }
+        return histogram;
+    }
+
+    /**
+     * @return The chance of dealing each hand of values, in order of rank, worked out from all 270,725
+     *         hands of four cards so the simulation can be compared against it.
+     */
+    public static double[] exactProbabilities() {
+        long[] hands = new long[HAND_COUNT];
+        long total = 0;
+        for (int a = 1; a <= Rules.DECK_SIZE; ++a) {
+            for (int b = a + 1; b <= Rules.DECK_SIZE; ++b) {
+                for (int c = b + 1; c <= Rules.DECK_SIZE; ++c) {
+                    for (int d = c + 1; d <= Rules.DECK_SIZE; ++d) {
+                        ++hands[SolvabilityTable.rank(Rules.cardValue(a), Rules.cardValue(b),
+                                Rules.cardValue(c), Rules.cardValue(d))];
+                        ++total;
+                    }
+                }
+            }
+        }
+        double[] probabilities = new double[HAND_COUNT];
+        for (int rank = 0; rank < HAND_COUNT; ++rank) {
+            probabilities[rank] = (double) hands[rank] / total;
+        }
+        return probabilities;
+    }
+
+    /**
+     * @return The chi-square statistic of the tallies against the exact chance of each hand, which should be
+     *         close to its 1,819 degrees of freedom when the deals are uniform.
+     */
+    public double getChiSquare() {
+        double[] probabilities = exactProbabilities();
+        long total = 0;
+        for (long tally : this.tallies) {
+            total += tally;
+        }
+        double chiSquare = 0;
+        for (int rank = 0; rank < HAND_COUNT; ++rank) {
+            double expected = probabilities[rank] * total;
+            chiSquare += (this.tallies[rank] - expected) * (this.tallies[rank] - expected) / expected;
+        }
+        return chiSquare;
+    }
+
+    /**
+     * @return The results so far as text: the solvable rate against the exact rate, the goodness of fit of
+     *         the deals and how the solution counts are spread.
+     */
+    public String report() {
+        StringBuilder report = new StringBuilder(1024);
+        long done = this.getDealsDone();
+        double rate = this.getSolvableRate();
+        double[] exact = exactProbabilities();
+        double exactRate = 0;
+        for (int rank = 0; rank < HAND_COUNT; ++rank) {
+            if (this.solutionCounts[rank] > 0) {
+                exactRate += exact[rank];
+            }
+        }
+        report.append(String.format("Deals:        %,d%n", done));
+        report.append(String.format("Solvable:     %.5f%% +/- %.5f%% (95%%), exact %.5f%%%n", 100 * rate,
+                196 * Math.sqrt(rate * (1 - rate) / Math.max(done, 1)), 100 * exactRate));
+        report.append(String.format("Chi-square:   %.1f with %d degrees of freedom%n", this.getChiSquare(), HAND_COUNT - 1));
+        report.append("Solution counts:").append(System.lineSeparator());
+        long[] histogram = this.getSolutionCountHistogram();
+        double mean = 0;
+        //Counts of 0 and 1, then ranges that double in size
+        for (int low = 0, high = 0; low < histogram.length; low = high + 1, high = high * 2 + 1) {
+            high = Math.min(high, histogram.length - 1);
+            long deals = 0;
+            for (int count = low; count <= high; ++count) {
+                deals += histogram[count];
+                mean += (double) count * histogram[count] / Math.max(done, 1);
+            }
+            String range = low == high ? Integer.toString(low) : low + "-" + high;
+            report.append(String.format("  %-9s %8.4f%%%n", range, 100.0 * deals / Math.max(done, 1)));
+        }
+        report.append(String.format("Mean solutions per deal: %.3f%n", mean));
+        return report.toString();
+    }//End report()
+
+    public static void main(String[] args) throws IOException {
+        long deals = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000_000L;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 24;
+        Path checkpoint = args.length > 3 ? Paths.get(args[3]) : DEFAULT_CHECKPOINT;
+        DealSimulation simulation = new DealSimulation(SolvabilityTable.load(SolvabilityTable.DEFAULT_PATH),
+                deals, seed, threads);
+        simulation.run(checkpoint, System.out);
+        System.out.print(simulation.report());
+    }
+}
@@ -0,0 +1,162 @@
+package twentyfourpoints;
+
+import java.util.SplittableRandom;
+
+/**
+ * Deals cards from a 52 card deck stored as an int array. Only the cards being dealt are shuffled
+ * (a partial Fisher-Yates shuffle), so dealing four cards costs four random numbers and four swaps
+ * and nothing is allocated. The deck is always a full permutation of the cards, so it never needs refilling.
+ *
+ * Dealers are seeded from a SplittableRandom, so the same seed always deals the same hands, and split()
+ * gives an independent Dealer for another thread of a parallel simulation.
+ * A Dealer should not be shared between threads.
+ * @version 2.0
+ */
+public class Dealer {
+
+    //Most hands tried by a filtered deal before giving up, so a filter no hand passes can not loop forever.
+    private static final int MAX_ATTEMPTS = 1_000_000;
+
+    /**
+     * Decides which hands may be dealt.
+     */
+    public interface HandFilter {
+        /**
+         * @param values The values of the cards in the hand.
+         * @return True if the hand may be dealt, otherwise false.
+         */
+        boolean accept(int[] values);
+    }
+
+    private final int[] deck = new int[Rules.DECK_SIZE];
+    private final SplittableRandom random;
+    private int[] values = new int[Rules.HAND_SIZE]; //Working space for filtered and catalog deals
+
+    /**
+     * Create a dealer with a randomly chosen seed.
+     */
+    public Dealer() {
+        this(new SplittableRandom());
+    }
+
+    /**
+     * Create a dealer that always deals the same hands for the same seed.
+     * @param seed The seed of the random number generator.
+     */
+    public Dealer(long seed) {
+        this(new SplittableRandom(seed));
+    }
+
+    private Dealer(SplittableRandom random) {
+        this.random = random;
+        for (int i = 0; i < Rules.DECK_SIZE; ++i) {
+            this.deck[i] = i + 1;
+        }
+    }
+
+    /**
+     * @return A new dealer with its own random number generator, independent of this one.
+     */
+    public Dealer split() {
+        return new Dealer(this.random.split());
+    }
+
+    /**
+     * Deals as many cards as the array holds.
+     * @param cards Filled with the numbers of the cards dealt, from 1 to 52.
+     */
+    public void deal(int[] cards) {
+        long start = Metrics.start();
+        this.shuffleInto(cards);
+        Metrics.stop(Metrics.Timer.DEAL, start);
+    }
+
+    private void shuffleInto(int[] cards) {
+        int count = cards.length;
+        for (int i = 0; i < count; ++i) {
+            //Swap a random card from the part of the deck not yet dealt into position i.
+            int j = i + this.random.nextInt(Rules.DECK_SIZE - i);
+            int card = this.deck[j];
+            this.deck[j] = this.deck[i];
+            this.deck[i] = card;
+            cards[i] = card;
+        }
+    }
+
+    /**
+     * Deals hands until one passes the filter.
+     * @param cards Filled with the numbers of the cards dealt, from 1 to 52.
+     * @param filter Decides which hands may be dealt.
+     * @throws IllegalStateException If no hand passed the filter after a million tries.
+     */
+    public void deal(int[] cards, HandFilter filter) {
+        long start = Metrics.start();
+        if (this.values.length != cards.length) {
+            this.values = new int[cards.length];
+        }
+        for (int attempt = 0; attempt < MAX_ATTEMPTS; ++attempt) {
+            this.shuffleInto(cards);
+            values(cards, this.values);
+            if (filter.accept(this.values)) {
+                Metrics.stop(Metrics.Timer.DEAL, start);
+                return;
+            }
+        }
+        throw new IllegalStateException("No hand passed the filter");
+    }
+
+    /**
+     * Deals a hand of four cards picked at random from the hands in a difficulty band of the catalog.
+     * Unlike a filtered deal this takes the same time no matter how few hands are in the band.
+     * @param cards Filled with the numbers of the cards dealt, from 1 to 52.
+     * @param catalog The catalog of hands sorted by difficulty.
+     * @param lowest The lowest difficulty allowed.
+     * @param highest The highest difficulty allowed.
+     * @throws IllegalStateException If no hand has a difficulty in the band.
+     */
+    public void deal(int[] cards, PuzzleCatalog catalog, int lowest, int highest) {
+        long start = Metrics.start();
+        if (this.values.length != Rules.HAND_SIZE) {
+            this.values = new int[Rules.HAND_SIZE];
+        }
+        if (!catalog.draw(lowest, highest, this.random, this.values)) {
+            throw new IllegalStateException("No hand has a difficulty from " + lowest + " to " + highest);
+        }
+        for (int i = 0; i < Rules.HAND_SIZE; ++i) {
+            //Choose a suit for the value, choosing again if an earlier card of the same value already has it.
+            int card;
+            boolean taken;
+            do {
+                card = this.values[i] + Rules.HIGHEST_VALUE * this.random.nextInt(Rules.DECK_SIZE / Rules.HIGHEST_VALUE);
+                taken = false;
+                for (int j = 0; j < i; ++j) {
+                    taken |= cards[j] == card;
+                }
+            } while (taken);
+            //The catalog gives the values in order, so place each card at a random position of those dealt so far.
+            int position = this.random.nextInt(i + 1);
+            cards[i] = cards[position];
+            cards[position] = card;
+        }
+        Metrics.stop(Metrics.Timer.DEAL, start);
+    }
+
+    /**
+     * Finds the value of each card.
+     * @param cards The numbers of the cards, from 1 to 52.
+     * @param values Filled with the value of each card.
+     */
+    public static void values(int[] cards, int[] values) {
+        for (int i = 0; i < cards.length; ++i) {
+            values[i] = Rules.cardValue(cards[i]);
+        }
+    }
+
+    /**
+     * @param table The table used to look up each hand.
+     * @return A filter that only lets through hands of four cards that can be solved.
+     */
+    public static HandFilter solvableOnly(SolvabilityTable table) {
+        return table::isSolvable;
+    }
+}
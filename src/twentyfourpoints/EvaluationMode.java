@@ -0,0 +1,21 @@
+package twentyfourpoints;
+
+/**
+ * The kind of arithmetic used when evaluating an expression.
+ * @version 2.0
+ */
+public enum EvaluationMode {
+    /**
+     * Whole numbers only, with division dropping any remainder (8/3 is 2).
+     * Results wrap around on overflow.
+     */
+    INTEGER,
+    /**
+     * Exact fractions (8/3 stays 8/3). Overflow throws an ArithmeticException.
+     */
+    RATIONAL,
+    /**
+     * Whole numbers like INTEGER, but overflow throws an ArithmeticException instead of wrapping around.
+     */
+    CHECKED
+}
@@ -1,17 +1,20 @@
 package twentyfourpoints;
 
 import java.util.ArrayList;
-import java.util.LinkedList;
 
 /**
  * Represents a algebraic expression in infix and is capable of
  * converting it to postfix and evaluating the expression.
+ * An Expression keeps the stacks evaluatesTo() uses, so one must not be used by two threads at once.
  * @author Sandeep Bindra
  * @version 2.0
  */
 public class Expression {
 
     private String infix; //Stores the algebraic expression as a string
+    private CompiledExpression program; //The parsed expression, built the first time it is needed
+    private IntStack ints;              //Reused by evaluatesTo(), created the first time it is needed
+    private RationalStack rationals;    //Reused by evaluatesTo() with exact fractions
 
     /**
      * Constructor to create an algebraic expression based on the String passed
@@ -27,10 +30,19 @@ public class Expression {
      * @return The postfix version of the infix expression.
      */
     public ArrayList<String> infixToPostfix() throws ExpressionException {
+        long start = Metrics.start();
+        try {
+            return this.toPostfix();
+        } finally {
+            Metrics.stop(Metrics.Timer.PARSE, start);
+        }
+    }
+
+    private ArrayList<String> toPostfix() throws ExpressionException {
 
         ArrayList<String> postFix = new ArrayList<String>(); //Represents the postfix expression
 
-        GenericStack<Character> stack = new GenericStack<Character>(); //The stack used to assemble the postfix expression.
+        CharStack stack = new CharStack(); //The stack used to assemble the postfix expression.
 
         char[] expression = this.infix.toCharArray(); //Obtain each individual char of 'infix'
 
@@ -61,12 +73,7 @@ public class Expression {
                 } else {
                         //Pop tokens of equal or greater precedence than this operator
                         //and add them to the postFix expression.
-                        LinkedList<Character> popped = checkStack(token, stack);
-                        if (popped.size() > 0) {
-                            while(!popped.isEmpty()) {
-                                postFix.add(Character.toString(popped.remove()));
-                            }
-                        }
+                        checkStack(token, stack, postFix);
                 }
             } else if (token == ')') {
                 while(!stack.isEmpty()) {
@@ -87,7 +94,7 @@ public class Expression {
             postFix.add(Character.toString(stack.pop()));
         }
         return postFix;
-    }//End infixToPostfix
+    }//End toPostfix
 
     /**
      * Helper method used when an operator has been found in the infix expression. Operator of
@@ -95,12 +102,10 @@ public class Expression {
      * the stack is emptied, or a '(' is found.
      * @param operator The operator found in the postFix expression.
      * @param stack The stack used for storing operators and parenthesis.
-     * @return All the operators popped off the stack in the form of a LinkedList representing a queue.
+     * @param postFix The postfix expression, any operators popped off the stack are added to the end of it.
      */
-    private LinkedList<Character> checkStack(char operator, GenericStack<Character> stack) throws ExpressionException {
+    private void checkStack(char operator, CharStack stack, ArrayList<String> postFix) throws ExpressionException {
 
-        //Any values popped off the stack will be stored in this queue.
-        LinkedList<Character> poppedQ = new LinkedList<>();
         //Variable used to check the next char on the stack if the stack is not empty.
         //char 'a' is just used to initialize it.
         char next = 'a';
@@ -109,81 +114,144 @@ public class Expression {
             while(!stack.isEmpty()) {
                 next = stack.peek();
                 if (next == '*' || next == '/' || next == '+' || next == '-') {
-                    poppedQ.add(stack.pop()); //Operators of equal or higher precedence should be popped
+                    postFix.add(Character.toString(stack.pop())); //Operators of equal or higher precedence should be popped
                 } else if (next == '(') {
                     stack.push(operator);
-                    return poppedQ;
+                    return;
                 }
             }
             //If the stack is empty, push the operator on and continue.
             stack.push(operator);
-            return poppedQ;
+            return;
         } else if (operator == '*' || operator == '/') {
             while(!stack.isEmpty()) {
                 next = stack.peek();
                 if (next == '*' || next == '/') {
-                    poppedQ.add(stack.pop());
+                    postFix.add(Character.toString(stack.pop()));
                 } else if (next == '+' || next == '-' || next == '(') { //Stop at a '+', '-', or '('
                     stack.push(operator);
-                    return poppedQ;
+                    return;
                 }
             }
             //If the stack is empty, push the operator on and continue.
             stack.push(operator);
-            return poppedQ; //There are no operators of greater or equal precedence left or we have run into a '('
+            return; //There are no operators of greater or equal precedence left or we have run into a '('
         }
         throw new ExpressionException("Unknown operator found");
     } //End getPrecedence()
 
+    /**
+     * Parses the infix expression into a program that can be evaluated repeatedly.
+     * The program is only built the first time this is called.
+     * @return The compiled version of this expression.
+     */
+    public CompiledExpression compile() throws ExpressionException {
+        CompiledExpression compiled = this.program;
+        if (compiled == null) {
+            compiled = CompiledExpression.compile(this.infixToPostfix());
+            this.program = compiled;
+        }
+        return compiled;
+    }
+
+    /**
+     * Guarded version of compile() for expressions that can not be trusted. The expression is read in a single
+     * pass that stops as soon as it breaks one of the limits, so rejecting it costs no more than the limits allow
+     * however long it is, and it is never turned into a list of strings.
+     * @param limits The limits the expression is held to.
+     * @return The compiled version of this expression.
+     * @throws ExpressionException If the expression breaks a limit or does not pass the checks the GUI makes,
+     *         other than the numbers used. The message says which and where.
+     */
+    public CompiledExpression compile(Limits limits) throws ExpressionException {
+        if (this.infix == null) {
+            throw new ExpressionException("No expression was given");
+        }
+        Tokenizer tokenizer = new Tokenizer();
+        tokenizer.setLimits(limits);
+        Verdict verdict = tokenizer.parse(this.infix, null);
+        if (verdict != null) {
+            String msg = verdict == Verdict.LIMIT_EXCEEDED
+                    ? limits.describe(tokenizer.getExceededLimit()) : verdict.getMessage();
+            if (tokenizer.getErrorPosition() >= 0) {
+                msg += " (at character " + (tokenizer.getErrorPosition() + 1) + ")";
+            }
+            throw new ExpressionException(msg);
+        }
+        return tokenizer.toProgram();
+    }
+
+    /**
+     * Guarded version of evaluate(). Every way the expression can fail is reported as an ExpressionException:
+     * breaking a limit, a malformed expression, a division by zero, or a result that overflows, which is an
+     * error here instead of wrapping around.
+     * @param limits The limits the expression is held to.
+     * @return The result of the algebraic expression.
+     * @throws ExpressionException If the expression can not be evaluated, the message says why.
+     */
+    public int evaluate(Limits limits) throws ExpressionException {
+        CompiledExpression compiled = this.compile(limits);
+        try {
+            return compiled.evaluateChecked(new IntStack(compiled.getMaxDepth()));
+        } catch (ArithmeticException err) {
+            throw new ExpressionException(Verdict.ARITHMETIC_ERROR.getMessage());
+        }
+    }
+
+    /**
+     * @return The tree of this expression, see ExpressionNode.canonical() for comparing answers.
+     */
+    public ExpressionNode toTree() throws ExpressionException {
+        return ExpressionNode.fromProgram(this.compile());
+    }
+
     /**
      * Returns the result of the infix expression by first converting it to a postFix expression
-     * and then evaluating it.
+     * and then evaluating it. The postfix expression is only built once and reused on later calls.
      * @return The result of the algebraic expression.
+     * @throws ExpressionException If no expression was given.
      */
     public int evaluate() throws NumberFormatException, StackException {
-        int result = 0; //Stores the result that the algebraic expression evaluates to.
+        if (this.infix == null) {
+            throw new ExpressionException("No expression was given");
+        }
+        return this.compile().evaluate();
+    }//End evaluate()
 
+    /**
+     * Evaluates the expression with exact fractions, so 8/(3-8/3) is 24 and 13/2 is not 6.
+     * @return The result of the algebraic expression as a packed Rational.
+     * @throws ArithmeticException If there is a division by zero or a fraction grows too large for an int.
+     * @throws ExpressionException If no expression was given.
+     */
+    public long evaluateRational() throws NumberFormatException, StackException, ArithmeticException {
         if (this.infix == null) {
-            System.out.println("Error: infix expression is null");
-            return 0;
+            throw new ExpressionException("No expression was given");
         }
-        ArrayList<String> postFix = this.infixToPostfix(); //Obtain the postFix expression
-
-        // Needed to represent the number we are currently getting from the postFix expression
-        StringBuilder number = new StringBuilder();
-        GenericStack<Integer> stack = new GenericStack<>();
-
-        //Go through the postfix expression and obtain the result.
-        for (String token : postFix) {
-            if (Character.isDigit(token.charAt(0))) {
-                number.append(token);
-            } else if (token.equals(";")) { //A semicolon means the end of the previous number so we push it onto the stack
-                stack.push(Integer.parseInt(number.toString()));
-                number.delete(0, number.capacity()+1); //Clear out 'number' for any remaining numbers.
-            } else {
-                int num2 = stack.pop();
-                int num1 = stack.pop();
-                switch (token.charAt(0)) {
-                    case '+': {
-                        stack.push(num1 + num2);
-                        break;
-                    }
-                    case '-': {
-                        stack.push(num1 - num2);
-                        break;
-                    }
-                    case '*': {
-                        stack.push(num1 * num2);
-                        break;
-                    }
-                    case '/': {
-                        stack.push(num1 / num2);
-                        break;
-                    }
-                }
+        return this.compile().evaluateRational();
+    }
+
+    /**
+     * Checks if the expression evaluates to the target using the arithmetic chosen. The stacks are kept from one
+     * call to the next, so checking the same expression again does not allocate anything.
+     * @param target The value the expression should evaluate to.
+     * @param mode Whether to use whole number or exact arithmetic.
+     * @return True if the result is exactly the target, otherwise false.
+     * @throws ExpressionException If no expression was given.
+     */
+    public boolean evaluatesTo(int target, EvaluationMode mode)
+            throws NumberFormatException, StackException, ArithmeticException {
+        if (this.infix == null) {
+            throw new ExpressionException("No expression was given");
+        }
+        CompiledExpression compiled = this.compile();
+        if (mode == EvaluationMode.RATIONAL) {
+            if (this.rationals == null) {
+                this.rationals = new RationalStack(compiled.getMaxDepth());
             }
-        } //End for loop
-        result = stack.pop();
-        return result;
-    }//End evaluate()
+        } else if (this.ints == null) {
+            this.ints = new IntStack(compiled.getMaxDepth());
+        }
+        return compiled.evaluatesTo(target, mode, this.ints, this.rationals);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,263 @@
+package twentyfourpoints;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Evaluates many compiled expressions together, giving the same results as Expression.evaluate() for each.
+ *
+ * Expressions are grouped by the shape of their program, the list of opcodes without the numbers. Answers to
+ * the game only come in a few hundred shapes, so most groups hold many expressions. Within a group the
+ * numbers are stored column by column, one int[] per step that pushes a number, and every expression's
+ * stack is kept the same way, one int[] per stack level. Since every expression in a group runs the same
+ * opcode at the same stack level, each step is a single loop over the columns with no branching on the
+ * opcode, such as a[i] += b[i] for an ADD, which the JIT turns into vector instructions where it can.
+ *
+ * Results come back in an int array and a byte array of statuses, in the order the expressions were added.
+ * The status says which exception Expression.evaluate() would have thrown, if any:
+ *  - ARITHMETIC_ERROR for a division by zero (ArithmeticException)
+ *  - STACK_ERROR for too few operands (StackException)
+ *  - NUMBER_ERROR for a number too large for an int (NumberFormatException)
+ * When an expression fails, Expression.evaluate() throws the exception for the first failure in program
+ * order, and so does this. Whole numbers wrap around on overflow, the same as Expression.evaluate().
+ *
+ * An ExpressionBatch reuses its arrays between evaluations and should not be shared between threads.
+ * @version 2.0
+ */
+public final class ExpressionBatch {
+
+    public static final byte OK = 0;
+    public static final byte ARITHMETIC_ERROR = 1;
+    public static final byte STACK_ERROR = 2;
+    public static final byte NUMBER_ERROR = 3;
+
+    /**
+     * The expressions that share one shape of program.
+     */
+    private static final class Group {
+        private final byte[] opcodes;
+        private final int[] levels;   //Stack level of the first operand of each step, or where PUSH writes
+        private final int[] columns;  //Column of the numbers pushed by each PUSH step
+        private final int steps;      //Steps run before the shape fails, or all of them
+        private final byte failure;   //The status once 'steps' have run, OK if the shape does not fail
+        private final int depth;      //Stack levels used
+        private final int result;     //Stack level of the result, the top once every step has run
+        private int[][] numbers;      //One column per PUSH step, one entry per expression
+        private int[][] stack;        //One column per stack level, one entry per expression
+        private int[] members = new int[16]; //Position of each expression in the batch
+        private boolean[] divided;    //Set for an expression once it has divided by zero
+        private int size;
+
+        Group(byte[] opcodes) {
+            this.opcodes = opcodes;
+            this.levels = new int[opcodes.length];
+            this.columns = new int[opcodes.length];
+            //Follow the stack level through the program to find where each step reads and writes,
+            //and the first step that fails whatever the numbers are.
+            int level = 0;
+            int pushes = 0;
+            int deepest = 0;
+            int step = 0;
+            byte failure = OK;
+            for (; step < opcodes.length; ++step) {
+                byte opcode = opcodes[step];
+                if (opcode == CompiledExpression.PUSH) {
+                    this.levels[step] = level++;
+                    this.columns[step] = pushes++;
+                    deepest = Math.max(deepest, level);
+                    continue;
+                } else if (opcode == CompiledExpression.BAD_NUMBER) {
+                    failure = NUMBER_ERROR;
+                    break;
+                } else if (level < 2) {
+                    failure = STACK_ERROR;
+                    break;
+                }
+                level -= 2;
+                this.levels[step] = level;
+                if (opcode != CompiledExpression.DISCARD) {
+                    ++level;
+                }
+            }
+            if (failure == OK && level == 0) {
+                failure = STACK_ERROR; //Nothing left to pop as the result
+            }
+            this.steps = step;
+            this.failure = failure;
+            this.result = level - 1;
+            this.depth = Math.max(deepest, 1);
+            this.numbers = new int[pushes][this.members.length];
+            this.stack = new int[this.depth][this.members.length];
+            this.divided = new boolean[this.members.length];
+        }
+
+        void add(CompiledExpression program, int position) {
+            if (this.size == this.members.length) {
+                int capacity = this.size * 2;
+                this.members = Arrays.copyOf(this.members, capacity);
+                for (int i = 0; i < this.numbers.length; ++i) {
+                    this.numbers[i] = Arrays.copyOf(this.numbers[i], capacity);
+                }
+                this.stack = new int[this.depth][capacity];
+                this.divided = new boolean[capacity];
+            }
+            for (int step = 0; step < this.steps; ++step) { //Numbers after the shape fails are never used
+                if (this.opcodes[step] == CompiledExpression.PUSH) {
+                    this.numbers[this.columns[step]][this.size] = program.getOperand(step);
+                }
+            }
+            this.members[this.size++] = position;
+        }
+
+        void evaluate(int[] results, byte[] statuses) {
+            int count = this.size;
+            int[][] stack = this.stack;
+            boolean[] divided = this.divided;
+            Arrays.fill(divided, 0, count, false);
+            for (int step = 0; step < this.steps; ++step) {
+                int level = this.levels[step];
+                switch (this.opcodes[step]) {
+                    case CompiledExpression.PUSH:
+                        System.arraycopy(this.numbers[this.columns[step]], 0, stack[level], 0, count);
+                        break;
+                    case CompiledExpression.ADD:
+                        addColumns(stack[level], stack[level + 1], count);
+                        break;
+                    case CompiledExpression.SUBTRACT:
+                        subtractColumns(stack[level], stack[level + 1], count);
+                        break;
+                    case CompiledExpression.MULTIPLY:
+                        multiplyColumns(stack[level], stack[level + 1], count);
+                        break;
+                    case CompiledExpression.DIVIDE:
+                        divideColumns(stack[level], stack[level + 1], divided, count);
+                        break;
+                    default: //DISCARD leaves both values off the stack
+                        break;
+                }
+            }
+            int[] top = this.failure == OK ? stack[this.result] : null;
+            for (int i = 0; i < count; ++i) {
+                int position = this.members[i];
+                statuses[position] = divided[i] ? ARITHMETIC_ERROR : this.failure;
+                results[position] = top == null || divided[i] ? 0 : top[i];
+            }
+        }
+    }//End class Group
+
+    private final HashMap<String, Group> groups = new HashMap<>();
+    private final ArrayList<Group> order = new ArrayList<>(); //Groups in the order they were made
+    private int size;
+
+    /**
+     * Create an empty batch.
+     */
+    public ExpressionBatch() {
+    }
+
+    /**
+     * Adds an expression to the batch.
+     * @return The position of the expression's result.
+     */
+    public int add(CompiledExpression program) {
+        byte[] opcodes = new byte[program.getLength()];
+        for (int step = 0; step < opcodes.length; ++step) {
+            opcodes[step] = program.getOpcode(step);
+        }
+        String shape = new String(opcodes, StandardCharsets.ISO_8859_1);
+        Group group = this.groups.get(shape);
+        if (group == null) {
+            group = new Group(opcodes);
+            this.groups.put(shape, group);
+            this.order.add(group);
+        }
+        group.add(program, this.size);
+        return this.size++;
+    }
+
+    /**
+     * Compiles an expression the same way Expression.evaluate() does and adds it to the batch.
+     * @return The position of the expression's result.
+     */
+    public int add(String expression) throws ExpressionException {
+        return this.add(new Expression(expression).compile());
+    }
+
+    /**
+     * @return The number of expressions in the batch.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return The number of distinct program shapes, each evaluated as one group.
+     */
+    public int getGroupCount() {
+        return this.order.size();
+    }
+
+    /**
+     * Removes every expression, keeping the groups' arrays for the next batch.
+     */
+    public void clear() {
+        for (Group group : this.order) {
+            group.size = 0;
+        }
+        this.size = 0;
+    }
+
+    /**
+     * Evaluates every expression in the batch.
+     * @param results Filled with the result of each expression, 0 where the status is not OK.
+     * @param statuses Filled with OK or the error each expression ran into.
+     */
+    public void evaluate(int[] results, byte[] statuses) {
+        if (results.length < this.size || statuses.length < this.size) {
+            throw new IllegalArgumentException("The result arrays are smaller than the batch");
+        }
+        long start = Metrics.start();
+        for (Group group : this.order) {
+            if (group.size > 0) {
+                group.evaluate(results, statuses);
+            }
+        }
+        Metrics.stop(Metrics.Timer.EVALUATE, start);
+    }
+
+    //The loops for each opcode are kept separate and simple so the JIT can vectorize them.
+
+    private static void addColumns(int[] left, int[] right, int count) {
+        for (int i = 0; i < count; ++i) {
+            left[i] += right[i];
+        }
+    }
+
+    private static void subtractColumns(int[] left, int[] right, int count) {
+        for (int i = 0; i < count; ++i) {
+            left[i] -= right[i];
+        }
+    }
+
+    private static void multiplyColumns(int[] left, int[] right, int count) {
+        for (int i = 0; i < count; ++i) {
+            left[i] *= right[i];
+        }
+    }
+
+    /**
+     * Divides, marking the expressions that divide by zero and dividing them by 1 instead so the loop carries on.
+     */
+    private static void divideColumns(int[] left, int[] right, boolean[] divided, int count) {
+        for (int i = 0; i < count; ++i) {
+            int divisor = right[i];
+            if (divisor == 0) {
+                divided[i] = true;
+                divisor = 1;
+            }
+            left[i] /= divisor;
+        }
+    }
+}
@@ -8,5 +8,6 @@ package twentyfourpoints;
 public class ExpressionException extends RuntimeException {
     public ExpressionException(String error) {
         super(error);
+        Metrics.error(Metrics.ErrorType.EXPRESSION);
     }
 }
\ No newline at end of file
@@ -0,0 +1,397 @@
+package twentyfourpoints;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * An immutable tree for an expression, built from the postfix program the infix to postfix algorithm produces.
+ * A parsed tree only has numbers and the four binary operators. Its canonical form gives every way of
+ * writing the same answer one shape, so answers such as (1+2+3)*4 and 4*(3+2+1) can be recognised as equal:
+ *  - chains of + and - become a single SUM node, and chains of * and / a single PRODUCT node, with
+ *    subtracted terms and divisors kept apart from the rest (so a-(b-c) is the same as a+c-b)
+ *  - the operands of each SUM and PRODUCT are sorted
+ *  - multiplying or dividing by 1 is removed (x*1 and x/1 become x)
+ *
+ * Every node carries a 64-bit fingerprint made from its kind, value and children, so the fingerprint of a
+ * canonical tree can be used to find equivalent answers without keeping or comparing the trees.
+ * @version 2.0
+ */
+public final class ExpressionNode implements Comparable<ExpressionNode> {
+
+    /**
+     * The kinds of node.
+     */
+    public enum Kind {
+        NUMBER,
+        ADD,
+        SUBTRACT,
+        MULTIPLY,
+        DIVIDE,
+        SUM,     //Canonical form only, the first children are added and the rest subtracted
+        PRODUCT  //Canonical form only, the first children are multiplied and the rest divide
+    }
+
+    private static final ExpressionNode[] NO_CHILDREN = new ExpressionNode[0];
+
+    private final Kind kind;
+    private final int value; //The number, for NUMBER nodes
+    private final ExpressionNode[] children;
+    private final int positive; //Number of children added or multiplied, for SUM and PRODUCT nodes
+    private final long fingerprint;
+
+    private ExpressionNode(Kind kind, int value, ExpressionNode[] children, int positive) {
+        this.kind = kind;
+        this.value = value;
+        this.children = children;
+        this.positive = positive;
+        long hash = mix(kind.ordinal() * 0x9E3779B97F4A7C15L + value);
+        hash = mix(hash ^ positive);
+        for (ExpressionNode child : children) {
+            hash = mix(hash * 31 + child.fingerprint);
+        }
+        this.fingerprint = hash;
+    }
+
+    /**
+     * The finishing step of the SplitMix64 generator, which spreads every input bit over the whole result.
+     */
+    private static long mix(long hash) {
+        hash = (hash ^ (hash >>> 30)) * 0xBF58476D1CE4E5B9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94D049BB133111EBL;
+        return hash ^ (hash >>> 31);
+    }
+
+    public static ExpressionNode number(int value) {
+        return new ExpressionNode(Kind.NUMBER, value, NO_CHILDREN, 0);
+    }
+
+    /**
+     * @param kind ADD, SUBTRACT, MULTIPLY or DIVIDE.
+     */
+    public static ExpressionNode binary(Kind kind, ExpressionNode left, ExpressionNode right) {
+        if (kind == Kind.NUMBER || kind == Kind.SUM || kind == Kind.PRODUCT) {
+            throw new IllegalArgumentException(kind + " is not a binary operator");
+        }
+        return new ExpressionNode(kind, 0, new ExpressionNode[] {left, right}, 2);
+    }
+
+    /**
+     * Parses an expression, checking it the same way the GUI does apart from the numbers used.
+     * @param expression The infix expression.
+     * @return The tree of the expression.
+     * @throws ExpressionException If the expression can not be parsed.
+     */
+    public static ExpressionNode parse(CharSequence expression) throws ExpressionException {
+        Tokenizer tokenizer = new Tokenizer();
+        Verdict verdict = tokenizer.parse(expression, null);
+        if (verdict != null) {
+            throw new ExpressionException(verdict.getMessage());
+        }
+        return fromProgram(tokenizer.toProgram());
+    }
+
+    /**
+     * Builds the tree for a compiled program by running it with nodes in place of values.
+     * @param program The program, such as one made by Expression.compile().
+     * @return The tree of the program.
+     * @throws ExpressionException If the program has too few operands or a number too large to read.
+     */
+    public static ExpressionNode fromProgram(CompiledExpression program) throws ExpressionException {
+        ExpressionNode[] stack = new ExpressionNode[Math.max(program.getMaxDepth(), 1)];
+        int size = 0;
+        for (int index = 0; index < program.getLength(); ++index) {
+            byte opcode = program.getOpcode(index);
+            if (opcode == CompiledExpression.PUSH) {
+                stack[size++] = number(program.getOperand(index));
+                continue;
+            }
+            if (opcode == CompiledExpression.BAD_NUMBER || opcode == CompiledExpression.DISCARD || size < 2) {
+                throw new ExpressionException("Error with order of operators/operands");
+            }
+            ExpressionNode right = stack[--size];
+            ExpressionNode left = stack[--size];
+            stack[size++] = binary(kindOf(opcode), left, right);
+        }
+        if (size != 1) {
+            throw new ExpressionException("Error with order of operators/operands");
+        }
+        return stack[0];
+    }//End fromProgram()
+
+    private static Kind kindOf(byte opcode) {
+        switch (opcode) {
+            case CompiledExpression.ADD:
+                return Kind.ADD;
+            case CompiledExpression.SUBTRACT:
+                return Kind.SUBTRACT;
+            case CompiledExpression.MULTIPLY:
+                return Kind.MULTIPLY;
+            default:
+                return Kind.DIVIDE;
+        }
+    }
+
+    public Kind getKind() {
+        return this.kind;
+    }
+
+    /**
+     * @return The number held by a NUMBER node, 0 for every other kind.
+     */
+    public int getValue() {
+        return this.value;
+    }
+
+    public int getChildCount() {
+        return this.children.length;
+    }
+
+    public ExpressionNode getChild(int index) {
+        return this.children[index];
+    }
+
+    /**
+     * @return For SUM and PRODUCT nodes the number of children that are added or multiplied, the rest are
+     *         subtracted or divide. For binary nodes 2 and for numbers 0.
+     */
+    public int getPositiveCount() {
+        return this.positive;
+    }
+
+    /**
+     * @return A 64-bit hash of the whole tree. Trees with the same structure always have the same
+     *         fingerprint, so the fingerprints of canonical trees are equal for equivalent answers.
+     */
+    public long getFingerprint() {
+        return this.fingerprint;
+    }
+
+    /**
+     * @param expression An infix expression.
+     * @return The fingerprint of the canonical form of the expression.
+     * @throws ExpressionException If the expression can not be parsed.
+     */
+    public static long fingerprint(CharSequence expression) throws ExpressionException {
+        return parse(expression).canonical().getFingerprint();
+    }
+
+    /**
+     * @return The canonical form of this tree, made only of numbers, SUM and PRODUCT nodes.
+     */
+    public ExpressionNode canonical() {
+        switch (this.kind) {
+            case NUMBER:
+                return this;
+            case ADD:
+            case SUBTRACT:
+            case SUM:
+                return chain(Kind.SUM, this);
+            default:
+                return chain(Kind.PRODUCT, this);
+        }
+    }
+
+    /**
+     * Flattens a chain of + and - (or * and /) into one canonical node.
+     */
+    private static ExpressionNode chain(Kind kind, ExpressionNode root) {
+        ArrayList<ExpressionNode> positives = new ArrayList<>();
+        ArrayList<ExpressionNode> negatives = new ArrayList<>();
+        collect(kind, root, true, positives, negatives);
+        if (kind == Kind.PRODUCT) {
+            //Fold x*1 and x/1, keeping a 1 if nothing else is being multiplied.
+            negatives.removeIf(ExpressionNode::isOne);
+            if (positives.size() > 1) {
+                positives.removeIf(ExpressionNode::isOne);
+                if (positives.isEmpty()) {
+                    positives.add(number(1));
+                }
+            }
+        }
+        if (positives.size() == 1 && negatives.isEmpty()) {
+            return positives.get(0);
+        }
+        ExpressionNode[] children = new ExpressionNode[positives.size() + negatives.size()];
+        ExpressionNode[] sortedPositives = positives.toArray(NO_CHILDREN);
+        ExpressionNode[] sortedNegatives = negatives.toArray(NO_CHILDREN);
+        Arrays.sort(sortedPositives);
+        Arrays.sort(sortedNegatives);
+        System.arraycopy(sortedPositives, 0, children, 0, sortedPositives.length);
+        System.arraycopy(sortedNegatives, 0, children, sortedPositives.length, sortedNegatives.length);
+        return new ExpressionNode(kind, 0, children, sortedPositives.length);
+    }//End chain()
+
+    /**
+     * Adds the operands of a chain to the positive or negative list, flipping the side for the right
+     * operand of - and / and carrying on into operands that are part of the same chain.
+     */
+    private static void collect(Kind kind, ExpressionNode node, boolean positive,
+                                ArrayList<ExpressionNode> positives, ArrayList<ExpressionNode> negatives) {
+        Kind same = kind == Kind.SUM ? Kind.ADD : Kind.MULTIPLY;
+        Kind inverse = kind == Kind.SUM ? Kind.SUBTRACT : Kind.DIVIDE;
+        if (node.kind == same || node.kind == inverse) {
+            collect(kind, node.children[0], positive, positives, negatives);
+            collect(kind, node.children[1], node.kind == same ? positive : !positive, positives, negatives);
+            return;
+        }
+        ExpressionNode operand = node.kind == kind ? node : node.canonical();
+        if (operand.kind == kind) {
+            //Folding may turn an operand into the same kind of chain, such as (a+b)*1, so join it in.
+            for (int i = 0; i < operand.children.length; ++i) {
+                boolean side = i < operand.positive ? positive : !positive;
+                (side ? positives : negatives).add(operand.children[i]);
+            }
+        } else {
+            (positive ? positives : negatives).add(operand);
+        }
+    }
+
+    private boolean isOne() {
+        return this.kind == Kind.NUMBER && this.value == 1;
+    }
+
+    /**
+     * Orders nodes by kind, then value, then children, so sorting gives the same order for equal operands.
+     */
+    @Override
+    public int compareTo(ExpressionNode other) {
+        if (this.kind != other.kind) {
+            return this.kind.compareTo(other.kind);
+        }
+        if (this.value != other.value) {
+            return Integer.compare(this.value, other.value);
+        }
+        if (this.positive != other.positive) {
+            return Integer.compare(this.positive, other.positive);
+        }
+        if (this.children.length != other.children.length) {
+            return Integer.compare(this.children.length, other.children.length);
+        }
+        for (int i = 0; i < this.children.length; ++i) {
+            int order = this.children[i].compareTo(other.children[i]);
+            if (order != 0) {
+                return order;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof ExpressionNode)) {
+            return false;
+        }
+        ExpressionNode node = (ExpressionNode) other;
+        return this.fingerprint == node.fingerprint && this.compareTo(node) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return (int) (this.fingerprint ^ (this.fingerprint >>> 32));
+    }
+
+    /**
+     * Evaluates the tree with exact fractions.
+     * @return The result as a packed Rational.
+     * @throws ArithmeticException If there is a division by zero or a fraction grows too large for an int.
+     */
+    public long evaluate() throws ArithmeticException {
+        if (this.kind == Kind.NUMBER) {
+            return Rational.valueOf(this.value);
+        }
+        long result = this.children[0].evaluate();
+        for (int i = 1; i < this.children.length; ++i) {
+            long operand = this.children[i].evaluate();
+            boolean positive = i < this.positive;
+            int n1 = Rational.numerator(result);
+            int d1 = Rational.denominator(result);
+            int n2 = Rational.numerator(operand);
+            int d2 = Rational.denominator(operand);
+            switch (this.kind) {
+                case ADD:
+                case SUM:
+                    result = positive ? Rational.add(n1, d1, n2, d2) : Rational.subtract(n1, d1, n2, d2);
+                    break;
+                case SUBTRACT:
+                    result = Rational.subtract(n1, d1, n2, d2);
+                    break;
+                case MULTIPLY:
+                case PRODUCT:
+                    result = positive ? Rational.multiply(n1, d1, n2, d2) : Rational.divide(n1, d1, n2, d2);
+                    break;
+                default:
+                    result = Rational.divide(n1, d1, n2, d2);
+                    break;
+            }
+        }
+        return result;
+    }//End evaluate()
+
+    /**
+     * @return The tree as an infix expression with only the parentheses that are needed.
+     *         Canonical trees are written with the subtracted terms and divisors last.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        this.write(builder);
+        return builder.toString();
+    }
+
+    private void write(StringBuilder builder) {
+        if (this.kind == Kind.NUMBER) {
+            builder.append(this.value);
+            return;
+        }
+        boolean additive = this.kind == Kind.ADD || this.kind == Kind.SUBTRACT || this.kind == Kind.SUM;
+        for (int i = 0; i < this.children.length; ++i) {
+            ExpressionNode child = this.children[i];
+            if (i > 0) {
+                builder.append(this.operatorBefore(i));
+            }
+            //The first operand only needs parentheses around a lower precedence operation, later operands
+            //also need them around an operation of the same precedence when they are subtracted or divide.
+            boolean lower = additive ? false : child.isAdditive();
+            boolean same = additive ? child.isAdditive() : child.isMultiplicative();
+            boolean inverted = this.operatorBefore(i) == '-' || this.operatorBefore(i) == '/';
+            if (lower || (i > 0 && inverted && same)) {
+                builder.append('(');
+                child.write(builder);
+                builder.append(')');
+            } else {
+                child.write(builder);
+            }
+        }
+    }
+
+    /**
+     * @return The operator written before the child at the index, which must be above 0.
+     */
+    private char operatorBefore(int index) {
+        switch (this.kind) {
+            case ADD:
+                return '+';
+            case SUBTRACT:
+                return '-';
+            case MULTIPLY:
+                return '*';
+            case DIVIDE:
+                return '/';
+            case SUM:
+                return index < this.positive ? '+' : '-';
+            default:
+                return index < this.positive ? '*' : '/';
+        }
+    }
+
+    private boolean isAdditive() {
+        return this.kind == Kind.ADD || this.kind == Kind.SUBTRACT || this.kind == Kind.SUM;
+    }
+
+    private boolean isMultiplicative() {
+        return this.kind == Kind.MULTIPLY || this.kind == Kind.DIVIDE || this.kind == Kind.PRODUCT;
+    }
+}
@@ -47,11 +47,10 @@ public class GenericStack<E> implements GenericStackInterface<E> {
      * @return The element at the top of the stack.
      */
     public E pop() throws StackException {
-        try {
-            return this.stack.remove(this.stack.size() - 1);
-        } catch (IndexOutOfBoundsException err) {
+        if (this.stack.isEmpty()) {
             throw new StackException("Empty Stack");
         }
+        return this.stack.remove(this.stack.size() - 1);
     }
 
     /**
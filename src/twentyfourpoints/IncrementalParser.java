@@ -0,0 +1,530 @@
+package twentyfourpoints;
+
+import java.util.Arrays;
+
+/**
+ * Checks an expression while it is being typed. It makes the same checks as a Tokenizer and gives the
+ * same verdict, but after an edit only the text from the first changed token onwards is read again,
+ * so typing or deleting at the end of the expression costs a single token however long the expression is.
+ *
+ * The state after every token (the operator stack, the stack of partial results, the cards used so far and
+ * the first error of each kind) is kept as a checkpoint. Both stacks are linked lists in arrays, with each
+ * checkpoint holding the index of the top entry and the number of entries in use, so going back to a
+ * checkpoint only moves a few indexes and nothing is copied or allocated while typing.
+ * Partial results are evaluated with exact fractions as the operators are added to the program, which
+ * gives the value of the expression so far, closing any parentheses that are still open.
+ *
+ * An IncrementalParser is not thread-safe, the GUI keeps one for its calculation field.
+ * @version 2.0
+ */
+public class IncrementalParser {
+
+    //Fields of a checkpoint, the state before the token that starts at the checkpoint's position
+    private static final int OPERATOR_TOP = 0;
+    private static final int OPERATORS_USED = 1;
+    private static final int VALUE_TOP = 2;
+    private static final int VALUES_USED = 3;
+    private static final int NUMBER_COUNT = 4;
+    private static final int NUMBER_ERROR = 5;
+    private static final int MISMATCH = 6;
+    private static final int ORDER_ERROR = 7;
+    private static final int OPEN_COUNT = 8;
+    private static final int EXPECT_OPERAND = 9;
+    private static final int STRIDE = 10;
+
+    private int[] hand;                                  //Null if the numbers are not checked
+    private final int[] counts = new int[Rules.HIGHEST_VALUE + 1]; //Cards of each value not yet used
+
+    private char[] text = new char[64];                  //The text read so far
+    private int textLength;
+    private int scanned;                                 //Characters that have been read
+    private int[] checkpoints = new int[64 * STRIDE];
+    private boolean[] boundaries = new boolean[64];      //True where a checkpoint has been saved
+
+    //The operator stack: the operator, the position of a '(' and the entry below
+    private char[] operators = new char[16];
+    private int[] operatorPositions = new int[16];
+    private int[] operatorBelow = new int[16];
+    //The stack of partial results, 0 for a result that could not be worked out
+    private long[] values = new long[16];
+    private int[] valueBelow = new int[16];
+    private long[] scratch = new long[16];               //Used to close the open parentheses for getValue()
+    //The card value crossed off by each number, or 0 if it did not match a card
+    private int[] numberCards = new int[16];
+
+    //The state after the last token read
+    private int operatorTop;
+    private int operatorsUsed;
+    private int valueTop;
+    private int valuesUsed;
+    private int numberCount;
+    private int numberError;
+    private int mismatch;
+    private int orderError;
+    private int openCount;
+    private boolean expectOperand;
+    private int invalidCharacter;
+
+    private Verdict verdict;
+    private int errorPosition;
+    private long value;
+    private int rescanned;                               //Characters read by the last update
+
+    /**
+     * Create a parser that does not check the numbers used.
+     */
+    public IncrementalParser() {
+        this.setHand(null);
+    }
+
+    /**
+     * Changes the hand the numbers are checked against. The whole text is read again by the next update().
+     * @param hand The values of the cards that must be used, or null to skip checking the numbers.
+     */
+    public void setHand(int[] hand) {
+        this.hand = hand == null ? null : hand.clone();
+        this.textLength = 0;
+        this.scanned = 0;
+        this.restart();
+        this.boundaries[0] = true;
+        this.save(0);
+    }
+
+    /**
+     * Brings the state up to date with the text, reading only what changed since the last call.
+     * @param expression The whole text of the expression.
+     * @return Null if the expression passes every check, otherwise the first check that fails,
+     *         in the same order as Tokenizer.parse().
+     */
+    public Verdict update(CharSequence expression) {
+        int end = expression.length();
+        int common = 0;
+        int limit = Math.min(Math.min(end, this.textLength), this.scanned);
+        while (common < limit && expression.charAt(common) == this.text[common]) {
+            ++common;
+        }
+        //Numbers are only read once they are complete, so a number that now carries on is read again
+        if (common < end && Character.isDigit(expression.charAt(common))) {
+            while (common > 0 && Character.isDigit(this.text[common - 1])) {
+                --common;
+            }
+        }
+        //Go back to the start of the token the first change falls in
+        while (!this.boundaries[common]) {
+            --common;
+        }
+        this.restore(common);
+
+        if (this.text.length < end) {
+            char[] larger = new char[Math.max(end, this.text.length * 2)];
+            System.arraycopy(this.text, 0, larger, 0, common);
+            this.text = larger;
+        }
+        for (int i = common; i < end; ++i) {
+            this.text[i] = expression.charAt(i);
+        }
+        this.textLength = end;
+        this.scan(common);
+        this.rescanned = this.scanned - common;
+        this.finish();
+        return this.verdict;
+    }//End update()
+
+    /**
+     * Reads the text from a checkpoint to the end or the first character that is not allowed.
+     */
+    private void scan(int index) {
+        int end = this.textLength;
+        this.invalidCharacter = -1;
+        while (index < end) {
+            char token = this.text[index];
+            if (Character.isDigit(token)) {
+                int start = index;
+                long number = 0;
+                while (index < end && Character.isDigit(this.text[index])) {
+                    if (number <= Integer.MAX_VALUE) {
+                        number = number * 10 + Character.digit(this.text[index], 10);
+                    }
+                    ++index;
+                }
+                int card = 0;
+                if (number > Integer.MAX_VALUE) {
+                    this.numberError = this.numberError < 0 ? start : this.numberError;
+                } else if (this.hand != null) {
+                    card = this.useCard((int) number);
+                    if (card == 0) {
+                        this.mismatch = this.mismatch < 0 ? start : this.mismatch;
+                    }
+                }
+                this.countNumber(card);
+                if (!this.expectOperand) {
+                    this.orderError = this.orderError < 0 ? start : this.orderError;
+                }
+                this.pushValue(number > Integer.MAX_VALUE ? 0 : Rational.valueOf((int) number));
+                this.expectOperand = false;
+                this.mark(index);
+                continue;
+            }
+
+            switch (token) {
+                case '(':
+                    if (!this.expectOperand) {
+                        this.orderError = this.orderError < 0 ? index : this.orderError;
+                    }
+                    this.pushOperator(token, index);
+                    ++this.openCount;
+                    break;
+                case ')':
+                    if (this.expectOperand) {
+                        this.orderError = this.orderError < 0 ? index : this.orderError;
+                    }
+                    //Pop operators until the matching '('
+                    while (this.operatorTop >= 0 && this.operators[this.operatorTop] != '(') {
+                        this.apply(this.popOperator());
+                    }
+                    if (this.operatorTop < 0) {
+                        this.orderError = this.orderError < 0 ? index : this.orderError;
+                    } else {
+                        this.popOperator();
+                        --this.openCount;
+                    }
+                    this.expectOperand = false;
+                    break;
+                case '+':
+                case '-':
+                case '*':
+                case '/':
+                    if (this.expectOperand) {
+                        this.orderError = this.orderError < 0 ? index : this.orderError;
+                    }
+                    //Pop operators of equal or greater precedence, stopping at a '('
+                    while (this.operatorTop >= 0 && this.operators[this.operatorTop] != '('
+                            && precedence(this.operators[this.operatorTop]) >= precedence(token)) {
+                        this.apply(this.popOperator());
+                    }
+                    this.pushOperator(token, index);
+                    this.expectOperand = true;
+                    break;
+                default:
+                    this.invalidCharacter = index;
+                    this.scanned = index;
+                    return;
+            }
+            this.mark(++index);
+        }//End while loop
+        this.scanned = end;
+    }//End scan()
+
+    /**
+     * Works out the verdict and the value of the expression as it stands, without changing the saved state.
+     */
+    private void finish() {
+        this.value = 0;
+        if (this.invalidCharacter >= 0) {
+            this.verdict = Verdict.INVALID_CHARACTER;
+            this.errorPosition = this.invalidCharacter;
+            return;
+        }
+        int order = this.orderError;
+        if (this.expectOperand) {
+            order = order < 0 ? this.textLength : order;
+        }
+        //Any '(' left was never closed, the lowest one on the stack is the first in the text
+        for (int entry = this.operatorTop; entry >= 0; entry = this.operatorBelow[entry]) {
+            if (this.operators[entry] == '(') {
+                int open = this.operatorPositions[entry];
+                order = order < 0 ? open : Math.min(order, open);
+            }
+        }
+
+        this.errorPosition = -1;
+        if (this.hand != null && this.numberCount < this.hand.length) {
+            this.verdict = Verdict.TOO_FEW_NUMBERS;
+        } else if (this.numberError >= 0) {
+            this.verdict = Verdict.NUMBER_ERROR;
+            this.errorPosition = this.numberError;
+        } else if (this.hand != null && (this.mismatch >= 0 || this.numberCount != this.hand.length)) {
+            this.verdict = Verdict.NUMBERS_MISMATCH;
+            this.errorPosition = this.mismatch;
+        } else if (order >= 0) {
+            this.verdict = Verdict.OPERATOR_ORDER;
+            this.errorPosition = order;
+        } else {
+            this.verdict = null;
+        }
+
+        if (this.orderError < 0 && this.numberError < 0 && !this.expectOperand && this.textLength > 0) {
+            this.value = this.closeParentheses();
+        }
+    }//End finish()
+
+    /**
+     * Applies the operators left on the stack to a copy of the partial results.
+     * @return The value of the expression with every open parenthesis closed, or 0 if it can not be worked out.
+     */
+    private long closeParentheses() {
+        int size = 0;
+        for (int entry = this.valueTop; entry >= 0; entry = this.valueBelow[entry]) {
+            if (size == this.scratch.length) {
+                this.scratch = Arrays.copyOf(this.scratch, size * 2);
+            }
+            this.scratch[size++] = this.values[entry];
+        }
+        //The copy is upside down, so the top of the stack is at the start
+        int top = 0;
+        for (int entry = this.operatorTop; entry >= 0; entry = this.operatorBelow[entry]) {
+            char operator = this.operators[entry];
+            if (operator == '(') {
+                continue;
+            }
+            if (size - top < 2) {
+                return 0;
+            }
+            long right = this.scratch[top++];
+            this.scratch[top] = combine(operator, this.scratch[top], right);
+        }
+        return size - top == 1 ? this.scratch[top] : 0;
+    }
+
+    /**
+     * Pops two partial results and pushes the result of the operator, as the program would when evaluated.
+     */
+    private void apply(char operator) {
+        long right = this.popValue();
+        long left = this.popValue();
+        this.pushValue(combine(operator, left, right));
+    }
+
+    /**
+     * @return The result of the operator, or 0 if either operand is unknown or it can not be worked out.
+     */
+    private static long combine(char operator, long left, long right) {
+        if (left == 0 || right == 0) {
+            return 0;
+        }
+        int n1 = Rational.numerator(left);
+        int d1 = Rational.denominator(left);
+        int n2 = Rational.numerator(right);
+        int d2 = Rational.denominator(right);
+        try {
+            switch (operator) {
+                case '+':
+                    return Rational.add(n1, d1, n2, d2);
+                case '-':
+                    return Rational.subtract(n1, d1, n2, d2);
+                case '*':
+                    return Rational.multiply(n1, d1, n2, d2);
+                default:
+                    return Rational.divide(n1, d1, n2, d2);
+            }
+        } catch (ArithmeticException err) {
+            return 0; //Division by zero or a fraction too large
+        }
+    }
+
+    private void pushOperator(char operator, int position) {
+        if (this.operatorsUsed == this.operators.length) {
+            int capacity = this.operatorsUsed * 2;
+            this.operators = Arrays.copyOf(this.operators, capacity);
+            this.operatorPositions = Arrays.copyOf(this.operatorPositions, capacity);
+            this.operatorBelow = Arrays.copyOf(this.operatorBelow, capacity);
+        }
+        this.operators[this.operatorsUsed] = operator;
+        this.operatorPositions[this.operatorsUsed] = position;
+        this.operatorBelow[this.operatorsUsed] = this.operatorTop;
+        this.operatorTop = this.operatorsUsed++;
+    }
+
+    /**
+     * Moves the top down a level. The entry stays in the array since earlier checkpoints may still use it.
+     */
+    private char popOperator() {
+        char operator = this.operators[this.operatorTop];
+        this.operatorTop = this.operatorBelow[this.operatorTop];
+        return operator;
+    }
+
+    private void pushValue(long rational) {
+        if (this.valuesUsed == this.values.length) {
+            this.values = Arrays.copyOf(this.values, this.valuesUsed * 2);
+            this.valueBelow = Arrays.copyOf(this.valueBelow, this.valuesUsed * 2);
+        }
+        this.values[this.valuesUsed] = rational;
+        this.valueBelow[this.valuesUsed] = this.valueTop;
+        this.valueTop = this.valuesUsed++;
+    }
+
+    /**
+     * @return The top partial result, or 0 if the stack is empty because of an operator out of place.
+     */
+    private long popValue() {
+        if (this.valueTop < 0) {
+            return 0;
+        }
+        long rational = this.values[this.valueTop];
+        this.valueTop = this.valueBelow[this.valueTop];
+        return rational;
+    }
+
+    /**
+     * Crosses a number off the cards not yet used.
+     * @return The value of the card crossed off, or 0 if there was no unused card with this value.
+     */
+    private int useCard(int number) {
+        if (number < 1 || number > Rules.HIGHEST_VALUE || this.counts[number] == 0) {
+            return 0;
+        }
+        --this.counts[number];
+        return number;
+    }
+
+    /**
+     * Counts a number read, remembering the card it used so the card can be given back when going back.
+     * @param card The value of the card crossed off, or 0 if none was.
+     */
+    private void countNumber(int card) {
+        if (this.numberCount == this.numberCards.length) {
+            this.numberCards = Arrays.copyOf(this.numberCards, this.numberCount * 2);
+        }
+        this.numberCards[this.numberCount++] = card;
+    }
+
+    /**
+     * Saves a checkpoint at a position where a token starts.
+     */
+    private void mark(int index) {
+        if (index >= this.boundaries.length) {
+            this.boundaries = Arrays.copyOf(this.boundaries, Math.max(index + 1, this.boundaries.length * 2));
+            this.checkpoints = Arrays.copyOf(this.checkpoints, this.boundaries.length * STRIDE);
+        }
+        this.boundaries[index] = true;
+        this.save(index);
+    }
+
+    private void save(int index) {
+        int base = index * STRIDE;
+        this.checkpoints[base + OPERATOR_TOP] = this.operatorTop;
+        this.checkpoints[base + OPERATORS_USED] = this.operatorsUsed;
+        this.checkpoints[base + VALUE_TOP] = this.valueTop;
+        this.checkpoints[base + VALUES_USED] = this.valuesUsed;
+        this.checkpoints[base + NUMBER_COUNT] = this.numberCount;
+        this.checkpoints[base + NUMBER_ERROR] = this.numberError;
+        this.checkpoints[base + MISMATCH] = this.mismatch;
+        this.checkpoints[base + ORDER_ERROR] = this.orderError;
+        this.checkpoints[base + OPEN_COUNT] = this.openCount;
+        this.checkpoints[base + EXPECT_OPERAND] = this.expectOperand ? 1 : 0;
+    }
+
+    /**
+     * Goes back to the state saved at a position, giving back the cards used by the numbers after it.
+     */
+    private void restore(int index) {
+        int base = index * STRIDE;
+        int count = this.checkpoints[base + NUMBER_COUNT];
+        for (int i = count; i < this.numberCount; ++i) {
+            if (this.numberCards[i] != 0) {
+                ++this.counts[this.numberCards[i]];
+            }
+        }
+        this.operatorTop = this.checkpoints[base + OPERATOR_TOP];
+        this.operatorsUsed = this.checkpoints[base + OPERATORS_USED];
+        this.valueTop = this.checkpoints[base + VALUE_TOP];
+        this.valuesUsed = this.checkpoints[base + VALUES_USED];
+        this.numberCount = count;
+        this.numberError = this.checkpoints[base + NUMBER_ERROR];
+        this.mismatch = this.checkpoints[base + MISMATCH];
+        this.orderError = this.checkpoints[base + ORDER_ERROR];
+        this.openCount = this.checkpoints[base + OPEN_COUNT];
+        this.expectOperand = this.checkpoints[base + EXPECT_OPERAND] != 0;
+        //Checkpoints past this position belong to text that is about to be read again
+        for (int i = index + 1; i <= this.scanned && i < this.boundaries.length; ++i) {
+            this.boundaries[i] = false;
+        }
+        this.scanned = index;
+    }
+
+    /**
+     * Clears the state back to an empty expression and counts the cards of each value in the hand.
+     */
+    private void restart() {
+        this.operatorTop = -1;
+        this.operatorsUsed = 0;
+        this.valueTop = -1;
+        this.valuesUsed = 0;
+        this.numberCount = 0;
+        this.numberError = -1;
+        this.mismatch = -1;
+        this.orderError = -1;
+        this.openCount = 0;
+        this.expectOperand = true;
+        this.invalidCharacter = -1;
+        Arrays.fill(this.boundaries, false);
+        Arrays.fill(this.counts, 0);
+        if (this.hand != null) {
+            for (int value : this.hand) {
+                if (value >= 1 && value <= Rules.HIGHEST_VALUE) {
+                    ++this.counts[value];
+                }
+            }
+        }
+        this.finish();
+    }
+
+    private static int precedence(char operator) {
+        return (operator == '*' || operator == '/') ? 2 : 1;
+    }
+
+    /**
+     * @return The verdict of the last update, null if the expression passed every check.
+     */
+    public Verdict getVerdict() {
+        return this.verdict;
+    }
+
+    /**
+     * @return The position of the character where the first check failed, or -1 if it concerns the whole expression.
+     */
+    public int getErrorPosition() {
+        return this.errorPosition;
+    }
+
+    /**
+     * @return The number of numbers in the expression so far.
+     */
+    public int getNumberCount() {
+        return this.numberCount;
+    }
+
+    /**
+     * @return The number of cards crossed off by the numbers so far, always 0 without a hand.
+     */
+    public int getCardsUsed() {
+        int used = 0;
+        for (int i = 0; i < this.numberCount; ++i) {
+            used += this.numberCards[i] != 0 ? 1 : 0;
+        }
+        return used;
+    }
+
+    /**
+     * @return The number of '(' not yet closed.
+     */
+    public int getOpenParentheses() {
+        return this.openCount;
+    }
+
+    /**
+     * @return The value of the expression so far as a packed Rational, with any open parentheses closed,
+     *         or 0 if there is no value yet (an operator at the end, a token out of place or a division by zero).
+     */
+    public long getValue() {
+        return this.value;
+    }
+
+    /**
+     * @return The number of characters read by the last update, for checking that edits stay incremental.
+     */
+    public int getRescanned() {
+        return this.rescanned;
+    }
+}
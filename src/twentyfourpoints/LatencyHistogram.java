@@ -0,0 +1,121 @@
+package twentyfourpoints;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts how long an operation takes in buckets whose width grows with the time measured, in the same
+ * way as an HDR histogram: times under 16 nanoseconds each get a bucket, and every doubling above that is
+ * split into 8 buckets, so any percentile is known to within about 12%. Times up to about 18 minutes are
+ * told apart and longer ones go in the last bucket. Every bucket is a LongAdder, so many threads can
+ * record at once without contending on a single counter, and the count is the sum of the buckets.
+ * @version 2.0
+ */
+public class LatencyHistogram {
+
+    private static final int LINEAR = 16;     //Times below this each have their own bucket
+    private static final int SUB_BITS = 3;    //Each doubling is split into 2^SUB_BITS buckets
+    private static final int MAX_EXPONENT = 40;
+    private static final int BUCKETS = LINEAR + (MAX_EXPONENT - 3) * (1 << SUB_BITS);
+
+    private final LongAdder[] buckets = new LongAdder[BUCKETS];
+    private final LongAdder total = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public LatencyHistogram() {
+        for (int i = 0; i < BUCKETS; ++i) {
+            this.buckets[i] = new LongAdder();
+        }
+    }
+
+    private static int bucketOf(long nanos) {
+        if (nanos < LINEAR) {
+            return (int) Math.max(nanos, 0);
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(nanos); //At least 4
+        if (exponent > MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) (nanos >>> (exponent - SUB_BITS)) & ((1 << SUB_BITS) - 1);
+        return LINEAR + (exponent - 4) * (1 << SUB_BITS) + sub;
+    }
+
+    /**
+     * @return The largest time that falls in the bucket.
+     */
+    private static long highestIn(int bucket) {
+        if (bucket < LINEAR) {
+            return bucket;
+        }
+        int exponent = (bucket - LINEAR) / (1 << SUB_BITS) + 4;
+        int sub = (bucket - LINEAR) % (1 << SUB_BITS);
+        return (((long) (1 << SUB_BITS) + sub + 1) << (exponent - SUB_BITS)) - 1;
+    }
+
+    /**
+     * @param nanos The time taken, in nanoseconds.
+     */
+    public void record(long nanos) {
+        this.buckets[bucketOf(nanos)].increment();
+        this.total.add(nanos);
+        this.max.accumulate(nanos);
+    }
+
+    public long getCount() {
+        long count = 0;
+        for (LongAdder bucket : this.buckets) {
+            count += bucket.sum();
+        }
+        return count;
+    }
+
+    /**
+     * @return The average time recorded in nanoseconds, 0 if nothing was recorded.
+     */
+    public double getMean() {
+        long count = this.getCount();
+        return count == 0 ? 0 : (double) this.total.sum() / count;
+    }
+
+    public long getMax() {
+        return this.max.get();
+    }
+
+    /**
+     * Finds the time that the given fraction of recorded times were at or below. While other threads are
+     * recording the answer may be slightly out of date, but it is never made up of half updated buckets.
+     * @param fraction The fraction from 0 to 1, such as 0.99 for the 99th percentile.
+     * @return The time in nanoseconds, rounded up to the top of its bucket, 0 if nothing was recorded.
+     */
+    public long getPercentile(double fraction) {
+        long[] counts = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            counts[i] = this.buckets[i].sum();
+            count += counts[i];
+        }
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; ++i) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(highestIn(i), this.getMax());
+            }
+        }
+        return this.getMax();
+    }
+
+    /**
+     * Clears every time recorded. Times recorded during the reset may be partly kept.
+     */
+    public void reset() {
+        for (LongAdder bucket : this.buckets) {
+            bucket.reset();
+        }
+        this.total.reset();
+        this.max.reset();
+    }
+}
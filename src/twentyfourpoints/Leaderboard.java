@@ -0,0 +1,222 @@
+package twentyfourpoints;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Ranks players by the number of hands they solved, then by the total time they took to solve them, fastest
+ * first. Players who solved the same number in the same time are ranked by when they joined.
+ *
+ * The ranking is a ConcurrentSkipListSet of standings. Players are spread over a few stripes, each with a lock
+ * and a stamp. Scoring a player only takes the lock of that player's stripe, so players on other stripes are
+ * scored in parallel, and the stamp is made odd while the player's old standing is swapped for the new one
+ * and even again once it is done. Each stripe also keeps the better of the two standings of its last change.
+ * top() never locks, so reading never holds up scoring. It reads the ranking and checks each stripe's stamp
+ * afterwards: a stripe that did not change, or changed once with both standings below the last one read,
+ * can not have moved anything that was read. If any other stripe changed it reads again, waiting a little
+ * longer each time, so a read only has to wait for the writers that touch the part of the ranking it reads.
+ * @version 2.0
+ */
+public class Leaderboard {
+
+    /**
+     * One player's place on the leaderboard. Standings are immutable, a new one replaces the old on every solve.
+     */
+    public static final class Standing implements Comparable<Standing> {
+        private final int player;
+        private final int solved;
+        private final long time;
+
+        Standing(int player, int solved, long time) {
+            this.player = player;
+            this.solved = solved;
+            this.time = time;
+        }
+
+        public int getPlayer() {
+            return this.player;
+        }
+
+        public int getSolved() {
+            return this.solved;
+        }
+
+        /**
+         * @return The total nanoseconds taken to solve the hands that were solved.
+         */
+        public long getTime() {
+            return this.time;
+        }
+
+        @Override
+        public int compareTo(Standing other) {
+            if (this.solved != other.solved) {
+                return Integer.compare(other.solved, this.solved); //Most solved first
+            }
+            if (this.time != other.time) {
+                return Long.compare(this.time, other.time);
+            }
+            return Integer.compare(this.player, other.player);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Standing && this.compareTo((Standing) other) == 0;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.player * 31 + this.solved;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("player %d: %d solved in %.3f s", this.player, this.solved, this.time / 1e9);
+        }
+    }//End class Standing
+
+    private static final int STRIPES = 16; //A power of two
+    private static final int SPINS = 16;   //Reads retried straight away before top() starts yielding
+
+    private final ConcurrentSkipListSet<Standing> ranking = new ConcurrentSkipListSet<>();
+    private final ConcurrentHashMap<Integer, Standing> standings = new ConcurrentHashMap<>();
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+    private final AtomicLongArray stamps = new AtomicLongArray(STRIPES); //Odd while a stripe is being changed
+    //The better of the old and new standing of each stripe's last change, set while its stamp is odd
+    private final AtomicReferenceArray<Standing> changed = new AtomicReferenceArray<>(STRIPES);
+
+    /**
+     * Create an empty leaderboard.
+     */
+    public Leaderboard() {
+        for (int i = 0; i < STRIPES; ++i) {
+            this.locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Adds a player with nothing solved, if not already on the leaderboard.
+     */
+    public void join(int player) {
+        int stripe = player & (STRIPES - 1);
+        this.locks[stripe].lock();
+        try {
+            if (this.standings.get(player) == null) {
+                this.replace(stripe, null, new Standing(player, 0, 0));
+            }
+        } finally {
+            this.locks[stripe].unlock();
+        }
+    }
+
+    /**
+     * Counts a hand solved by a player, adding the player if needed.
+     * @param time The nanoseconds the player took to solve it.
+     */
+    public void recordSolve(int player, long time) {
+        int stripe = player & (STRIPES - 1);
+        this.locks[stripe].lock();
+        try {
+            Standing old = this.standings.get(player);
+            this.replace(stripe, old, old == null ? new Standing(player, 1, time)
+                    : new Standing(player, old.solved + 1, old.time + time));
+        } finally {
+            this.locks[stripe].unlock();
+        }
+    }
+
+    /**
+     * Swaps a player's standing for a new one, holding the stripe's lock.
+     */
+    private void replace(int stripe, Standing old, Standing standing) {
+        this.stamps.incrementAndGet(stripe);
+        try {
+            this.changed.set(stripe, old == null || standing.compareTo(old) < 0 ? standing : old);
+            this.ranking.add(standing);
+            if (old != null) {
+                this.ranking.remove(old);
+            }
+            this.standings.put(standing.player, standing);
+        } finally {
+            this.stamps.incrementAndGet(stripe);
+        }
+    }
+
+    /**
+     * @return The player's standing, or null if the player is not on the leaderboard.
+     */
+    public Standing get(int player) {
+        return this.standings.get(player);
+    }
+
+    /**
+     * Reads the best standings as they were at one moment, with every player listed once.
+     * @param count The most standings to return.
+     * @return The best standings, best first.
+     */
+    public List<Standing> top(int count) {
+        long[] before = new long[STRIPES];
+        for (int attempt = 0; ; ++attempt) {
+            if (attempt > SPINS) {
+                Thread.yield();
+            } else if (attempt > 0) {
+                Thread.onSpinWait();
+            }
+            boolean quiet = true;
+            for (int i = 0; i < STRIPES; ++i) {
+                before[i] = this.stamps.get(i);
+                quiet &= (before[i] & 1) == 0;
+            }
+            if (!quiet) {
+                continue;
+            }
+            List<Standing> top = new ArrayList<>(Math.min(count, 64));
+            for (Standing standing : this.ranking) {
+                if (top.size() == count) {
+                    break;
+                }
+                top.add(standing);
+            }
+            //With fewer than count read, every standing was read and any change matters
+            Standing last = top.size() == count && count > 0 ? top.get(count - 1) : null;
+            if (this.unchanged(before, last)) {
+                return top;
+            }
+        }
+    }//End top()
+
+    /**
+     * Checks that no stripe changed a standing at or above the last one read since the stamps were taken.
+     * @param last The last standing read, or null if any change matters.
+     */
+    private boolean unchanged(long[] before, Standing last) {
+        for (int i = 0; i < STRIPES; ++i) {
+            long stamp = this.stamps.get(i);
+            if (stamp == before[i]) {
+                continue;
+            }
+            if (last == null || stamp != before[i] + 2) {
+                return false;
+            }
+            //One change: it is harmless if both its standings rank below the last one read. The stamp is
+            //read again in case another change started while reading the standing.
+            Standing change = this.changed.get(i);
+            if (change.compareTo(last) <= 0 || this.stamps.get(i) != stamp) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The number of players on the leaderboard.
+     */
+    public int size() {
+        return this.standings.size();
+    }
+}
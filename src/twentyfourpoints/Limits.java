@@ -0,0 +1,88 @@
+package twentyfourpoints;
+
+/**
+ * Bounds on the size of an expression, for checking answers that may come from anyone, such as over the
+ * network or from a file of submissions. A Tokenizer given Limits stops reading an expression as soon as it
+ * goes over one of them, so a hostile expression (megabytes of digits, thousands of nested parentheses)
+ * costs no more to reject than one at the limits. No working space grows past what the limits allow.
+ *
+ * The default limits are far above anything a real answer needs: a hand of eight cards written with a
+ * pair of parentheses around every number still fits easily.
+ * @version 2.0
+ */
+public final class Limits {
+
+    public static final Limits DEFAULT = new Limits(256, 32, 9, 64);
+
+    /**
+     * The limits that can be broken.
+     */
+    public enum Limit {
+        LENGTH,   //Characters in the expression
+        DEPTH,    //Parentheses open at one time
+        DIGITS,   //Digits in a single number
+        OPERATORS //Operators in the expression
+    }
+
+    private static final int MAX_DIGITS = 9; //Every number with 9 digits fits in an int
+
+    private final int maxLength;
+    private final int maxDepth;
+    private final int maxDigits;
+    private final int maxOperators;
+
+    /**
+     * @param maxLength The most characters an expression may have.
+     * @param maxDepth The most parentheses that may be open at one time.
+     * @param maxDigits The most digits a number may have, from 1 to 9.
+     * @param maxOperators The most +, -, * and / an expression may have.
+     */
+    public Limits(int maxLength, int maxDepth, int maxDigits, int maxOperators) {
+        if (maxLength < 1 || maxDepth < 0 || maxDigits < 1 || maxDigits > MAX_DIGITS || maxOperators < 0) {
+            throw new IllegalArgumentException("Limits must be positive and numbers can have at most "
+                    + MAX_DIGITS + " digits");
+        }
+        this.maxLength = maxLength;
+        this.maxDepth = maxDepth;
+        this.maxDigits = maxDigits;
+        this.maxOperators = maxOperators;
+    }
+
+    public int getMaxLength() {
+        return this.maxLength;
+    }
+
+    public int getMaxDepth() {
+        return this.maxDepth;
+    }
+
+    public int getMaxDigits() {
+        return this.maxDigits;
+    }
+
+    public int getMaxOperators() {
+        return this.maxOperators;
+    }
+
+    /**
+     * @return A message saying which limit was broken.
+     */
+    public String describe(Limit limit) {
+        switch (limit) {
+            case LENGTH:
+                return "The expression is longer than " + this.maxLength + " characters";
+            case DEPTH:
+                return "Parentheses are nested more than " + this.maxDepth + " deep";
+            case DIGITS:
+                return "A number has more than " + this.maxDigits + " digits";
+            default:
+                return "The expression has more than " + this.maxOperators + " operators";
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Limits[length " + this.maxLength + ", depth " + this.maxDepth + ", digits " + this.maxDigits
+                + ", operators " + this.maxOperators + "]";
+    }
+}
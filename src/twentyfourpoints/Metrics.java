@@ -0,0 +1,287 @@
+package twentyfourpoints;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToDoubleFunction;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters and timers for the hot paths of the game engine: parsing, evaluating, checking the numbers used,
+ * dealing and checking whole answers, along with the errors and verdicts seen.
+ *
+ * Metrics are turned on by starting the JVM with -Dtwentyfourpoints.metrics=true. Every call site checks
+ * ENABLED, a static final flag, so when metrics are off the JIT removes the timing code altogether.
+ * When on, they are published through JMX as "twentyfourpoints:type=Metrics", and adding
+ * -Dtwentyfourpoints.metrics.dump=seconds also prints a snapshot on that period.
+ * All counters are LongAdders and timers are LatencyHistograms, so they can be updated from any thread.
+ *
+ * Timing pattern at a call site:
+ *
+ *     long start = Metrics.start();
+ *     ...
+ *     Metrics.stop(Metrics.Timer.PARSE, start);
+ * @version 2.0
+ */
+public final class Metrics {
+
+    public static final boolean ENABLED = Boolean.getBoolean("twentyfourpoints.metrics");
+    public static final String OBJECT_NAME = "twentyfourpoints:type=Metrics";
+
+    /**
+     * The operations that are timed.
+     */
+    public enum Timer {
+        PARSE,        //Expression.infixToPostfix() and Tokenizer.parse(), which also checks the numbers used
+        EVALUATE,     //Running a compiled program
+        NUMBER_CHECK, //Rules.numbersMatch()
+        DEAL,         //Dealing a hand
+        VERIFY        //Checking a whole answer with a Verifier
+    }
+
+    /**
+     * The kinds of errors counted.
+     */
+    public enum ErrorType {
+        STACK,         //StackException
+        EXPRESSION,    //ExpressionException
+        NUMBER_FORMAT, //NumberFormatException
+        LIMIT          //Expressions rejected for breaking their Limits
+    }
+
+    private static Thread dumper;
+
+    /**
+     * The counters and timers, made the first time one is used. When metrics are off that is only if
+     * they are read, so checking an answer never pays for making some 1,500 counters that stay at 0.
+     */
+    private static final class Counters {
+        private static final LatencyHistogram[] TIMERS = new LatencyHistogram[Timer.values().length];
+        private static final LongAdder[] ERRORS = new LongAdder[ErrorType.values().length];
+        private static final LongAdder[] VERDICTS = new LongAdder[Verdict.values().length];
+
+        static {
+            for (int i = 0; i < TIMERS.length; ++i) {
+                TIMERS[i] = new LatencyHistogram();
+            }
+            for (int i = 0; i < ERRORS.length; ++i) {
+                ERRORS[i] = new LongAdder();
+            }
+            for (int i = 0; i < VERDICTS.length; ++i) {
+                VERDICTS[i] = new LongAdder();
+            }
+        }
+    }//End class Counters
+
+    static {
+        if (ENABLED) {
+            registerMBean();
+            long period = Long.getLong("twentyfourpoints.metrics.dump", 0);
+            if (period > 0) {
+                startDumping(period * 1000, System.out);
+            }
+        }
+    }
+
+    private Metrics() {
+    }
+
+    /**
+     * @return The time to pass to stop(), or 0 if metrics are off.
+     */
+    public static long start() {
+        return ENABLED ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the time since start() was called.
+     */
+    public static void stop(Timer timer, long start) {
+        if (ENABLED) {
+            Counters.TIMERS[timer.ordinal()].record(System.nanoTime() - start);
+        }
+    }
+
+    public static void error(ErrorType type) {
+        if (ENABLED) {
+            Counters.ERRORS[type.ordinal()].increment();
+        }
+    }
+
+    public static void verdict(Verdict verdict) {
+        if (ENABLED) {
+            Counters.VERDICTS[verdict.ordinal()].increment();
+        }
+    }
+
+    public static LatencyHistogram getTimer(Timer timer) {
+        return Counters.TIMERS[timer.ordinal()];
+    }
+
+    public static long getErrorCount(ErrorType type) {
+        return Counters.ERRORS[type.ordinal()].sum();
+    }
+
+    public static long getVerdictCount(Verdict verdict) {
+        return Counters.VERDICTS[verdict.ordinal()].sum();
+    }
+
+    /**
+     * Clears every counter and timer.
+     */
+    public static void reset() {
+        for (LatencyHistogram timer : Counters.TIMERS) {
+            timer.reset();
+        }
+        for (LongAdder error : Counters.ERRORS) {
+            error.reset();
+        }
+        for (LongAdder verdict : Counters.VERDICTS) {
+            verdict.reset();
+        }
+    }
+
+    /**
+     * @return Every metric as text, one timer per line followed by the errors and verdicts that were seen.
+     */
+    public static String snapshot() {
+        StringBuilder snapshot = new StringBuilder(512);
+        for (Timer timer : Timer.values()) {
+            LatencyHistogram histogram = getTimer(timer);
+            snapshot.append(String.format("%-12s count %d, mean %.2f us, p50 %.2f us, p99 %.2f us, p99.9 %.2f us, max %.2f us%n",
+                    timer, histogram.getCount(), histogram.getMean() / 1e3, histogram.getPercentile(0.5) / 1e3,
+                    histogram.getPercentile(0.99) / 1e3, histogram.getPercentile(0.999) / 1e3, histogram.getMax() / 1e3));
+        }
+        snapshot.append("errors:  ");
+        for (ErrorType type : ErrorType.values()) {
+            snapshot.append(' ').append(type).append('=').append(getErrorCount(type));
+        }
+        snapshot.append(System.lineSeparator()).append("verdicts:");
+        for (Verdict verdict : Verdict.values()) {
+            long count = getVerdictCount(verdict);
+            if (count > 0) {
+                snapshot.append(' ').append(verdict).append('=').append(count);
+            }
+        }
+        return snapshot.append(System.lineSeparator()).toString();
+    }
+
+    /**
+     * Publishes the metrics through the platform MBean server, once.
+     */
+    public static synchronized void registerMBean() {
+        try {
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (!ManagementFactory.getPlatformMBeanServer().isRegistered(name)) {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(new Bean(), name);
+            }
+        } catch (JMException err) {
+            System.err.println("Could not register the metrics MBean: " + err.getMessage());
+        }
+    }
+
+    /**
+     * Prints a snapshot on a daemon thread every period until the JVM exits. Only one dump runs at a time.
+     * @param periodMillis Milliseconds between snapshots.
+     * @param out Where to print the snapshots.
+     */
+    public static synchronized void startDumping(long periodMillis, PrintStream out) {
+        if (dumper != null) {
+            return;
+        }
+        dumper = new Thread(() -> {
+            try {
+                while (true) {
+                    Thread.sleep(periodMillis);
+                    out.println("Metrics at " + Instant.now());
+                    out.print(snapshot());
+                    out.flush();
+                }
+            } catch (InterruptedException err) {
+                //Stop dumping
+            }
+        }, "metrics dump");
+        dumper.setDaemon(true);
+        dumper.start();
+    }
+
+    /**
+     * The JMX view of the metrics.
+     */
+    private static class Bean implements MetricsMXBean {
+
+        @Override
+        public boolean isEnabled() {
+            return ENABLED;
+        }
+
+        @Override
+        public Map<String, Long> getCounts() {
+            Map<String, Long> counts = new LinkedHashMap<>();
+            for (Timer timer : Timer.values()) {
+                counts.put(timer.name(), getTimer(timer).getCount());
+            }
+            return counts;
+        }
+
+        private static Map<String, Double> micros(ToDoubleFunction<LatencyHistogram> statistic) {
+            Map<String, Double> values = new LinkedHashMap<>();
+            for (Timer timer : Timer.values()) {
+                values.put(timer.name(), statistic.applyAsDouble(getTimer(timer)) / 1e3);
+            }
+            return values;
+        }
+
+        @Override
+        public Map<String, Double> getMeanMicros() {
+            return micros(LatencyHistogram::getMean);
+        }
+
+        @Override
+        public Map<String, Double> getP50Micros() {
+            return micros(histogram -> histogram.getPercentile(0.5));
+        }
+
+        @Override
+        public Map<String, Double> getP99Micros() {
+            return micros(histogram -> histogram.getPercentile(0.99));
+        }
+
+        @Override
+        public Map<String, Double> getMaxMicros() {
+            return micros(LatencyHistogram::getMax);
+        }
+
+        @Override
+        public Map<String, Long> getErrors() {
+            Map<String, Long> errors = new LinkedHashMap<>();
+            for (ErrorType type : ErrorType.values()) {
+                errors.put(type.name(), getErrorCount(type));
+            }
+            return errors;
+        }
+
+        @Override
+        public Map<String, Long> getVerdicts() {
+            Map<String, Long> verdicts = new LinkedHashMap<>();
+            for (Verdict verdict : Verdict.values()) {
+                verdicts.put(verdict.name(), getVerdictCount(verdict));
+            }
+            return verdicts;
+        }
+
+        @Override
+        public String getSnapshot() {
+            return snapshot();
+        }
+
+        @Override
+        public void reset() {
+            Metrics.reset();
+        }
+    }//End class Bean
+}
@@ -0,0 +1,34 @@
+package twentyfourpoints;
+
+import java.util.Map;
+
+/**
+ * The metrics of the game engine as seen through JMX, registered as "twentyfourpoints:type=Metrics".
+ * Times are in microseconds and maps are keyed by the name of the timer, error or verdict.
+ * @version 2.0
+ */
+public interface MetricsMXBean {
+
+    boolean isEnabled();
+
+    Map<String, Long> getCounts();
+
+    Map<String, Double> getMeanMicros();
+
+    Map<String, Double> getP50Micros();
+
+    Map<String, Double> getP99Micros();
+
+    Map<String, Double> getMaxMicros();
+
+    Map<String, Long> getErrors();
+
+    Map<String, Long> getVerdicts();
+
+    /**
+     * @return Every metric as text, the same as a periodic dump.
+     */
+    String getSnapshot();
+
+    void reset();
+}
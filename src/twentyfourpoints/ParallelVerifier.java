@@ -0,0 +1,241 @@
+package twentyfourpoints;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Checks a file of submissions on several threads at once. Records are read in order and copied into
+ * batches, each batch is checked by one of the worker threads, and the verdicts are written in the same
+ * order as the input. Only a fixed number of batches exist and they are reused, so once every batch is in
+ * use the reader waits for the writer to catch up and memory use stays bounded.
+ * Each worker thread keeps its own RecordVerifier for as long as it runs, and all of them share the cache if one is set.
+ *
+ *     java twentyfourpoints.ParallelVerifier input.txt verdicts.txt [threads] [batch size] [batches] [cache megabytes]
+ * @version 2.0
+ */
+public class ParallelVerifier {
+
+    public static final int DEFAULT_BATCH_SIZE = 4096;
+
+    /**
+     * A group of records copied out of the input file, along with their verdicts once checked.
+     */
+    private static class Batch {
+        private byte[] data = new byte[64 * 1024]; //The bytes of every record, one after another
+        private final int[] offsets;
+        private final int[] lengths;
+        private final Verdict[] verdicts;
+        private int size; //Number of records held
+        private int used; //Number of bytes of 'data' used
+
+        Batch(int capacity) {
+            this.offsets = new int[capacity];
+            this.lengths = new int[capacity];
+            this.verdicts = new Verdict[capacity];
+        }
+
+        boolean isFull() {
+            return this.size == this.offsets.length;
+        }
+
+        void clear() {
+            this.size = 0;
+            this.used = 0;
+        }
+
+        /**
+         * Copies a record into the batch, a start of -1 marks a record that could not be read.
+         */
+        void add(ByteBuffer window, int start, int end) {
+            int length = start < 0 ? -1 : end - start;
+            if (length > 0) {
+                if (this.used + length > this.data.length) {
+                    byte[] larger = new byte[Math.max(this.data.length * 2, this.used + length)];
+                    System.arraycopy(this.data, 0, larger, 0, this.used);
+                    this.data = larger;
+                }
+                window.get(start, this.data, this.used, length);
+            }
+            this.offsets[this.size] = this.used;
+            this.lengths[this.size] = length;
+            this.used += Math.max(length, 0);
+            ++this.size;
+        }
+
+        /**
+         * Checks every record in the batch.
+         */
+        Batch verify(RecordVerifier verifier) {
+            for (int i = 0; i < this.size; ++i) {
+                this.verdicts[i] = this.lengths[i] < 0
+                        ? Verdict.MALFORMED_RECORD
+                        : verifier.verify(this.data, this.offsets[i], this.lengths[i]);
+            }
+            return this;
+        }
+    }//End class Batch
+
+    private final int threads;
+    private final int batchSize;
+    private final int batches;
+    private final RecordReader reader;
+    private VerdictCache cache; //Null if verdicts are not cached
+
+    /**
+     * Uses one worker per processor, with four batches per worker.
+     */
+    public ParallelVerifier() {
+        this(Runtime.getRuntime().availableProcessors(), DEFAULT_BATCH_SIZE,
+                4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param threads The number of worker threads.
+     * @param batchSize The number of records in each batch.
+     * @param batches The number of batches, which is the most that can be read but not yet written.
+     */
+    public ParallelVerifier(int threads, int batchSize, int batches) {
+        this(threads, batchSize, batches, new RecordReader());
+    }
+
+    public ParallelVerifier(int threads, int batchSize, int batches, RecordReader reader) {
+        if (threads < 1 || batchSize < 1 || batches < 1) {
+            throw new IllegalArgumentException("Threads, batch size and batches must be at least 1");
+        }
+        this.threads = threads;
+        this.batchSize = batchSize;
+        this.batches = batches;
+        this.reader = reader;
+    }
+
+    /**
+     * @param cache A cache of verdicts shared by the workers, or null to check every record.
+     */
+    public void setCache(VerdictCache cache) {
+        this.cache = cache;
+    }
+
+    /**
+     * Checks every record in the input file and writes the verdicts in the same order.
+     * @param input The file of submissions.
+     * @param writer Receives the verdict of each record.
+     * @return The number of records checked.
+     */
+    public long verify(Path input, VerdictWriter writer) throws IOException, InterruptedException {
+        BlockingQueue<Batch> free = new ArrayBlockingQueue<>(this.batches);
+        for (int i = 0; i < this.batches; ++i) {
+            free.add(new Batch(this.batchSize));
+        }
+        //Batches waiting to be written, in the order they were read. A null batch marks the end of the input.
+        BlockingQueue<Future<Batch>> pending = new ArrayBlockingQueue<>(this.batches + 1);
+        ThreadLocal<RecordVerifier> verifiers = ThreadLocal.withInitial(() -> new RecordVerifier(this.cache));
+        ExecutorService workers = Executors.newFixedThreadPool(this.threads, runnable -> {
+            Thread thread = new Thread(runnable, "verifier");
+            thread.setDaemon(true);
+            return thread;
+        });
+        IOException[] readError = new IOException[1];
+
+        Thread readerThread = new Thread(() -> {
+            try {
+                Batch[] current = {free.take()};
+                this.reader.read(input, (window, start, end) -> {
+                    current[0].add(window, start, end);
+                    if (current[0].isFull()) {
+                        submit(current[0], workers, verifiers, pending);
+                        current[0] = take(free);
+                    }
+                });
+                if (current[0].size > 0) {
+                    submit(current[0], workers, verifiers, pending);
+                }
+            } catch (IOException err) {
+                readError[0] = err;
+            } catch (InterruptedException err) {
+                Thread.currentThread().interrupt();
+            } finally {
+                pending.add(CompletableFuture.completedFuture(null));
+            }
+        }, "record reader");
+        readerThread.setDaemon(true);
+        readerThread.start();
+
+        long records = 0;
+        try {
+            while (true) {
+                Batch batch = pending.take().get();
+                if (batch == null) {
+                    break;
+                }
+                for (int i = 0; i < batch.size; ++i) {
+                    writer.write(batch.verdicts[i]);
+                }
+                records += batch.size;
+                batch.clear();
+                free.add(batch);
+            }
+        } catch (ExecutionException err) {
+            throw new IllegalStateException("A worker failed to check a batch", err.getCause());
+        } finally {
+            readerThread.interrupt();
+            workers.shutdownNow();
+        }
+        readerThread.join();
+        if (readError[0] != null) {
+            throw readError[0];
+        }
+        return records;
+    }//End verify()
+
+    private static void submit(Batch batch, ExecutorService workers, ThreadLocal<RecordVerifier> verifiers,
+                               BlockingQueue<Future<Batch>> pending) {
+        pending.add(workers.submit(() -> batch.verify(verifiers.get())));
+    }
+
+    /**
+     * Waits for a free batch, turning an interruption into an IOException so it can leave the record handler.
+     */
+    private static Batch take(BlockingQueue<Batch> free) throws IOException {
+        try {
+            return free.take();
+        } catch (InterruptedException err) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a free batch");
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 2) {
+            System.err.println("Usage: java twentyfourpoints.ParallelVerifier <input file> <output file>"
+                    + " [threads] [batch size] [batches] [cache megabytes]");
+            System.exit(2);
+        }
+        int processors = Runtime.getRuntime().availableProcessors();
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : processors;
+        int batchSize = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_BATCH_SIZE;
+        int batches = args.length > 4 ? Integer.parseInt(args[4]) : 4 * threads;
+
+        ParallelVerifier parallelVerifier = new ParallelVerifier(threads, batchSize, batches);
+        VerdictCache cache = BatchVerifier.createCache(args, 5);
+        parallelVerifier.setCache(cache);
+
+        long start = System.nanoTime();
+        try (VerdictWriter writer = new VerdictWriter(Paths.get(args[1]))) {
+            long records = parallelVerifier.verify(Paths.get(args[0]), writer);
+            BatchVerifier.printSummary(writer, records, System.nanoTime() - start);
+        }
+        if (cache != null) {
+            System.out.println("Cache: " + cache);
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package twentyfourpoints;
+
+/**
+ * The operations shared by the stacks that store primitive values directly instead of boxing them.
+ * Each one also has push, pop and peek methods for its own type of value.
+ */
+public interface PrimitiveStackInterface {
+
+    /**
+     * @return The number of values in this stack.
+     */
+    public int getSize();
+
+    /**
+     * @return True if the stack is empty, otherwise false.
+     */
+    public boolean isEmpty();
+
+    /**
+     * Empties the stack while keeping its storage so it can be reused without allocating.
+     */
+    public void reset();
+}
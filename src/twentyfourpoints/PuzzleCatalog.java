@@ -0,0 +1,339 @@
+package twentyfourpoints;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scores every hand of four card values by how hard it is to solve and keeps them sorted by that score,
+ * so a random hand of a given difficulty can be picked in constant time without running the solver.
+ * A hand's difficulty runs from 1 (easiest) to 10 (hardest), hands with no solution have a difficulty of 0.
+ * It is made up of:
+ *  - how many distinct solutions the hand has, the fewer the harder (up to 5 points)
+ *  - whether every solution needs a fraction along the way, such as 8/(3-8/3) (2 points)
+ *  - whether every solution needs a division (1 point)
+ *  - whether every solution needs parentheses (1 point)
+ * Like the SolvabilityTable the catalog is built the first time it is needed, on several threads,
+ * written to disk and memory-mapped from then on.
+ *
+ * File layout (big-endian):
+ * header:   magic, version, number of entries (3 ints)
+ * bands:    position of the first entry of each difficulty, plus the number of entries (12 ints)
+ * entries:  sorted by difficulty then rank, each the rank (short), difficulty (byte), features (byte),
+ *           solution count (short) and the sorted values packed 4 bits each (short)
+ * ranks:    the position of each hand's entry, in order of rank (1 short per hand)
+ *
+ *     java twentyfourpoints.PuzzleCatalog [catalog file] [threads]
+ * @version 2.0
+ */
+public class PuzzleCatalog {
+
+    public static final Path DEFAULT_PATH = Paths.get("catalog.bin");
+    public static final int MAX_DIFFICULTY = 10;
+
+    //Bits of the features byte
+    public static final int NEEDS_FRACTIONS = 1;
+    public static final int NEEDS_DIVISION = 2;
+    public static final int NEEDS_PARENTHESES = 4;
+
+    private static final int MAGIC = 0x32345043; //"24PC"
+    private static final int VERSION = 1;
+    private static final int HAND_COUNT = SolvabilityTable.HAND_COUNT;
+    private static final int BANDS_OFFSET = 12;
+    private static final int ENTRIES_OFFSET = BANDS_OFFSET + (MAX_DIFFICULTY + 2) * 4;
+    private static final int ENTRY_SIZE = 8;
+    private static final int RANKS_OFFSET = ENTRIES_OFFSET + HAND_COUNT * ENTRY_SIZE;
+    private static final int FILE_SIZE = RANKS_OFFSET + HAND_COUNT * 2;
+
+    private final ByteBuffer catalog;
+    private final int[] bands = new int[MAX_DIFFICULTY + 2]; //Copied out of the header as they are read on every draw
+
+    /**
+     * @param catalog The contents of a catalog file, already checked to be valid.
+     */
+    private PuzzleCatalog(ByteBuffer catalog) {
+        this.catalog = catalog;
+        for (int i = 0; i < this.bands.length; ++i) {
+            this.bands[i] = catalog.getInt(BANDS_OFFSET + i * 4);
+        }
+    }
+
+    /**
+     * Memory-maps the catalog stored at the path given, building it first on one thread per processor
+     * if it does not exist or was written by a different version.
+     * @param path The location of the catalog file.
+     * @return The loaded catalog.
+     * @throws IOException If the catalog could not be read or written.
+     */
+    public static PuzzleCatalog load(Path path) throws IOException {
+        return load(path, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param path The location of the catalog file.
+     * @param threads The number of threads used if the catalog has to be built.
+     * @return The loaded catalog.
+     * @throws IOException If the catalog could not be read or written.
+     */
+    public static PuzzleCatalog load(Path path, int threads) throws IOException {
+        if (Files.isRegularFile(path)) {
+            MappedByteBuffer mapped = map(path);
+            if (isValid(mapped)) {
+                return new PuzzleCatalog(mapped);
+            }
+        }
+        //Write to a temporary file first so a partly written catalog is never loaded.
+        Path temporary = Files.createTempFile(path.toAbsolutePath().getParent(), "catalog", ".tmp");
+        try {
+            Files.write(temporary, build(threads).array());
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        return new PuzzleCatalog(map(path));
+    }
+
+    private static MappedByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    private static boolean isValid(ByteBuffer buffer) {
+        return buffer.capacity() == FILE_SIZE
+                && buffer.getInt(0) == MAGIC
+                && buffer.getInt(4) == VERSION
+                && buffer.getInt(8) == HAND_COUNT
+                && buffer.getInt(BANDS_OFFSET + (MAX_DIFFICULTY + 1) * 4) == HAND_COUNT;
+    }
+
+    /**
+     * Scores every hand, sharing the hands out between the threads one at a time since some take
+     * much longer to solve than others, then sorts them by difficulty.
+     * @param threads The number of threads to solve on.
+     * @return The contents of the catalog file.
+     */
+    static ByteBuffer build(int threads) {
+        //The sorted values of every hand, packed 4 bits each, in order of rank.
+        short[] hands = new short[HAND_COUNT];
+        for (int a = 1; a <= Rules.HIGHEST_VALUE; ++a) {
+            for (int b = a; b <= Rules.HIGHEST_VALUE; ++b) {
+                for (int c = b; c <= Rules.HIGHEST_VALUE; ++c) {
+                    for (int d = c; d <= Rules.HIGHEST_VALUE; ++d) {
+                        hands[SolvabilityTable.rank(a, b, c, d)] = (short) (a << 12 | b << 8 | c << 4 | d);
+                    }
+                }
+            }
+        }
+
+        byte[] difficulties = new byte[HAND_COUNT];
+        byte[] features = new byte[HAND_COUNT];
+        short[] counts = new short[HAND_COUNT];
+        AtomicInteger nextRank = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        try {
+            ArrayList<Future<?>> running = new ArrayList<>(threads);
+            for (int t = 0; t < threads; ++t) {
+                running.add(workers.submit(() -> {
+                    Solver solver = new Solver(Rules.TARGET);
+                    Solver integerSolver = new Solver(Rules.TARGET);
+                    integerSolver.setIntegerOnly(true);
+                    int[] values = new int[Rules.HAND_SIZE];
+                    for (int rank = nextRank.getAndIncrement(); rank < HAND_COUNT; rank = nextRank.getAndIncrement()) {
+                        unpack(hands[rank], values);
+                        ArrayList<String> solutions = solver.solve(values);
+                        int feature = score(solutions, integerSolver, values);
+                        features[rank] = (byte) feature;
+                        difficulties[rank] = (byte) difficulty(solutions.size(), feature);
+                        counts[rank] = (short) Math.min(solutions.size(), Short.MAX_VALUE);
+                    }
+                }));
+            }
+            //Each thread writes to its own ranks, waiting for every thread makes their writes visible here.
+            for (Future<?> worker : running) {
+                worker.get();
+            }
+        } catch (InterruptedException err) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while building the catalog", err);
+        } catch (ExecutionException err) {
+            throw new IllegalStateException("Failed to score a hand", err.getCause());
+        } finally {
+            workers.shutdownNow();
+        }
+
+        //Counting sort by difficulty, which keeps the hands of each difficulty in order of rank.
+        int[] bands = new int[MAX_DIFFICULTY + 2];
+        for (byte difficulty : difficulties) {
+            ++bands[difficulty + 1];
+        }
+        for (int i = 1; i < bands.length; ++i) {
+            bands[i] += bands[i - 1];
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(FILE_SIZE).order(ByteOrder.BIG_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(HAND_COUNT);
+        for (int band : bands) {
+            buffer.putInt(band);
+        }
+        int[] next = bands.clone();
+        for (int rank = 0; rank < HAND_COUNT; ++rank) {
+            int position = next[difficulties[rank]]++;
+            int entry = ENTRIES_OFFSET + position * ENTRY_SIZE;
+            buffer.putShort(entry, (short) rank);
+            buffer.put(entry + 2, difficulties[rank]);
+            buffer.put(entry + 3, features[rank]);
+            buffer.putShort(entry + 4, counts[rank]);
+            buffer.putShort(entry + 6, hands[rank]);
+            buffer.putShort(RANKS_OFFSET + rank * 2, (short) position);
+        }
+        return buffer;
+    }//End build()
+
+    /**
+     * Works out which features every solution of a hand has in common.
+     * @param solutions Every solution of the hand.
+     * @param integerSolver A solver limited to whole numbers.
+     * @param values The values of the hand.
+     * @return The features as bits, 0 if the hand has no solutions.
+     */
+    private static int score(ArrayList<String> solutions, Solver integerSolver, int[] values) {
+        if (solutions.isEmpty()) {
+            return 0;
+        }
+        int feature = NEEDS_DIVISION | NEEDS_PARENTHESES;
+        for (String solution : solutions) {
+            if (solution.indexOf('/') < 0) {
+                feature &= ~NEEDS_DIVISION;
+            }
+            if (solution.indexOf('(') < 0) {
+                feature &= ~NEEDS_PARENTHESES;
+            }
+        }
+        if (!integerSolver.isSolvable(values)) {
+            feature |= NEEDS_FRACTIONS;
+        }
+        return feature;
+    }
+
+    /**
+     * Turns the number of solutions and the features of a hand into its difficulty.
+     */
+    static int difficulty(int solutionCount, int feature) {
+        if (solutionCount == 0) {
+            return 0;
+        }
+        int difficulty = 1;
+        if (solutionCount == 1) {
+            difficulty += 5;
+        } else if (solutionCount <= 3) {
+            difficulty += 4;
+        } else if (solutionCount <= 8) {
+            difficulty += 3;
+        } else if (solutionCount <= 20) {
+            difficulty += 2;
+        } else if (solutionCount <= 50) {
+            difficulty += 1;
+        }
+        if ((feature & NEEDS_FRACTIONS) != 0) {
+            difficulty += 2;
+        }
+        if ((feature & NEEDS_DIVISION) != 0) {
+            difficulty += 1;
+        }
+        if ((feature & NEEDS_PARENTHESES) != 0) {
+            difficulty += 1;
+        }
+        return Math.min(difficulty, MAX_DIFFICULTY);
+    }
+
+    private static void unpack(int packed, int[] values) {
+        for (int i = 0; i < Rules.HAND_SIZE; ++i) {
+            values[i] = (packed >>> (12 - 4 * i)) & 0xF;
+        }
+    }
+
+    private int entryOf(int[] hand) {
+        return ENTRIES_OFFSET + this.catalog.getShort(RANKS_OFFSET + SolvabilityTable.rank(hand) * 2) * ENTRY_SIZE;
+    }
+
+    /**
+     * @param hand The values of the four cards, in any order.
+     * @return The difficulty of the hand from 1 to 10, or 0 if it can not be solved.
+     */
+    public int getDifficulty(int[] hand) {
+        return this.catalog.get(this.entryOf(hand) + 2);
+    }
+
+    /**
+     * @param hand The values of the four cards, in any order.
+     * @return The features every solution of the hand shares, as NEEDS_FRACTIONS, NEEDS_DIVISION and NEEDS_PARENTHESES bits.
+     */
+    public int getFeatures(int[] hand) {
+        return this.catalog.get(this.entryOf(hand) + 3);
+    }
+
+    /**
+     * @param hand The values of the four cards, in any order.
+     * @return The number of distinct solutions the Solver finds for the hand.
+     */
+    public int getSolutionCount(int[] hand) {
+        return this.catalog.getShort(this.entryOf(hand) + 4);
+    }
+
+    /**
+     * @return The number of hands with a difficulty from lowest to highest, inclusive.
+     */
+    public int getBandSize(int lowest, int highest) {
+        checkBand(lowest, highest);
+        return this.bands[highest + 1] - this.bands[lowest];
+    }
+
+    /**
+     * Picks a hand at random from the hands with a difficulty from lowest to highest, each equally likely.
+     * @param lowest The lowest difficulty allowed.
+     * @param highest The highest difficulty allowed.
+     * @param random The source of random numbers.
+     * @param values Filled with the values of the hand, in ascending order.
+     * @return False if no hand has a difficulty in the band, otherwise true.
+     */
+    public boolean draw(int lowest, int highest, SplittableRandom random, int[] values) {
+        int size = this.getBandSize(lowest, highest);
+        if (size == 0) {
+            return false;
+        }
+        int position = this.bands[lowest] + random.nextInt(size);
+        unpack(this.catalog.getShort(ENTRIES_OFFSET + position * ENTRY_SIZE + 6), values);
+        return true;
+    }
+
+    private static void checkBand(int lowest, int highest) {
+        if (lowest < 0 || highest > MAX_DIFFICULTY || lowest > highest) {
+            throw new IllegalArgumentException("Difficulty band must be within 0 to " + MAX_DIFFICULTY);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path path = args.length > 0 ? Paths.get(args[0]) : DEFAULT_PATH;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        long start = System.nanoTime();
+        PuzzleCatalog catalog = load(path, threads);
+        System.out.printf("Loaded %s in %.1f ms%n", path, (System.nanoTime() - start) / 1e6);
+        for (int difficulty = 0; difficulty <= MAX_DIFFICULTY; ++difficulty) {
+            System.out.printf("Difficulty %2d: %4d hands%n", difficulty, catalog.getBandSize(difficulty, difficulty));
+        }
+    }
+}
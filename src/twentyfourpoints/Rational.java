@@ -0,0 +1,107 @@
+package twentyfourpoints;
+
+/**
+ * Exact fractions stored as a numerator and denominator pair packed into a single long, so they can be
+ * returned and compared without creating any objects. The numerator is kept in the upper 32 bits and the
+ * denominator, which is always positive, in the lower 32 bits. Fractions are always in lowest terms.
+ * Any result that does not fit in two ints throws an ArithmeticException instead of wrapping around.
+ * @version 2.0
+ */
+public final class Rational {
+
+    private Rational() {
+    }
+
+    /**
+     * @param numerator The numerator of the fraction.
+     * @param denominator The denominator of the fraction, must be positive.
+     * @return The packed fraction, not reduced.
+     */
+    public static long pack(int numerator, int denominator) {
+        return ((long) numerator << 32) | (denominator & 0xFFFFFFFFL);
+    }
+
+    /**
+     * @param value A whole number.
+     * @return The whole number as a packed fraction.
+     */
+    public static long valueOf(int value) {
+        return pack(value, 1);
+    }
+
+    public static int numerator(long rational) {
+        return (int) (rational >> 32);
+    }
+
+    public static int denominator(long rational) {
+        return (int) rational;
+    }
+
+    /**
+     * @return True if the fraction is a whole number, otherwise false.
+     */
+    public static boolean isInteger(long rational) {
+        return denominator(rational) == 1;
+    }
+
+    public static long add(int n1, int d1, int n2, int d2) {
+        return reduce((long) n1 * d2 + (long) n2 * d1, (long) d1 * d2);
+    }
+
+    public static long subtract(int n1, int d1, int n2, int d2) {
+        return reduce((long) n1 * d2 - (long) n2 * d1, (long) d1 * d2);
+    }
+
+    public static long multiply(int n1, int d1, int n2, int d2) {
+        return reduce((long) n1 * n2, (long) d1 * d2);
+    }
+
+    /**
+     * @throws ArithmeticException If the second fraction is zero.
+     */
+    public static long divide(int n1, int d1, int n2, int d2) throws ArithmeticException {
+        if (n2 == 0) {
+            throw new ArithmeticException("/ by zero");
+        }
+        return reduce((long) n1 * d2, (long) d1 * n2);
+    }
+
+    /**
+     * Puts a fraction in lowest terms with a positive denominator and packs it.
+     * @throws ArithmeticException If the reduced numerator or denominator does not fit in an int.
+     */
+    static long reduce(long numerator, long denominator) throws ArithmeticException {
+        if (denominator < 0) {
+            numerator = -numerator;
+            denominator = -denominator;
+        }
+        long divisor = gcd(Math.abs(numerator), denominator);
+        if (divisor > 1) {
+            numerator /= divisor;
+            denominator /= divisor;
+        }
+        if (numerator != (int) numerator || denominator != (int) denominator) {
+            throw new ArithmeticException("Rational overflow");
+        }
+        return pack((int) numerator, (int) denominator);
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long remainder = a % b;
+            a = b;
+            b = remainder;
+        }
+        return a;
+    }
+
+    /**
+     * @return The fraction written as "numerator/denominator", or just the numerator for whole numbers.
+     */
+    public static String toString(long rational) {
+        if (isInteger(rational)) {
+            return Integer.toString(numerator(rational));
+        }
+        return numerator(rational) + "/" + denominator(rational);
+    }
+}
@@ -0,0 +1,106 @@
+package twentyfourpoints;
+
+/**
+ * A set of packed Rationals stored in a single open addressing table of longs, so holding hundreds of
+ * thousands of values creates no objects. A packed Rational always has a positive denominator, which
+ * means 0 can never be a value and is used to mark an empty slot.
+ * @version 2.0
+ */
+public class RationalSet {
+
+    private static final long EMPTY = 0;
+
+    private long[] slots;
+    private int size;
+
+    public RationalSet() {
+        this(16);
+    }
+
+    /**
+     * @param expected The number of values expected, so the table does not have to grow while they are added.
+     */
+    public RationalSet(int expected) {
+        int capacity = 16;
+        while (capacity < expected * 2) {
+            capacity <<= 1;
+        }
+        this.slots = new long[capacity];
+    }
+
+    private static int hash(long value, int mask) {
+        long mixed = value * 0x9E3779B97F4A7C15L;
+        return (int) (mixed ^ (mixed >>> 32)) & mask;
+    }
+
+    /**
+     * @param value A packed Rational.
+     * @return True if the value was added, false if it was already in the set.
+     */
+    public boolean add(long value) {
+        int mask = this.slots.length - 1;
+        int slot = hash(value, mask);
+        while (this.slots[slot] != EMPTY) {
+            if (this.slots[slot] == value) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        this.slots[slot] = value;
+        //Keep the table at most half full so searches stay short.
+        if (++this.size * 2 > this.slots.length) {
+            this.grow();
+        }
+        return true;
+    }
+
+    /**
+     * @param value A packed Rational.
+     * @return True if the value is in the set, otherwise false.
+     */
+    public boolean contains(long value) {
+        int mask = this.slots.length - 1;
+        int slot = hash(value, mask);
+        long stored;
+        while ((stored = this.slots[slot]) != EMPTY) {
+            if (stored == value) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    private void grow() {
+        long[] old = this.slots;
+        this.slots = new long[old.length * 2];
+        int mask = this.slots.length - 1;
+        for (long value : old) {
+            if (value != EMPTY) {
+                int slot = hash(value, mask);
+                while (this.slots[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                this.slots[slot] = value;
+            }
+        }
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return Every value in the set, in no particular order.
+     */
+    public long[] toArray() {
+        long[] values = new long[this.size];
+        int count = 0;
+        for (long value : this.slots) {
+            if (value != EMPTY) {
+                values[count++] = value;
+            }
+        }
+        return values;
+    }
+}
@@ -0,0 +1,113 @@
+package twentyfourpoints;
+
+/**
+ * A stack of fractions where each numerator and denominator is stored in its own int array,
+ * so values are never boxed. Values are pushed and returned as packed Rationals.
+ * Calling reset() allows the same stack to be reused.
+ * @version 2.0
+ */
+public class RationalStack implements PrimitiveStackInterface {
+
+    private static final int DEFAULT_CAPACITY = 8;
+
+    private int[] numerators;
+    private int[] denominators;
+    private int size; //Number of fractions currently on the stack
+
+    /**
+     * Create an empty stack.
+     */
+    public RationalStack() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create an empty stack with room for the number of fractions given before it has to grow.
+     * @param capacity The starting capacity.
+     */
+    public RationalStack(int capacity) {
+        this.numerators = new int[Math.max(capacity, 1)];
+        this.denominators = new int[this.numerators.length];
+    }
+
+    /**
+     * @return The number of items currently stored on the stack.
+     */
+    public int getSize() {
+        return this.size;
+    }
+
+    /**
+     * Retrieves the fraction at the top of the stack without removing it.
+     * @return The fraction at the top of the stack as a packed Rational.
+     */
+    public long peek() throws StackException {
+        if (this.size == 0) {
+            throw new StackException("Empty Stack");
+        }
+        return Rational.pack(this.numerators[this.size - 1], this.denominators[this.size - 1]);
+    }
+
+    /**
+     * Pushes a fraction onto the stack.
+     * @param numerator The numerator of the fraction.
+     * @param denominator The denominator of the fraction.
+     */
+    public void push(int numerator, int denominator) {
+        if (this.size == this.numerators.length) {
+            this.ensureCapacity(this.size * 2);
+        }
+        this.numerators[this.size] = numerator;
+        this.denominators[this.size++] = denominator;
+    }
+
+    /**
+     * Pushes a fraction onto the stack.
+     * @param rational The fraction as a packed Rational.
+     */
+    public void push(long rational) {
+        this.push(Rational.numerator(rational), Rational.denominator(rational));
+    }
+
+    /**
+     * Removes and returns the fraction at the top of the stack.
+     * @return The fraction at the top of the stack as a packed Rational.
+     */
+    public long pop() throws StackException {
+        if (this.size == 0) {
+            throw new StackException("Empty Stack");
+        }
+        --this.size;
+        return Rational.pack(this.numerators[this.size], this.denominators[this.size]);
+    }
+
+    /**
+     * Tells us if the stack is empty or not.
+     * @return True if the stack is empty, otherwise false.
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Empties the stack, keeping the arrays for later use.
+     */
+    public void reset() {
+        this.size = 0;
+    }
+
+    /**
+     * Grows the stack so it can hold at least the number of fractions given without growing again.
+     * @param capacity The number of fractions the stack should be able to hold.
+     */
+    public void ensureCapacity(int capacity) {
+        if (capacity > this.numerators.length) {
+            int[] larger = new int[capacity];
+            System.arraycopy(this.numerators, 0, larger, 0, this.size);
+            this.numerators = larger;
+            larger = new int[capacity];
+            System.arraycopy(this.denominators, 0, larger, 0, this.size);
+            this.denominators = larger;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package twentyfourpoints;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Streams the lines of a file of any size through a fixed size memory-mapped window, so memory use
+ * stays the same no matter how large the file is. Each line is handed over as a range of the mapped
+ * window without being copied. Lines longer than the window are reported with a start of -1.
+ * @version 2.0
+ */
+public class RecordReader {
+
+    public static final int DEFAULT_WINDOW = 64 * 1024 * 1024;
+
+    /**
+     * Receives each line read from the file.
+     */
+    public interface RecordHandler {
+        /**
+         * @param window The mapped part of the file holding the line.
+         * @param start The position of the first byte of the line within the window, or -1 if the line
+         *              was longer than the window and could not be read.
+         * @param end The position just after the last byte of the line, not including the line break.
+         */
+        void record(MappedByteBuffer window, int start, int end) throws IOException;
+    }
+
+    private final int windowSize;
+
+    public RecordReader() {
+        this(DEFAULT_WINDOW);
+    }
+
+    /**
+     * @param windowSize The most bytes of the file mapped at one time, also the longest line that can be read.
+     */
+    public RecordReader(int windowSize) {
+        this.windowSize = windowSize;
+    }
+
+    /**
+     * Reads every line of the file in order. A line break at the very end of the file does not start another line.
+     * @param path The file to read.
+     * @param handler Receives each line.
+     * @return The number of lines read.
+     */
+    public long read(Path path, RecordHandler handler) throws IOException {
+        long records = 0;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long position = 0;
+            boolean skipping = false; //Set while passing over the rest of a line longer than the window
+
+            while (position < size) {
+                int length = (int) Math.min(this.windowSize, size - position);
+                MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                boolean last = position + length == size;
+                int lineStart = 0;
+
+                for (int i = 0; i < length; ++i) {
+                    if (window.get(i) == '\n') {
+                        if (skipping) {
+                            skipping = false;
+                        } else {
+                            handler.record(window, lineStart, i);
+                        }
+                        ++records;
+                        lineStart = i + 1;
+                    }
+                }
+
+                if (last) {
+                    //The final line may not end with a line break.
+                    if (lineStart < length) {
+                        if (!skipping) {
+                            handler.record(window, lineStart, length);
+                        }
+                        ++records;
+                    }
+                    position = size;
+                } else if (lineStart == 0) {
+                    //No line break in the whole window, so the line is too long to read.
+                    if (!skipping) {
+                        handler.record(window, -1, -1);
+                        skipping = true;
+                    }
+                    position += length;
+                } else {
+                    //Map the next window starting at the line that was cut off.
+                    position += lineStart;
+                }
+            }//End while loop
+        }
+        return records;
+    }//End read()
+}
@@ -0,0 +1,89 @@
+package twentyfourpoints;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Checks submissions stored as text records of the form "hand,expression", such as "3 8 8 3,8/(3-8/3)".
+ * The hand is the four cards separated by spaces, given either as card numbers from 1 to 52 or as values
+ * from 1 to 13, since both give the same value with Rules.cardValue().
+ * A RecordVerifier reuses its working space between records and should not be shared between threads.
+ * @version 2.0
+ */
+public class RecordVerifier {
+
+    private final Verifier verifier;
+    private final int[] hand = new int[Rules.HAND_SIZE];
+    private byte[] scratch = new byte[256]; //Holds a record copied out of a buffer
+
+    public RecordVerifier() {
+        this(null);
+    }
+
+    /**
+     * @param cache A cache of verdicts that may be shared with other RecordVerifiers, or null for none.
+     */
+    public RecordVerifier(VerdictCache cache) {
+        this.verifier = new Verifier(cache);
+        this.verifier.setLimits(Limits.DEFAULT);
+    }
+
+    /**
+     * @param buffer The buffer holding the record.
+     * @param start The position of the first byte of the record, or -1 if the record could not be read.
+     * @param end The position just after the last byte of the record.
+     * @return The outcome of checking the record.
+     */
+    public Verdict verify(ByteBuffer buffer, int start, int end) {
+        if (start < 0) {
+            return Verdict.MALFORMED_RECORD;
+        }
+        int length = end - start;
+        if (this.scratch.length < length) {
+            this.scratch = new byte[Math.max(length, this.scratch.length * 2)];
+        }
+        buffer.get(start, this.scratch, 0, length);
+        return this.verify(this.scratch, 0, length);
+    }
+
+    /**
+     * @param record The bytes holding the record.
+     * @param offset The position of the first byte of the record.
+     * @param length The number of bytes in the record, a trailing carriage return is ignored.
+     * @return The outcome of checking the record.
+     */
+    public Verdict verify(byte[] record, int offset, int length) {
+        int end = offset + length;
+        if (end > offset && record[end - 1] == '\r') {
+            --end;
+        }
+        //Read the card numbers before the comma
+        int index = offset;
+        int count = 0;
+        while (index < end && record[index] != ',') {
+            byte symbol = record[index];
+            if (symbol == ' ' || symbol == '\t') {
+                ++index;
+                continue;
+            }
+            int card = 0;
+            while (index < end && record[index] >= '0' && record[index] <= '9' && card <= Rules.DECK_SIZE) {
+                card = card * 10 + (record[index++] - '0');
+            }
+            if (card < 1 || card > Rules.DECK_SIZE || count == Rules.HAND_SIZE
+                    || (index < end && record[index] != ' ' && record[index] != '\t' && record[index] != ',')) {
+                return Verdict.MALFORMED_RECORD;
+            }
+            this.hand[count++] = Rules.cardValue(card);
+        }
+        if (index == end || count != Rules.HAND_SIZE) {
+            return Verdict.MALFORMED_RECORD;
+        }
+        ++index; //Skip the comma
+        //Every character takes at most 3 bytes of UTF-8, so decoding this many bytes already gives more characters
+        //than the length limit allows, and the rest of a longer expression never needs to be read.
+        int decoded = Math.min(end - index, 3 * Limits.DEFAULT.getMaxLength() + 3);
+        String expression = new String(record, index, decoded, StandardCharsets.UTF_8);
+        return this.verifier.verify(this.hand, expression);
+    }//End verify()
+}
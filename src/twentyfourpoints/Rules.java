@@ -0,0 +1,105 @@
+package twentyfourpoints;
+
+import java.util.Arrays;
+
+/**
+ * The rules of the twenty four point game that do not depend on the GUI.
+ * @version 2.0
+ */
+public final class Rules {
+
+    public static final int HAND_SIZE = 4;    //Number of cards dealt at once
+    public static final int TARGET = 24;      //The value the expression must evaluate to
+    public static final int DECK_SIZE = 52;   //Cards are numbered 1 to 52
+    public static final int HIGHEST_VALUE = 13;
+
+    private Rules() {
+    }
+
+    /**
+     * Finds the value of a card. Numbered cards have the same value as their number,
+     * Jack is worth 11, Queen is worth 12, King is worth 13, and Ace is worth 1.
+     * @param card The number of the card, from 1 to 52.
+     * @return The value of the card, from 1 to 13.
+     */
+    public static int cardValue(int card) {
+        int value = card % HIGHEST_VALUE;
+        //If this is a King, we need to set it's value to thirteen
+        if (value == 0) {
+            value = HIGHEST_VALUE;
+        }
+        return value;
+    }
+
+    /**
+     * Checks if the character being passed is one of the valid operators or a parenthesis
+     * @param operator The character to be checked.
+     * @return true if the character is a valid operator or parenthesis, otherwise false.
+     */
+    public static boolean checkOperator(char operator) {
+        switch (operator) {
+            case '+':
+            case '-':
+            case '*':
+            case '/':
+            case '(':
+            case ')':
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Obtain the numbers used in the calculation by splitting the
+     * expression on parentheses and any of the valid operators.
+     * Empty strings may be left between operators that are next to each other.
+     * @param expression The mathematical expression being checked
+     * @return The pieces of the expression between operators and parentheses.
+     */
+    public static String[] splitNumbers(String expression) {
+        return expression.split("[()\\-\\+\\*\\/]");
+    }
+
+    /**
+     * Checks if the numbers split out of an expression are exactly the values of the cards in the hand.
+     * @param hand The values of the cards being displayed.
+     * @param tokens The pieces of the expression returned by splitNumbers().
+     * @return True if the numbers used in the calculation match, otherwise false.
+     */
+    public static boolean numbersMatch(int[] hand, String[] tokens) throws NumberFormatException {
+        long start = Metrics.start();
+        try {
+            return matches(hand, tokens);
+        } catch (NumberFormatException err) {
+            Metrics.error(Metrics.ErrorType.NUMBER_FORMAT);
+            throw err;
+        } finally {
+            Metrics.stop(Metrics.Timer.NUMBER_CHECK, start);
+        }
+    }
+
+    private static boolean matches(int[] hand, String[] tokens) throws NumberFormatException {
+        int[] validNumbers = hand.clone();
+        int[] calcNumbers = new int[tokens.length];
+        int count = 0;
+        for (String token : tokens) {
+            //Skip any empty strings that may be left because of split()
+            if (!token.isEmpty()) {
+                calcNumbers[count++] = Integer.parseInt(token);
+            }
+        }
+        if (count != validNumbers.length) {
+            return false;
+        }
+        //Sort both lists and ensure the user has only used the values of the cards being displayed.
+        Arrays.sort(validNumbers);
+        Arrays.sort(calcNumbers, 0, count);
+        for (int i = 0; i < count; ++i) {
+            if (validNumbers[i] != calcNumbers[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
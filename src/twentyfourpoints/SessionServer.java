@@ -0,0 +1,573 @@
+package twentyfourpoints;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Hosts any number of games at once without the GUI. Players connect over TCP and send one command per line:
+ *
+ *     DEAL                 deals a new hand that can be solved          HAND 3 16 29 42
+ *     DEAL lowest highest  deals a hand from a band of the catalog     HAND 8 21 34 47
+ *     ANSWER expression    checks an answer to the hand dealt            VERDICT CORRECT
+ *                                                                       VERDICT OPERATOR_ORDER 5
+ *     SCORE                correct answers, answers and hands dealt     SCORE 3 4 5
+ *     QUIT                                                              BYE
+ *
+ * Cards are numbered 1 to 52 as in the GUI, answers are checked by a Verifier exactly as the GUI's Calculate
+ * button checks them, and the position in a verdict counts characters of the expression from 1.
+ * Anything else is answered with a line starting with ERROR.
+ *
+ * Each server thread runs its own selector over a share of the connections, so a handful of threads can
+ * serve tens of thousands of players. Everything a thread needs to answer a command (dealer, verifier,
+ * session store and output buffer) belongs to that thread, so commands are answered without any locking.
+ * The state of each session lives in the thread's SessionStore rather than in an object per player.
+ * If a SubmissionLog is set, every answer is appended to it, with the log committed on its own thread.
+ *
+ *     java twentyfourpoints.SessionServer [port] [threads] [submission log directory]
+ * @version 2.0
+ */
+public class SessionServer implements Closeable {
+
+    public static final int DEFAULT_PORT = 2424;
+    private static final int MAX_LINE = 1024;          //Longest command that can be read
+    private static final int MAX_PENDING = 1024 * 1024; //Most unsent output kept for a slow player
+    private static final long ACCEPT_PAUSE = 100; //Milliseconds to stop accepting after running out of file handles
+
+    private static final byte[] DEAL = ascii("DEAL");
+    private static final byte[] ANSWER = ascii("ANSWER");
+    private static final byte[] SCORE = ascii("SCORE");
+    private static final byte[] QUIT = ascii("QUIT");
+    private static final byte[] HAND = ascii("HAND");
+    private static final byte[] VERDICT = ascii("VERDICT ");
+    private static final byte[] BYE = ascii("BYE");
+    private static final byte[] NO_HAND = ascii("ERROR NO_HAND");
+    private static final byte[] NO_CATALOG = ascii("ERROR NO_CATALOG");
+    private static final byte[] BAD_BAND = ascii("ERROR BAD_BAND");
+    private static final byte[] LINE_TOO_LONG = ascii("ERROR LINE_TOO_LONG");
+    private static final byte[] UNKNOWN_COMMAND = ascii("ERROR UNKNOWN_COMMAND");
+    private static final byte[][] VERDICT_NAMES = new byte[Verdict.values().length][];
+
+    static {
+        for (Verdict verdict : Verdict.values()) {
+            VERDICT_NAMES[verdict.ordinal()] = ascii(verdict.name());
+        }
+    }
+
+    private final SolvabilityTable table; //Null to deal any hand
+    private final PuzzleCatalog catalog;  //Null if hands can not be dealt by difficulty
+    private final Loop[] loops;
+    private volatile SubmissionLog log;   //Null if answers are not kept
+    private ServerSocketChannel server;
+    private volatile boolean running;
+    private int nextLoop; //Only used by the thread of the first loop, which accepts connections
+
+    /**
+     * A connected player.
+     */
+    private static class Connection {
+        private final SocketChannel channel;
+        private final int session;
+        private final ByteBuffer input = ByteBuffer.allocate(MAX_LINE);
+        private ByteBuffer pending; //Output the socket would not take yet, ready to be written, or null
+        private boolean discarding; //Set while skipping the rest of a line that was too long
+        private boolean closed;
+        private SelectionKey key;
+
+        Connection(SocketChannel channel, int session) {
+            this.channel = channel;
+            this.session = session;
+        }
+    }//End class Connection
+
+    /**
+     * A read-only view of part of a byte array as characters, so an answer can be checked without copying it.
+     */
+    private static class AsciiSequence implements CharSequence {
+        private byte[] bytes;
+        private int offset;
+        private int length;
+
+        void set(byte[] bytes, int offset, int length) {
+            this.bytes = bytes;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return this.length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (this.bytes[this.offset + index] & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return this.toString().substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return new String(this.bytes, this.offset, this.length, StandardCharsets.ISO_8859_1);
+        }
+    }//End class AsciiSequence
+
+    /**
+     * One server thread and the connections it looks after.
+     */
+    private class Loop implements Runnable {
+        private final Selector selector;
+        private final ConcurrentLinkedQueue<SocketChannel> incoming = new ConcurrentLinkedQueue<>();
+        private final SessionStore store = new SessionStore();
+        private final Verifier verifier = new Verifier();
+        private final Dealer dealer;
+        private final Dealer.HandFilter filter;
+        private final int[] cards = new int[Rules.HAND_SIZE];
+        private final int[] values = new int[Rules.HAND_SIZE];
+        private final AsciiSequence expression = new AsciiSequence();
+        private final ByteBuffer output = ByteBuffer.allocate(64 * 1024);
+        private Thread thread;
+        private long acceptResume; //When to start accepting connections again, 0 if accepting
+
+        Loop(Dealer dealer) throws IOException {
+            this.selector = Selector.open();
+            this.dealer = dealer;
+            this.filter = SessionServer.this.table == null ? null : Dealer.solvableOnly(SessionServer.this.table);
+            //Answers come from anyone on the network, so hold them to limits well below a full line
+            this.verifier.setLimits(Limits.DEFAULT);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (SessionServer.this.running) {
+                    if (this.acceptResume == 0) {
+                        this.selector.select();
+                    } else {
+                        this.selector.select(ACCEPT_PAUSE);
+                        if (System.currentTimeMillis() >= this.acceptResume) {
+                            this.acceptResume = 0;
+                            SessionServer.this.server.keyFor(this.selector).interestOps(SelectionKey.OP_ACCEPT);
+                        }
+                    }
+                    SocketChannel channel;
+                    while ((channel = this.incoming.poll()) != null) {
+                        this.register(channel);
+                    }
+                    Iterator<SelectionKey> keys = this.selector.selectedKeys().iterator();
+                    while (keys.hasNext()) {
+                        SelectionKey key = keys.next();
+                        keys.remove();
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            try {
+                                SessionServer.this.accept();
+                            } catch (IOException err) {
+                                //Such as running out of file handles. The connection stays waiting, so stop
+                                //accepting for a moment instead of failing on it again straight away.
+                                System.err.println("Could not accept a connection: " + err.getMessage());
+                                key.interestOps(0);
+                                this.acceptResume = System.currentTimeMillis() + ACCEPT_PAUSE;
+                            }
+                            continue;
+                        }
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isWritable()) {
+                                this.writePending(connection);
+                            }
+                            if (key.isValid() && key.isReadable()) {
+                                this.read(connection);
+                            }
+                        } catch (IOException err) {
+                            this.close(connection);
+                        }
+                    }
+                }//End while loop
+            } catch (IOException err) {
+                System.err.println("Server thread stopped: " + err.getMessage());
+            } finally {
+                for (SelectionKey key : this.selector.keys()) {
+                    if (key.attachment() instanceof Connection) {
+                        this.close((Connection) key.attachment());
+                    }
+                }
+                try {
+                    this.selector.close();
+                } catch (IOException err) {
+                    //Nothing more can be done while stopping
+                }
+            }
+        }//End run()
+
+        /**
+         * Hands a newly accepted connection to this loop from any thread.
+         */
+        void hand(SocketChannel channel) {
+            if (Thread.currentThread() == this.thread) {
+                this.register(channel);
+            } else {
+                this.incoming.add(channel);
+                this.selector.wakeup();
+            }
+        }
+
+        private void register(SocketChannel channel) {
+            Connection connection = new Connection(channel, this.store.open());
+            try {
+                connection.key = channel.register(this.selector, SelectionKey.OP_READ, connection);
+            } catch (IOException err) {
+                this.close(connection);
+            }
+        }
+
+        private void close(Connection connection) {
+            if (connection.closed) {
+                return;
+            }
+            connection.closed = true;
+            if (connection.key != null) {
+                connection.key.cancel();
+            }
+            try {
+                connection.channel.close();
+            } catch (IOException err) {
+                //The connection is gone either way
+            }
+            this.store.close(connection.session);
+        }
+
+        /**
+         * Reads what the player sent and answers every complete line.
+         */
+        private void read(Connection connection) throws IOException {
+            ByteBuffer input = connection.input;
+            if (connection.channel.read(input) < 0) {
+                this.close(connection);
+                return;
+            }
+            byte[] data = input.array();
+            int end = input.position();
+            int lineStart = 0;
+            for (int i = 0; i < end; ++i) {
+                if (data[i] == '\n') {
+                    if (connection.discarding) {
+                        connection.discarding = false;
+                        this.reply(LINE_TOO_LONG);
+                    } else if (!this.command(connection, data, lineStart, i)) {
+                        return; //The player quit
+                    }
+                    lineStart = i + 1;
+                }
+            }
+            if (lineStart == 0 && end == data.length) {
+                //No line break in a full buffer, so drop the line and answer once it ends.
+                connection.discarding = true;
+                lineStart = end;
+            }
+            System.arraycopy(data, lineStart, data, 0, end - lineStart);
+            input.position(end - lineStart);
+            this.flush(connection);
+        }//End read()
+
+        /**
+         * Answers one command.
+         * @return False if the connection was closed, otherwise true.
+         */
+        private boolean command(Connection connection, byte[] data, int start, int end) throws IOException {
+            if (end > start && data[end - 1] == '\r') {
+                --end;
+            }
+            if (this.output.remaining() < 128) {
+                this.flush(connection);
+            }
+            int session = connection.session;
+            int arguments;
+            if ((arguments = word(data, start, end, DEAL)) >= 0) {
+                this.deal(connection, data, arguments, end);
+            } else if ((arguments = word(data, start, end, ANSWER)) >= 0) {
+                if (!this.store.getHand(session, this.cards)) {
+                    this.reply(NO_HAND);
+                    return true;
+                }
+                Dealer.values(this.cards, this.values);
+                this.expression.set(data, Math.min(arguments + 1, end), Math.max(end - arguments - 1, 0));
+                Verdict verdict = this.verifier.verify(this.values, this.expression);
+                this.store.recordAnswer(session, verdict == Verdict.CORRECT);
+                SubmissionLog log = SessionServer.this.log;
+                if (log != null) {
+                    try {
+                        log.append(this.values, this.verifier.getTarget(), this.expression, verdict);
+                    } catch (IOException err) {
+                        //The player still gets the verdict when the log can not be written
+                        System.err.println("Could not log an answer: " + err.getMessage());
+                    }
+                }
+                this.output.put(VERDICT).put(VERDICT_NAMES[verdict.ordinal()]);
+                if (this.verifier.getErrorPosition() >= 0) {
+                    this.output.put((byte) ' ');
+                    putNumber(this.output, this.verifier.getErrorPosition() + 1);
+                }
+                this.output.put((byte) '\n');
+            } else if (word(data, start, end, SCORE) == end) {
+                this.output.put(SCORE).put((byte) ' ');
+                putNumber(this.output, this.store.getCorrect(session));
+                this.output.put((byte) ' ');
+                putNumber(this.output, this.store.getAnswered(session));
+                this.output.put((byte) ' ');
+                putNumber(this.output, this.store.getDealt(session));
+                this.output.put((byte) '\n');
+            } else if (word(data, start, end, QUIT) == end) {
+                this.reply(BYE);
+                this.flush(connection);
+                this.close(connection);
+                return false;
+            } else {
+                this.reply(UNKNOWN_COMMAND);
+            }
+            return true;
+        }//End command()
+
+        private void deal(Connection connection, byte[] data, int arguments, int end) {
+            if (arguments == end) {
+                if (this.filter != null) {
+                    this.dealer.deal(this.cards, this.filter);
+                } else {
+                    this.dealer.deal(this.cards);
+                }
+            } else {
+                //A difficulty band, both numbers from 0 to 10.
+                int split = arguments + 1;
+                while (split < end && data[split] != ' ') {
+                    ++split;
+                }
+                int lowest = parseNumber(data, arguments + 1, split);
+                int highest = parseNumber(data, split + 1, end);
+                if (SessionServer.this.catalog == null) {
+                    this.reply(NO_CATALOG);
+                    return;
+                }
+                if (lowest < 0 || highest < lowest || highest > PuzzleCatalog.MAX_DIFFICULTY
+                        || SessionServer.this.catalog.getBandSize(lowest, highest) == 0) {
+                    this.reply(BAD_BAND);
+                    return;
+                }
+                this.dealer.deal(this.cards, SessionServer.this.catalog, lowest, highest);
+            }
+            this.store.setHand(connection.session, this.cards);
+            this.output.put(HAND);
+            for (int card : this.cards) {
+                this.output.put((byte) ' ');
+                putNumber(this.output, card);
+            }
+            this.output.put((byte) '\n');
+        }//End deal()
+
+        private void reply(byte[] line) {
+            this.output.put(line).put((byte) '\n');
+        }
+
+        /**
+         * Sends the replies waiting in the output buffer, keeping whatever the socket will not take yet.
+         */
+        private void flush(Connection connection) throws IOException {
+            this.output.flip();
+            if (this.output.hasRemaining()) {
+                if (connection.pending == null) {
+                    connection.channel.write(this.output);
+                }
+                if (this.output.hasRemaining()) {
+                    this.keep(connection);
+                }
+            }
+            this.output.clear();
+        }
+
+        private void keep(Connection connection) throws IOException {
+            ByteBuffer pending = connection.pending;
+            int size = (pending == null ? 0 : pending.remaining()) + this.output.remaining();
+            if (size > MAX_PENDING) {
+                throw new IOException("The player is not reading its replies");
+            }
+            if (pending == null || pending.capacity() < size) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(size, 4096));
+                if (pending != null) {
+                    larger.put(pending);
+                }
+                pending = larger;
+            } else {
+                pending.compact();
+            }
+            pending.put(this.output);
+            pending.flip();
+            connection.pending = pending;
+            connection.key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+
+        private void writePending(Connection connection) throws IOException {
+            connection.channel.write(connection.pending);
+            if (!connection.pending.hasRemaining()) {
+                connection.pending = null;
+                connection.key.interestOps(SelectionKey.OP_READ);
+            }
+        }
+    }//End class Loop
+
+    /**
+     * @param threads The number of threads serving connections.
+     * @param table Used to only deal hands that can be solved, or null to deal any hand.
+     * @param catalog Used to deal hands by difficulty, or null to turn that off.
+     */
+    public SessionServer(int threads, SolvabilityTable table, PuzzleCatalog catalog) throws IOException {
+        if (threads < 1) {
+            throw new IllegalArgumentException("There must be at least one thread");
+        }
+        this.table = table;
+        this.catalog = catalog;
+        this.loops = new Loop[threads];
+        Dealer dealer = new Dealer();
+        for (int i = 0; i < threads; ++i) {
+            this.loops[i] = new Loop(dealer.split());
+        }
+    }
+
+    /**
+     * Keeps every answer checked from now on in a log. The server does not commit or close the log.
+     * @param log The log to append to, or null to stop keeping answers.
+     */
+    public void setLog(SubmissionLog log) {
+        this.log = log;
+    }
+
+    /**
+     * Starts listening and serving connections on background threads.
+     * @param address The address to listen on, a port of 0 picks any free port.
+     */
+    public void start(InetSocketAddress address) throws IOException {
+        this.server = ServerSocketChannel.open();
+        this.server.bind(address, 1024);
+        this.server.configureBlocking(false);
+        //The first loop also accepts connections and shares them out.
+        this.server.register(this.loops[0].selector, SelectionKey.OP_ACCEPT);
+        this.running = true;
+        for (int i = 0; i < this.loops.length; ++i) {
+            this.loops[i].thread = new Thread(this.loops[i], "session server " + i);
+            this.loops[i].thread.start();
+        }
+    }
+
+    /**
+     * @return The port the server is listening on.
+     */
+    public int getPort() throws IOException {
+        return ((InetSocketAddress) this.server.getLocalAddress()).getPort();
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = this.server.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            this.loops[this.nextLoop].hand(channel);
+            this.nextLoop = (this.nextLoop + 1) % this.loops.length;
+        }
+    }
+
+    /**
+     * Stops every server thread and closes every connection.
+     */
+    @Override
+    public void close() throws IOException {
+        this.running = false;
+        for (Loop loop : this.loops) {
+            loop.selector.wakeup();
+        }
+        for (Loop loop : this.loops) {
+            if (loop.thread != null) {
+                try {
+                    loop.thread.join();
+                } catch (InterruptedException err) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+        }
+        if (this.server != null) {
+            this.server.close();
+        }
+    }
+
+    /**
+     * @return The position just after the command if the line starts with it, otherwise -1.
+     */
+    private static int word(byte[] data, int start, int end, byte[] command) {
+        if (end - start < command.length) {
+            return -1;
+        }
+        for (int i = 0; i < command.length; ++i) {
+            if ((data[start + i] & ~0x20) != command[i]) { //Commands are not case sensitive
+                return -1;
+            }
+        }
+        int after = start + command.length;
+        return after == end || data[after] == ' ' ? after : -1;
+    }
+
+    /**
+     * @return The number written in the range, or -1 if it is not a number from 0 to 999.
+     */
+    private static int parseNumber(byte[] data, int start, int end) {
+        if (start >= end || end - start > 3) {
+            return -1;
+        }
+        int number = 0;
+        for (int i = start; i < end; ++i) {
+            if (data[i] < '0' || data[i] > '9') {
+                return -1;
+            }
+            number = number * 10 + (data[i] - '0');
+        }
+        return number;
+    }
+
+    private static void putNumber(ByteBuffer buffer, int number) {
+        if (number >= 10) {
+            putNumber(buffer, number / 10);
+        }
+        buffer.put((byte) ('0' + number % 10));
+    }
+
+    private static byte[] ascii(String text) {
+        return text.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        SolvabilityTable table = SolvabilityTable.load(SolvabilityTable.DEFAULT_PATH);
+        PuzzleCatalog catalog = PuzzleCatalog.load(PuzzleCatalog.DEFAULT_PATH);
+        SessionServer server = new SessionServer(threads, table, catalog);
+        if (args.length > 2) {
+            SubmissionLog log = SubmissionLog.open(Paths.get(args[2]));
+            log.startCommitting(100);
+            server.setLog(log);
+        }
+        server.start(new InetSocketAddress(port));
+        System.out.println("Serving games on port " + server.getPort() + " with " + threads + " threads");
+    }
+}
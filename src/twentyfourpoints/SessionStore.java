@@ -0,0 +1,138 @@
+package twentyfourpoints;
+
+import java.util.Arrays;
+
+/**
+ * Holds the state of every game session in a few parallel int arrays instead of an object per session,
+ * so tens of thousands of sessions take a few hundred kilobytes and create no garbage. Each session is
+ * known by the index of its slot, and slots of closed sessions are reused through a free list.
+ * The four cards of a hand are packed into a single int, 6 bits per card, with 0 meaning no hand is dealt.
+ * A SessionStore is not thread-safe, each server thread keeps its own.
+ * @version 2.0
+ */
+public class SessionStore {
+
+    private static final int CARD_BITS = 6;
+    private static final int CARD_MASK = (1 << CARD_BITS) - 1;
+
+    private int[] hands;
+    private int[] dealt;    //Hands dealt to the session
+    private int[] answered; //Answers checked for the session
+    private int[] correct;  //Answers that were correct
+    private int[] nextFree; //Next free slot after this one, while the slot is free
+    private int firstFree = -1;
+    private int used;       //Slots handed out at least once
+    private int open;       //Sessions currently open
+
+    public SessionStore() {
+        this(1024);
+    }
+
+    /**
+     * @param capacity The number of sessions to make room for, more are added as needed.
+     */
+    public SessionStore(int capacity) {
+        this.hands = new int[capacity];
+        this.dealt = new int[capacity];
+        this.answered = new int[capacity];
+        this.correct = new int[capacity];
+        this.nextFree = new int[capacity];
+    }
+
+    /**
+     * @return The slot of a new session with no hand dealt.
+     */
+    public int open() {
+        int session;
+        if (this.firstFree >= 0) {
+            session = this.firstFree;
+            this.firstFree = this.nextFree[session];
+        } else {
+            if (this.used == this.hands.length) {
+                this.grow();
+            }
+            session = this.used++;
+        }
+        this.hands[session] = 0;
+        this.dealt[session] = 0;
+        this.answered[session] = 0;
+        this.correct[session] = 0;
+        ++this.open;
+        return session;
+    }
+
+    /**
+     * Frees the slot of a session so it can be reused.
+     */
+    public void close(int session) {
+        this.hands[session] = 0;
+        this.nextFree[session] = this.firstFree;
+        this.firstFree = session;
+        --this.open;
+    }
+
+    private void grow() {
+        int capacity = Math.max(16, this.hands.length * 2);
+        this.hands = Arrays.copyOf(this.hands, capacity);
+        this.dealt = Arrays.copyOf(this.dealt, capacity);
+        this.answered = Arrays.copyOf(this.answered, capacity);
+        this.correct = Arrays.copyOf(this.correct, capacity);
+        this.nextFree = Arrays.copyOf(this.nextFree, capacity);
+    }
+
+    /**
+     * @param cards The numbers of the four cards dealt, from 1 to 52.
+     */
+    public void setHand(int session, int[] cards) {
+        int packed = 0;
+        for (int i = 0; i < Rules.HAND_SIZE; ++i) {
+            packed |= cards[i] << (CARD_BITS * i);
+        }
+        this.hands[session] = packed;
+        ++this.dealt[session];
+    }
+
+    /**
+     * @param cards Filled with the numbers of the cards dealt to the session.
+     * @return False if no hand has been dealt to the session, otherwise true.
+     */
+    public boolean getHand(int session, int[] cards) {
+        int packed = this.hands[session];
+        if (packed == 0) {
+            return false;
+        }
+        for (int i = 0; i < Rules.HAND_SIZE; ++i) {
+            cards[i] = (packed >>> (CARD_BITS * i)) & CARD_MASK;
+        }
+        return true;
+    }
+
+    /**
+     * Counts an answer checked for the session.
+     */
+    public void recordAnswer(int session, boolean isCorrect) {
+        ++this.answered[session];
+        if (isCorrect) {
+            ++this.correct[session];
+        }
+    }
+
+    public int getDealt(int session) {
+        return this.dealt[session];
+    }
+
+    public int getAnswered(int session) {
+        return this.answered[session];
+    }
+
+    public int getCorrect(int session) {
+        return this.correct[session];
+    }
+
+    /**
+     * @return The number of sessions currently open.
+     */
+    public int size() {
+        return this.open;
+    }
+}
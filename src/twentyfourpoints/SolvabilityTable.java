@@ -0,0 +1,221 @@
+package twentyfourpoints;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * A table holding whether every hand of four card values can be solved, how many solutions it has and
+ * one of those solutions. There are only 1,820 different hands once the order of the values is ignored,
+ * so the table is generated with the Solver the first time it is needed, written to disk and
+ * memory-mapped from then on. Looking up a hand never runs the solver.
+ *
+ * File layout (big-endian):
+ * header:   magic, version, number of entries, offset of the solution pool (4 ints)
+ * entries:  solution count and offset of the solution within the pool (2 ints per hand)
+ * pool:     each solution as a short length followed by its ASCII characters
+ * @version 2.0
+ */
+public class SolvabilityTable {
+
+    public static final Path DEFAULT_PATH = Paths.get("solvability.bin");
+
+    private static final int MAGIC = 0x32345054; //"24PT"
+    private static final int VERSION = 2; //Version 2 solves with exact fractions
+    private static final int HEADER_SIZE = 16;
+    private static final int ENTRY_SIZE = 8;
+    public static final int HAND_COUNT = 1820; //Multisets of four values from 1 to 13
+
+    //Binomial coefficients used to rank a sorted hand, BINOMIAL[n][k] is n choose k.
+    private static final int[][] BINOMIAL = new int[Rules.HIGHEST_VALUE + Rules.HAND_SIZE][Rules.HAND_SIZE + 1];
+
+    static {
+        for (int n = 0; n < BINOMIAL.length; ++n) {
+            BINOMIAL[n][0] = 1;
+            for (int k = 1; k <= Rules.HAND_SIZE && k <= n; ++k) {
+                BINOMIAL[n][k] = BINOMIAL[n - 1][k - 1] + (k < n ? BINOMIAL[n - 1][k] : 0);
+            }
+        }
+    }
+
+    private final ByteBuffer table;
+
+    /**
+     * @param table The contents of a table file, already checked to be valid.
+     */
+    private SolvabilityTable(ByteBuffer table) {
+        this.table = table;
+    }
+
+    /**
+     * Memory-maps the table stored at the path given, generating it first if it does not exist, was written
+     * by a different version or is damaged.
+     * @param path The location of the table file.
+     * @return The loaded table.
+     * @throws IOException If the table could not be read or written.
+     */
+    public static SolvabilityTable load(Path path) throws IOException {
+        if (Files.isRegularFile(path)) {
+            MappedByteBuffer mapped = map(path);
+            if (isValid(mapped)) {
+                return new SolvabilityTable(mapped);
+            }
+        }
+        //Write to a temporary file first so a partly written table is never loaded.
+        Path temporary = Files.createTempFile(path.toAbsolutePath().getParent(), "solvability", ".tmp");
+        try {
+            Files.write(temporary, generate().array());
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        return new SolvabilityTable(map(path));
+    }
+
+    private static MappedByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+    }
+
+    /**
+     * Checks the header, and that every entry's solution lies wholly within the pool, so a truncated or
+     * damaged file is generated again rather than failing when a solution is read.
+     */
+    private static boolean isValid(ByteBuffer buffer) {
+        int poolOffset = HEADER_SIZE + HAND_COUNT * ENTRY_SIZE;
+        if (buffer.capacity() < poolOffset
+                || buffer.getInt(0) != MAGIC
+                || buffer.getInt(4) != VERSION
+                || buffer.getInt(8) != HAND_COUNT
+                || buffer.getInt(12) != poolOffset) {
+            return false;
+        }
+        for (int rank = 0; rank < HAND_COUNT; ++rank) {
+            int count = buffer.getInt(HEADER_SIZE + rank * ENTRY_SIZE);
+            int offset = buffer.getInt(HEADER_SIZE + rank * ENTRY_SIZE + 4);
+            if (count == 0 && offset == -1) {
+                continue;
+            }
+            if (count < 0 || (count > 0) != (offset >= 0) || offset < poolOffset || offset > buffer.capacity() - 2) {
+                return false;
+            }
+            int length = buffer.getShort(offset);
+            if (length < 1 || offset + 2 + length > buffer.capacity()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Solves every hand and lays the results out in the table format.
+     * @return The contents of the table file.
+     */
+    static ByteBuffer generate() {
+        Solver solver = new Solver(Rules.TARGET);
+        int[] counts = new int[HAND_COUNT];
+        byte[][] solutions = new byte[HAND_COUNT][];
+        int poolSize = 0;
+
+        for (int a = 1; a <= Rules.HIGHEST_VALUE; ++a) {
+            for (int b = a; b <= Rules.HIGHEST_VALUE; ++b) {
+                for (int c = b; c <= Rules.HIGHEST_VALUE; ++c) {
+                    for (int d = c; d <= Rules.HIGHEST_VALUE; ++d) {
+                        int rank = rank(a, b, c, d);
+                        ArrayList<String> found = solver.solve(a, b, c, d);
+                        counts[rank] = found.size();
+                        if (!found.isEmpty()) {
+                            solutions[rank] = found.get(0).getBytes(StandardCharsets.US_ASCII);
+                            poolSize += 2 + solutions[rank].length;
+                        }
+                    }
+                }
+            }
+        }//End for loops
+
+        int poolOffset = HEADER_SIZE + HAND_COUNT * ENTRY_SIZE;
+        ByteBuffer buffer = ByteBuffer.allocate(poolOffset + poolSize).order(ByteOrder.BIG_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(HAND_COUNT).putInt(poolOffset);
+        int position = poolOffset;
+        for (int rank = 0; rank < HAND_COUNT; ++rank) {
+            buffer.putInt(HEADER_SIZE + rank * ENTRY_SIZE, counts[rank]);
+            buffer.putInt(HEADER_SIZE + rank * ENTRY_SIZE + 4, solutions[rank] == null ? -1 : position);
+            if (solutions[rank] != null) {
+                buffer.putShort(position, (short) solutions[rank].length);
+                buffer.position(position + 2);
+                buffer.put(solutions[rank]);
+                position += 2 + solutions[rank].length;
+            }
+        }
+        return buffer;
+    }//End generate()
+
+    /**
+     * Gives each hand of four values a unique number from 0 to 1,819, no matter the order of the values.
+     * The sorted values are treated as a combination with repetition and ranked with the combinatorial number system.
+     * @return The rank of the hand.
+     */
+    public static int rank(int a, int b, int c, int d) {
+        //Sort the four values with a sorting network
+        int swap;
+        if (a > b) { swap = a; a = b; b = swap; }
+        if (c > d) { swap = c; c = d; d = swap; }
+        if (a > c) { swap = a; a = c; c = swap; }
+        if (b > d) { swap = b; b = d; d = swap; }
+        if (b > c) { swap = b; b = c; c = swap; }
+        if (a < 1 || d > Rules.HIGHEST_VALUE) {
+            throw new IllegalArgumentException("Card values must be between 1 and " + Rules.HIGHEST_VALUE);
+        }
+        return BINOMIAL[a - 1][1] + BINOMIAL[b][2] + BINOMIAL[c + 1][3] + BINOMIAL[d + 2][4];
+    }
+
+    /**
+     * @param hand The values of the four cards.
+     * @return The rank of the hand.
+     */
+    public static int rank(int[] hand) {
+        return rank(hand[0], hand[1], hand[2], hand[3]);
+    }
+
+    /**
+     * @param hand The values of the four cards, in any order.
+     * @return True if the hand can be solved, otherwise false.
+     */
+    public boolean isSolvable(int[] hand) {
+        return this.getSolutionCount(hand) > 0;
+    }
+
+    /**
+     * @param hand The values of the four cards, in any order.
+     * @return The number of distinct solutions the Solver finds for the hand.
+     */
+    public int getSolutionCount(int[] hand) {
+        return this.table.getInt(HEADER_SIZE + rank(hand) * ENTRY_SIZE);
+    }
+
+    /**
+     * @param hand The values of the four cards, in any order.
+     * @return One solution to the hand, or null if it can not be solved.
+     */
+    public String getSolution(int[] hand) {
+        int offset = this.table.getInt(HEADER_SIZE + rank(hand) * ENTRY_SIZE + 4);
+        if (offset < 0) {
+            return null;
+        }
+        byte[] solution = new byte[this.table.getShort(offset)];
+        for (int i = 0; i < solution.length; ++i) {
+            solution[i] = this.table.get(offset + 2 + i);
+        }
+        return new String(solution, StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,307 @@
+package twentyfourpoints;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+
+/**
+ * Finds the expressions that turn the values of a hand of cards into the target value (24 by default).
+ * Every ordering of the values, choice of operators and placement of parentheses is tried by
+ * repeatedly combining two of the remaining values until one is left.
+ * Addition and multiplication are only tried in one order and pairs that are the same as one already
+ * tried are skipped, so the same subexpression is never searched twice.
+ * Values are kept as exact fractions, so every solution found evaluates to the target with
+ * Expression.evaluateRational(), including ones such as 8/(3-8/3) that need a fraction along the way.
+ * setIntegerOnly() limits the search to solutions where every step is a whole number.
+ * A Solver keeps its working space between calls and should not be shared between threads.
+ * @version 2.0
+ */
+public class Solver {
+
+    public static final int DEFAULT_TARGET = 24;
+
+    //Precedence of each kind of expression, used to decide where parentheses are needed.
+    private static final byte ADDITIVE = 1;
+    private static final byte MULTIPLICATIVE = 2;
+    private static final byte NUMBER = 3;
+
+    private final int target;
+    private boolean integerOnly; //True if a step may not leave a fraction
+
+    //Working space for each level of the search, indexed by the number of values left.
+    private int[][] numerators;
+    private int[][] denominators;
+    private String[][] expressions;
+    private byte[][] precedences;
+
+    private LinkedHashSet<String> solutions; //Solutions found so far, null if only one is needed
+    private String firstSolution;
+
+    /**
+     * Create a solver for the default target of 24.
+     */
+    public Solver() {
+        this(DEFAULT_TARGET);
+    }
+
+    /**
+     * Create a solver for any target value.
+     * @param target The value the expressions must evaluate to.
+     */
+    public Solver(int target) {
+        this.target = target;
+    }
+
+    /**
+     * @return The value the expressions must evaluate to.
+     */
+    public int getTarget() {
+        return this.target;
+    }
+
+    /**
+     * @param integerOnly True to only find solutions where every division leaves a whole number,
+     *                    false to allow fractions along the way.
+     */
+    public void setIntegerOnly(boolean integerOnly) {
+        this.integerOnly = integerOnly;
+    }
+
+    public boolean isIntegerOnly() {
+        return this.integerOnly;
+    }
+
+    /**
+     * Finds every distinct solution for the hand.
+     * @param hand The values of the cards, every value must be used exactly once.
+     * @return Every solution as an infix expression, empty if there are none.
+     */
+    public ArrayList<String> solve(int... hand) {
+        this.solutions = new LinkedHashSet<>();
+        this.search(hand, true);
+        ArrayList<String> found = new ArrayList<>(this.solutions);
+        this.solutions = null;
+        return found;
+    }
+
+    /**
+     * Finds the solutions for the hand that are really different, keeping only the first solution for each
+     * canonical form, so answers that only reorder or regroup the same sums and products are left out.
+     * @param hand The values of the cards, every value must be used exactly once.
+     * @return The distinct solutions as infix expressions, empty if there are none.
+     */
+    public ArrayList<String> solveDistinct(int... hand) {
+        ArrayList<String> distinct = new ArrayList<>();
+        HashSet<Long> fingerprints = new HashSet<>();
+        for (String solution : this.solve(hand)) {
+            try {
+                if (fingerprints.add(ExpressionNode.fingerprint(solution))) {
+                    distinct.add(solution);
+                }
+            } catch (ExpressionException err) {
+                distinct.add(solution); //Solutions are always well formed, but never drop one
+            }
+        }
+        return distinct;
+    }
+
+    /**
+     * Finds a single solution for the hand, stopping as soon as one has been found.
+     * @param hand The values of the cards, every value must be used exactly once.
+     * @return A solution as an infix expression, or null if there is none.
+     */
+    public String findSolution(int... hand) {
+        this.firstSolution = null;
+        this.search(hand, true);
+        return this.firstSolution;
+    }
+
+    /**
+     * Checks if the hand can be solved without building any of the expressions.
+     * @param hand The values of the cards, every value must be used exactly once.
+     * @return True if there is at least one solution, otherwise false.
+     */
+    public boolean isSolvable(int... hand) {
+        return this.search(hand, false);
+    }
+
+    /**
+     * Sets up the working space for the hand and starts the search.
+     * @param hand The values of the cards.
+     * @param build True if expressions should be built for the values, otherwise false.
+     * @return True if the search found a solution and was stopped, otherwise false.
+     */
+    private boolean search(int[] hand, boolean build) {
+        int count = hand.length;
+        if (count == 0) {
+            return false;
+        }
+        if (this.numerators == null || this.numerators.length <= count) {
+            this.numerators = new int[count + 1][];
+            this.denominators = new int[count + 1][];
+            this.expressions = new String[count + 1][];
+            this.precedences = new byte[count + 1][];
+            for (int size = 1; size <= count; ++size) {
+                this.numerators[size] = new int[size];
+                this.denominators[size] = new int[size];
+                this.expressions[size] = new String[size];
+                this.precedences[size] = new byte[size];
+            }
+        }
+        System.arraycopy(hand, 0, this.numerators[count], 0, count);
+        for (int i = 0; i < count; ++i) {
+            this.denominators[count][i] = 1;
+            this.expressions[count][i] = build ? Integer.toString(hand[i]) : null;
+            this.precedences[count][i] = NUMBER;
+        }
+        return this.combine(count, build);
+    }
+
+    /**
+     * Combines each pair of the values left at this level with every operator and searches the level below.
+     * @param count The number of values left.
+     * @param build True if expressions should be built for the values, otherwise false.
+     * @return True if the search should stop, otherwise false.
+     */
+    private boolean combine(int count, boolean build) {
+        int[] numerator = this.numerators[count];
+        int[] denominator = this.denominators[count];
+        String[] expression = this.expressions[count];
+
+        if (count == 1) {
+            if (numerator[0] != this.target || denominator[0] != 1) {
+                return false;
+            }
+            if (this.solutions == null) {
+                this.firstSolution = expression[0];
+                return true; //Only one solution is needed so the search can stop
+            }
+            this.solutions.add(expression[0]);
+            return false;
+        }
+
+        int[] nextNumerator = this.numerators[count - 1];
+        int[] nextDenominator = this.denominators[count - 1];
+        String[] nextExpression = this.expressions[count - 1];
+        byte[] nextPrecedence = this.precedences[count - 1];
+
+        for (int i = 0; i < count; ++i) {
+            for (int j = i + 1; j < count; ++j) {
+                if (this.isRepeatedPair(count, i, j, build)) {
+                    continue;
+                }
+                //Copy every value other than the pair into the level below, leaving the last slot for the result.
+                int next = 0;
+                for (int k = 0; k < count; ++k) {
+                    if (k != i && k != j) {
+                        nextNumerator[next] = numerator[k];
+                        nextDenominator[next] = denominator[k];
+                        nextExpression[next] = expression[k];
+                        nextPrecedence[next] = this.precedences[count][k];
+                        ++next;
+                    }
+                }
+                int an = numerator[i];
+                int ad = denominator[i];
+                int bn = numerator[j];
+                int bd = denominator[j];
+                //Put the pair in a fixed order for the operators where order does not matter.
+                int first = i;
+                int second = j;
+                if (build && expression[i].compareTo(expression[j]) > 0) {
+                    first = j;
+                    second = i;
+                }
+                boolean mirrored = build ? expression[i].equals(expression[j]) : an == bn && ad == bd;
+
+                if (this.tryOperator(count, next, first, second, Rational.add(an, ad, bn, bd), '+', build)
+                        || this.tryOperator(count, next, first, second, Rational.multiply(an, ad, bn, bd), '*', build)
+                        || this.tryOperator(count, next, i, j, Rational.subtract(an, ad, bn, bd), '-', build)
+                        || (!mirrored && this.tryOperator(count, next, j, i, Rational.subtract(bn, bd, an, ad), '-', build))
+                        || (bn != 0 && this.tryOperator(count, next, i, j, Rational.divide(an, ad, bn, bd), '/', build))
+                        || (!mirrored && an != 0
+                            && this.tryOperator(count, next, j, i, Rational.divide(bn, bd, an, ad), '/', build))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }//End combine()
+
+    /**
+     * Checks if an earlier pair at this level holds the same two values (or expressions when they are
+     * being built), in which case the values left over are also the same and the search would repeat.
+     */
+    private boolean isRepeatedPair(int count, int i, int j, boolean build) {
+        for (int p = 0; p <= i; ++p) {
+            for (int q = p + 1; q < count; ++q) {
+                if (p == i && q == j) {
+                    return false;
+                }
+                if ((this.same(count, p, i, build) && this.same(count, q, j, build))
+                        || (this.same(count, p, j, build) && this.same(count, q, i, build))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean same(int count, int a, int b, boolean build) {
+        if (build) {
+            return this.expressions[count][a].equals(this.expressions[count][b]);
+        }
+        return this.numerators[count][a] == this.numerators[count][b]
+                && this.denominators[count][a] == this.denominators[count][b];
+    }
+
+    /**
+     * Places the result of one operator in the last slot of the level below and searches it.
+     * @param count The number of values left at this level.
+     * @param slot The position of the result in the level below.
+     * @param left The position of the left operand at this level.
+     * @param right The position of the right operand at this level.
+     * @param result The value of the operation as a packed Rational.
+     * @param operator The operator used.
+     * @param build True if the expression should be built, otherwise false.
+     * @return True if the search should stop, otherwise false.
+     */
+    private boolean tryOperator(int count, int slot, int left, int right, long result, char operator, boolean build) {
+        if (this.integerOnly && Rational.denominator(result) != 1) {
+            return false;
+        }
+        this.numerators[count - 1][slot] = Rational.numerator(result);
+        this.denominators[count - 1][slot] = Rational.denominator(result);
+        byte precedence = (operator == '+' || operator == '-') ? ADDITIVE : MULTIPLICATIVE;
+        if (build) {
+            this.expressions[count - 1][slot] = this.render(count, left, right, operator, precedence);
+        }
+        this.precedences[count - 1][slot] = precedence;
+        return this.combine(count - 1, build);
+    }
+
+    /**
+     * Builds the infix expression for an operation, only adding the parentheses that are needed.
+     */
+    private String render(int count, int left, int right, char operator, byte precedence) {
+        String leftExpression = this.expressions[count][left];
+        String rightExpression = this.expressions[count][right];
+        byte leftPrecedence = this.precedences[count][left];
+        byte rightPrecedence = this.precedences[count][right];
+
+        StringBuilder builder = new StringBuilder(leftExpression.length() + rightExpression.length() + 5);
+        if (leftPrecedence < precedence) {
+            builder.append('(').append(leftExpression).append(')');
+        } else {
+            builder.append(leftExpression);
+        }
+        builder.append(operator);
+        if (rightPrecedence < precedence
+                || (rightPrecedence == precedence && (operator == '-' || operator == '/'))) {
+            builder.append('(').append(rightExpression).append(')');
+        } else {
+            builder.append(rightExpression);
+        }
+        return builder.toString();
+    }
+}
@@ -7,6 +7,7 @@ package twentyfourpoints;
 public class StackException extends RuntimeException {
     public StackException(String error) {
         super(error);
+        Metrics.error(Metrics.ErrorType.STACK);
     }
 }
 
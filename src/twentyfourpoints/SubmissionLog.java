@@ -0,0 +1,859 @@
+package twentyfourpoints;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of every answer checked: the hand, the target, the expression, the verdict and when it
+ * was given. It is kept so past answers can be audited, or checked again after a rule changes, without
+ * anything being lost in between.
+ *
+ * The log is a directory of segment files of a fixed size, each memory-mapped while it is written. A record
+ * is encoded and its CRC worked out before the log is locked, so appending threads only hold the lock to take
+ * the next space in the segment and copy the record into it, and the record is visible to readers straight
+ * away. When a segment is full a new one is started and the full one is handed to a background thread to be
+ * sealed, so appending never waits for the disk. Records reach the disk through group commit: commit() forces
+ * everything appended so far in one call, and threads that commit while a force is running wait for it and
+ * share the next one, so the cost of forcing is spread over every record appended in the meantime.
+ * startCommitting() does the same on a timer. If a full segment can not be forced, every later commit fails,
+ * as records in it may never reach the disk. Each record has a CRC, so a record only partly written when the
+ * process stopped is found when the log is opened again and the log carries on from the last whole record.
+ *
+ * Sealing a segment forces it to disk and writes an index of its records sorted by hand beside it, so every
+ * answer ever given to a hand can be found with a binary search per segment (see forEachByHand()). Until its
+ * index is written, a segment's records are found from the keys kept in memory as they were appended. Hands
+ * are keyed by their sorted values, so the order the cards were dealt in does not matter.
+ *
+ * Segment layout (big-endian):
+ * header:   magic, version (2 ints), sequence number of the first record (long)
+ * records:  length of the record in bytes, CRC of the rest of the record (2 ints), time in milliseconds
+ *           (long), target (int), verdict (byte), number of cards (byte), the value of each card (1 byte each),
+ *           then the expression in ASCII. A length of 0 marks the end of the records.
+ * Index layout (big-endian):
+ * header:   magic, version (2 ints), sequence number of the first record (long), records, end of the records
+ *           in the segment (2 ints)
+ * entries:  the hand key in the high 32 bits and the position of the record in the low 32 bits (1 long per
+ *           record), sorted
+ *
+ * Verdicts are stored by ordinal, so new verdicts must only ever be added at the end of Verdict.
+ * Any number of threads can append, commit and read at once.
+ * @version 2.0
+ */
+public class SubmissionLog implements Closeable {
+
+    public static final Path DEFAULT_DIRECTORY = Paths.get("submissions");
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    public static final int MAX_CARDS = 8;
+    public static final int MAX_EXPRESSION = 64 * 1024; //Longest expression stored, in characters
+
+    private static final int MAGIC = 0x3234534C;       //"24SL"
+    private static final int INDEX_MAGIC = 0x32345349; //"24SI"
+    private static final int VERSION = 1;
+    private static final int SEGMENT_HEADER = 16;
+    private static final int RECORD_HEADER = 22;
+    private static final int INDEX_HEADER = 24;
+    private static final int KEY_BASE = Rules.HIGHEST_VALUE + 1; //Sorted values are packed as digits of this base
+
+    /**
+     * Receives records read from the log. The record is reused for the next one, so anything kept must be copied.
+     */
+    public interface RecordVisitor {
+        void visit(Record record) throws IOException;
+    }
+
+    /**
+     * A view of one record in a segment, read straight from the mapping.
+     */
+    public static final class Record {
+        private ByteBuffer buffer;
+        private int offset;
+        private int length;
+        private long sequence;
+        private final int[][] hands = new int[MAX_CARDS + 1][];
+        private final ExpressionView expression = new ExpressionView();
+
+        Record() {
+            for (int cards = 1; cards <= MAX_CARDS; ++cards) {
+                this.hands[cards] = new int[cards];
+            }
+        }
+
+        void set(ByteBuffer buffer, int offset, long sequence) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = buffer.getInt(offset);
+            this.sequence = sequence;
+            int cards = this.getCardCount();
+            this.expression.set(buffer, offset + RECORD_HEADER + cards, this.length - RECORD_HEADER - cards);
+        }
+
+        /**
+         * @return The position of the record in the whole log, counting from 0.
+         */
+        public long getSequence() {
+            return this.sequence;
+        }
+
+        /**
+         * @return When the answer was checked, in milliseconds since the epoch.
+         */
+        public long getTimestamp() {
+            return this.buffer.getLong(this.offset + 8);
+        }
+
+        public int getTarget() {
+            return this.buffer.getInt(this.offset + 16);
+        }
+
+        /**
+         * @return The verdict given when the answer was checked, or null if it is newer than this version knows.
+         */
+        public Verdict getVerdict() {
+            int ordinal = this.buffer.get(this.offset + 20);
+            return ordinal < VERDICTS.length ? VERDICTS[ordinal] : null;
+        }
+
+        public int getCardCount() {
+            return this.buffer.get(this.offset + 21);
+        }
+
+        /**
+         * @return The values of the cards, in an array that is reused for the next record with as many cards.
+         */
+        public int[] getValues() {
+            int[] values = this.hands[this.getCardCount()];
+            for (int i = 0; i < values.length; ++i) {
+                values[i] = this.buffer.get(this.offset + RECORD_HEADER + i);
+            }
+            return values;
+        }
+
+        /**
+         * @return The expression, read from the mapping without copying it. Only valid until the next record.
+         */
+        public CharSequence getExpression() {
+            return this.expression;
+        }
+
+        /**
+         * @return The size of the record in bytes.
+         */
+        public int getLength() {
+            return this.length;
+        }
+    }//End class Record
+
+    /**
+     * Reads ASCII straight out of a buffer.
+     */
+    private static final class ExpressionView implements CharSequence {
+        private ByteBuffer buffer;
+        private int offset;
+        private int length;
+
+        void set(ByteBuffer buffer, int offset, int length) {
+            this.buffer = buffer;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        @Override
+        public int length() {
+            return this.length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (this.buffer.get(this.offset + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return this.toString().substring(start, end);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder text = new StringBuilder(this.length);
+            for (int i = 0; i < this.length; ++i) {
+                text.append(this.charAt(i));
+            }
+            return text.toString();
+        }
+    }//End class ExpressionView
+
+    /**
+     * One file of the log.
+     */
+    private static final class Segment {
+        private final Path path;
+        private final long first;   //Sequence number of the first record
+        private MappedByteBuffer buffer; //Mapped for writing while active, mapped for reading when first needed once sealed
+        private ByteBuffer writer;  //Used to append while active, null once sealed
+        private int end;            //End of the records
+        private int count;          //Number of records
+        private int forced;         //Records up to here have been forced to disk, while active
+        private int[] keys;         //Hand key of each record, in order, until the index is written
+        private int[] offsets;      //Position of each record, in order, until the index is written
+        private MappedByteBuffer index; //The index file once sealed, mapped when first needed
+
+        Segment(Path path, long first) {
+            this.path = path;
+            this.first = first;
+        }
+
+        synchronized MappedByteBuffer getBuffer() throws IOException {
+            if (this.buffer == null) {
+                this.buffer = map(this.path, FileChannel.MapMode.READ_ONLY, 0);
+            }
+            return this.buffer;
+        }
+
+        synchronized MappedByteBuffer getIndex() throws IOException {
+            if (this.index == null) {
+                this.index = map(indexPath(this.path), FileChannel.MapMode.READ_ONLY, 0);
+            }
+            return this.index;
+        }
+
+        /**
+         * @return The positions of the records for a hand, from the keys kept in memory.
+         */
+        int[] find(int key) {
+            int[] found = new int[16];
+            int matches = 0;
+            for (int i = 0; i < this.count; ++i) {
+                if (this.keys[i] == key) {
+                    if (matches == found.length) {
+                        found = Arrays.copyOf(found, matches * 2);
+                    }
+                    found[matches++] = this.offsets[i];
+                }
+            }
+            return Arrays.copyOf(found, matches);
+        }
+
+        void addToIndex(int key, int offset) {
+            if (this.count == this.keys.length) {
+                this.keys = Arrays.copyOf(this.keys, this.count * 2);
+                this.offsets = Arrays.copyOf(this.offsets, this.count * 2);
+            }
+            this.keys[this.count] = key;
+            this.offsets[this.count] = offset;
+        }
+    }//End class Segment
+
+    private static final Verdict[] VERDICTS = Verdict.values();
+    //Each appending thread encodes its record here before taking the log's lock
+    private static final ThreadLocal<ByteBuffer> ENCODERS = ThreadLocal.withInitial(() ->
+            ByteBuffer.allocate(RECORD_HEADER + MAX_CARDS + MAX_EXPRESSION).order(ByteOrder.BIG_ENDIAN));
+
+    private final Path directory;
+    private final int segmentSize;
+    private final ArrayList<Segment> segments = new ArrayList<>();
+    private Segment active;
+    private long appended;   //Records appended to the whole log
+    private boolean closed;
+
+    //Sealing full segments
+    private final ArrayList<Segment> sealing = new ArrayList<>(); //Full segments not yet sealed, in order
+    private ExecutorService sealer;  //Started with the first full segment
+
+    //Group commit
+    private final Object commitLock = new Object();
+    private long durable;    //Records forced to disk, guarded by commitLock
+    private IOException sealFailure; //Set if a full segment could not be forced to disk, guarded by commitLock
+    private boolean forcing; //True while a thread is forcing, guarded by commitLock
+    private Thread committer;
+
+    /**
+     * Opens the log in the default directory with the default segment size.
+     */
+    public static SubmissionLog open(Path directory) throws IOException {
+        return open(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Opens the log stored in a directory, creating it if needed. Segments without an index are indexed, and the
+     * last segment is read up to its last whole record, which is where appending carries on.
+     * @param directory The directory holding the segment files.
+     * @param segmentSize The size of each new segment file in bytes.
+     * @return The opened log.
+     * @throws IOException If a file could not be read or written, or is not part of a log.
+     */
+    public static SubmissionLog open(Path directory, int segmentSize) throws IOException {
+        if (segmentSize < SEGMENT_HEADER + RECORD_HEADER + MAX_CARDS + MAX_EXPRESSION) {
+            throw new IllegalArgumentException("Segments must have room for the largest record");
+        }
+        SubmissionLog log = new SubmissionLog(directory, segmentSize);
+        log.load();
+        return log;
+    }
+
+    private SubmissionLog(Path directory, int segmentSize) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+    }
+
+    private void load() throws IOException {
+        Files.createDirectories(this.directory);
+        ArrayList<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory, "segment-*.log")) {
+            for (Path path : files) {
+                paths.add(path);
+            }
+        }
+        //The first sequence number is in the name with leading zeros, so sorting by name sorts by sequence
+        paths.sort(null);
+        for (int i = 0; i < paths.size(); ++i) {
+            Path path = paths.get(i);
+            MappedByteBuffer buffer = map(path, i == paths.size() - 1 ? FileChannel.MapMode.READ_WRITE
+                    : FileChannel.MapMode.READ_ONLY, i == paths.size() - 1 ? this.segmentSize : 0);
+            if (buffer.capacity() < SEGMENT_HEADER || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                throw new IOException(path + " is not a segment of a submission log");
+            }
+            Segment segment = new Segment(path, buffer.getLong(8));
+            segment.buffer = buffer;
+            if (i < paths.size() - 1 && this.readIndexHeader(segment)) {
+                segment.buffer = null; //Mapped again when it is read
+            } else {
+                this.scan(segment);
+                if (i < paths.size() - 1) {
+                    writeIndex(segment);
+                    segment.keys = null;
+                    segment.offsets = null;
+                }
+            }
+            this.segments.add(segment);
+        }
+        if (this.segments.isEmpty()) {
+            this.startSegment(0);
+        } else {
+            Segment last = this.segments.get(this.segments.size() - 1);
+            this.active = last;
+            last.writer = last.buffer.duplicate();
+            //Clear anything after the last whole record, so bytes of a record that was never finished
+            //can not be read as part of a later one.
+            for (int position = last.end; position < last.buffer.capacity(); ++position) {
+                last.buffer.put(position, (byte) 0);
+            }
+            last.buffer.force();
+            last.forced = last.end;
+            this.appended = last.first + last.count;
+        }
+        this.durable = this.appended;
+    }//End load()
+
+    /**
+     * Reads the records of a segment to find where they end, checking each CRC, and builds its index in memory.
+     */
+    private void scan(Segment segment) {
+        ByteBuffer buffer = segment.buffer;
+        segment.keys = new int[1024];
+        segment.offsets = new int[1024];
+        segment.count = 0;
+        int position = SEGMENT_HEADER;
+        CRC32 check = new CRC32();
+        int[] values = new int[MAX_CARDS];
+        while (position + RECORD_HEADER <= buffer.capacity()) {
+            int length = buffer.getInt(position);
+            int cards = length >= RECORD_HEADER ? buffer.get(position + 21) : 0;
+            if (length < RECORD_HEADER + 1 || position + length > buffer.capacity() || cards < 1 || cards > MAX_CARDS
+                    || length < RECORD_HEADER + cards) {
+                break;
+            }
+            ByteBuffer body = buffer.duplicate();
+            body.limit(position + length).position(position + 8);
+            check.reset();
+            check.update(body);
+            if ((int) check.getValue() != buffer.getInt(position + 4)) {
+                break;
+            }
+            for (int i = 0; i < cards; ++i) {
+                values[i] = buffer.get(position + RECORD_HEADER + i);
+            }
+            segment.addToIndex(handKey(values, cards), position);
+            ++segment.count;
+            position += length;
+        }
+        segment.end = position;
+    }//End scan()
+
+    /**
+     * Reads the record count and end of a sealed segment from its index.
+     * @return False if the index is missing or does not match the segment.
+     */
+    private boolean readIndexHeader(Segment segment) throws IOException {
+        Path path = indexPath(segment.path);
+        if (!Files.isRegularFile(path)) {
+            return false;
+        }
+        MappedByteBuffer index = map(path, FileChannel.MapMode.READ_ONLY, 0);
+        if (index.capacity() < INDEX_HEADER || index.getInt(0) != INDEX_MAGIC || index.getInt(4) != VERSION
+                || index.getLong(8) != segment.first || index.capacity() != INDEX_HEADER + index.getInt(16) * 8L) {
+            return false;
+        }
+        segment.count = index.getInt(16);
+        segment.end = index.getInt(20);
+        segment.index = index;
+        return true;
+    }
+
+    /**
+     * Sorts a segment's records by hand and writes the index, through a temporary file so a partly written
+     * index is never read.
+     */
+    private static void writeIndex(Segment segment) throws IOException {
+        long[] entries = new long[segment.count];
+        for (int i = 0; i < segment.count; ++i) {
+            entries[i] = (long) segment.keys[i] << 32 | segment.offsets[i];
+        }
+        Arrays.sort(entries);
+        ByteBuffer index = ByteBuffer.allocate(INDEX_HEADER + entries.length * 8).order(ByteOrder.BIG_ENDIAN);
+        index.putInt(INDEX_MAGIC).putInt(VERSION).putLong(segment.first).putInt(segment.count).putInt(segment.end);
+        for (long entry : entries) {
+            index.putLong(entry);
+        }
+        Path path = indexPath(segment.path);
+        Path temporary = Files.createTempFile(path.toAbsolutePath().getParent(), "index", ".tmp");
+        try {
+            Files.write(temporary, index.array());
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Starts a new segment file for records from the sequence number given.
+     */
+    private void startSegment(long first) throws IOException {
+        Path path = this.directory.resolve(String.format("segment-%019d.log", first));
+        Segment segment = new Segment(path, first);
+        segment.buffer = map(path, FileChannel.MapMode.READ_WRITE, this.segmentSize);
+        segment.buffer.putInt(0, MAGIC).putInt(4, VERSION).putLong(8, first);
+        segment.writer = segment.buffer.duplicate();
+        segment.end = SEGMENT_HEADER;
+        segment.forced = 0;
+        segment.keys = new int[1024];
+        segment.offsets = new int[1024];
+        this.segments.add(segment);
+        this.active = segment;
+    }
+
+    /**
+     * Starts the next segment and hands the full one to the sealing thread. Starting a segment only creates and
+     * maps its file, nothing waits for the disk.
+     */
+    private void rotate() throws IOException {
+        Segment full = this.active;
+        this.startSegment(this.appended);
+        full.writer = null;
+        this.sealing.add(full);
+        if (this.sealer == null) {
+            this.sealer = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "submission log seal");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        this.sealer.execute(() -> this.seal(full));
+    }
+
+    /**
+     * Forces a full segment to disk and writes its index, on the sealing thread. Segments are sealed in the order
+     * they filled, so once one is forced every record before its end is on disk, unless an earlier one failed.
+     */
+    private void seal(Segment full) {
+        boolean forced = false;
+        boolean indexed = false;
+        try {
+            full.buffer.force();
+            forced = true;
+            writeIndex(full);
+            indexed = true;
+        } catch (UncheckedIOException err) {
+            synchronized (this.commitLock) {
+                if (this.sealFailure == null) {
+                    this.sealFailure = err.getCause();
+                }
+                this.commitLock.notifyAll();
+            }
+        } catch (IOException err) {
+            //The records can still be found from the keys in memory, and the index is written when the log is
+            //next opened
+            System.err.println("Could not write the index of " + full.path + ": " + err.getMessage());
+        } finally {
+            synchronized (this) {
+                if (indexed) {
+                    full.keys = null;
+                    full.offsets = null;
+                }
+                this.sealing.remove(full);
+                this.notifyAll();
+            }
+        }
+        if (forced) {
+            synchronized (this.commitLock) {
+                //Records before a segment that failed are not on disk, so durable never passes it
+                if (this.sealFailure == null) {
+                    this.durable = Math.max(this.durable, full.first + full.count);
+                }
+                this.commitLock.notifyAll();
+            }
+        }
+    }//End seal()
+
+    /**
+     * Appends a record. It can be read straight away, and reaches the disk at the next commit.
+     * @param values The values of the cards, from 1 to 13, at most MAX_CARDS of them.
+     * @param target The value the expression had to evaluate to.
+     * @param expression The expression, at most MAX_EXPRESSION characters. Characters that are not ASCII are
+     *                   stored as '?'.
+     * @param verdict The outcome of checking the expression.
+     * @return The sequence number of the record, to pass to commit().
+     * @throws IOException If a new segment file could not be started, or the log is closed.
+     */
+    public long append(int[] values, int target, CharSequence expression, Verdict verdict) throws IOException {
+        if (values.length < 1 || values.length > MAX_CARDS || expression.length() > MAX_EXPRESSION) {
+            throw new IllegalArgumentException("A record can have 1 to " + MAX_CARDS + " cards and an expression of at most "
+                    + MAX_EXPRESSION + " characters");
+        }
+        for (int value : values) {
+            if (value < 1 || value > Rules.HIGHEST_VALUE) {
+                throw new IllegalArgumentException("Card values must be between 1 and " + Rules.HIGHEST_VALUE);
+            }
+        }
+        int length = RECORD_HEADER + values.length + expression.length();
+        ByteBuffer record = ENCODERS.get();
+        record.clear().position(8);
+        record.putLong(System.currentTimeMillis()).putInt(target).put((byte) verdict.ordinal()).put((byte) values.length);
+        for (int value : values) {
+            record.put((byte) value);
+        }
+        for (int i = 0; i < expression.length(); ++i) {
+            char symbol = expression.charAt(i);
+            record.put((byte) (symbol < 128 ? symbol : '?'));
+        }
+        record.flip().position(8);
+        CRC32 crc = new CRC32();
+        crc.update(record);
+        record.putInt(4, (int) crc.getValue()).position(4);
+        int key = handKey(values, values.length);
+
+        synchronized (this) {
+            if (this.closed) {
+                throw new IOException("The submission log is closed");
+            }
+            if (this.active.end + length > this.active.buffer.capacity()) {
+                this.rotate();
+            }
+            Segment segment = this.active;
+            int start = segment.end;
+            ByteBuffer writer = segment.writer;
+            writer.limit(start + length).position(start + 4);
+            writer.put(record);
+            //The length is written last, so a reader never sees a length before the rest of the record
+            writer.putInt(start, length);
+
+            segment.addToIndex(key, start);
+            ++segment.count;
+            segment.end = start + length;
+            return this.appended++;
+        }
+    }//End append()
+
+    /**
+     * Waits until the record with the sequence number given, and every record before it, is on disk.
+     * If no other thread is forcing, this one forces every record appended so far, including those in full
+     * segments still waiting to be sealed, otherwise it waits for that force and, if it did not cover the record,
+     * takes part in the next one.
+     * @throws IOException If the records could not be forced to disk, now or when a full segment was sealed.
+     */
+    public void commit(long sequence) throws IOException {
+        synchronized (this.commitLock) {
+            while (this.durable <= sequence && this.forcing && this.sealFailure == null) {
+                try {
+                    this.commitLock.wait();
+                } catch (InterruptedException err) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for a commit");
+                }
+            }
+            //Checked first, as records after a segment that failed may be on disk while records in it are not
+            if (this.sealFailure != null) {
+                throw new IOException("A full segment of the submission log could not be forced to disk",
+                        this.sealFailure);
+            }
+            if (this.durable > sequence) {
+                return;
+            }
+            this.forcing = true;
+        }
+        long covered = 0; //Stays 0 unless every force succeeds
+        IOException failure;
+        try {
+            Segment[] full;
+            Segment segment;
+            int from;
+            int to;
+            long appended;
+            synchronized (this) {
+                full = this.sealing.toArray(new Segment[0]);
+                segment = this.active;
+                from = segment.forced;
+                to = segment.end;
+                appended = this.appended;
+            }
+            for (Segment file : full) {
+                file.buffer.force();
+            }
+            if (to > from) {
+                segment.buffer.force(from, to - from);
+            }
+            synchronized (this) {
+                segment.forced = Math.max(segment.forced, to);
+            }
+            covered = appended;
+        } finally {
+            synchronized (this.commitLock) {
+                this.forcing = false;
+                failure = this.sealFailure;
+                if (failure == null) {
+                    this.durable = Math.max(this.durable, covered);
+                }
+                this.commitLock.notifyAll();
+            }
+        }
+        if (failure != null) { //Sealing failed while this thread was forcing
+            throw new IOException("A full segment of the submission log could not be forced to disk", failure);
+        }
+    }//End commit()
+
+    /**
+     * Commits every record appended so far on a daemon thread every period, so appending never waits for the disk.
+     * Records appended since the last commit are lost if the machine stops, at most one period's worth.
+     * @param periodMillis Milliseconds between commits.
+     */
+    public synchronized void startCommitting(long periodMillis) {
+        if (this.committer != null) {
+            return;
+        }
+        this.committer = new Thread(() -> {
+            try {
+                while (true) {
+                    Thread.sleep(periodMillis);
+                    long last = this.getRecordCount() - 1;
+                    if (last >= 0) {
+                        this.commit(last);
+                    }
+                }
+            } catch (InterruptedException | InterruptedIOException err) {
+                //Stop committing
+            } catch (IOException err) {
+                System.err.println("Could not commit the submission log: " + err.getMessage());
+            }
+        }, "submission log commit");
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+
+    /**
+     * @return The number of records in the log.
+     */
+    public synchronized long getRecordCount() {
+        return this.appended;
+    }
+
+    /**
+     * @return The number of segment files.
+     */
+    public synchronized int getSegmentCount() {
+        return this.segments.size();
+    }
+
+    /**
+     * @return The number of bytes of records in the segment, for measuring how fast it is read.
+     */
+    public synchronized long getSegmentBytes(int segment) {
+        return this.segments.get(segment).end - SEGMENT_HEADER;
+    }
+
+    /**
+     * Reads every record in order of sequence number, including those appended while reading, up to when it started.
+     * @return The number of records read.
+     */
+    public long forEach(RecordVisitor visitor) throws IOException {
+        long count = 0;
+        for (int segment = 0, segments = this.getSegmentCount(); segment < segments; ++segment) {
+            count += this.forEach(segment, visitor);
+        }
+        return count;
+    }
+
+    /**
+     * Reads every record of one segment in order. Segments can be read on separate threads at the same time.
+     * @param segment The number of the segment, from 0 to getSegmentCount() - 1.
+     * @return The number of records read.
+     */
+    public long forEach(int segment, RecordVisitor visitor) throws IOException {
+        Segment file;
+        int end;
+        synchronized (this) {
+            file = this.segments.get(segment);
+            end = file.end;
+        }
+        ByteBuffer buffer = file.getBuffer().duplicate();
+        Record record = new Record();
+        long sequence = file.first;
+        for (int position = SEGMENT_HEADER; position < end; position += record.getLength()) {
+            record.set(buffer, position, sequence++);
+            visitor.visit(record);
+        }
+        return sequence - file.first;
+    }
+
+    /**
+     * Reads every record for a hand, in order of sequence number, using each segment's index.
+     * @param values The values of the cards, in any order.
+     * @return The number of records read.
+     */
+    public long forEachByHand(int[] values, RecordVisitor visitor) throws IOException {
+        int key = handKey(values, values.length);
+        ArrayList<Segment> files;
+        int[][] unindexed;
+        synchronized (this) {
+            files = new ArrayList<>(this.segments);
+            //Copy the matches of segments without an index yet, the active segment's arrays are replaced as it grows
+            unindexed = new int[files.size()][];
+            for (int i = 0; i < files.size(); ++i) {
+                if (files.get(i).keys != null) {
+                    unindexed[i] = files.get(i).find(key);
+                }
+            }
+        }
+        Record record = new Record();
+        long count = 0;
+        for (int s = 0; s < files.size(); ++s) {
+            Segment file = files.get(s);
+            ByteBuffer buffer = file.getBuffer().duplicate();
+            if (unindexed[s] != null) {
+                for (int offset : unindexed[s]) {
+                    record.set(buffer, offset, -1);
+                    visitor.visit(record);
+                }
+                count += unindexed[s].length;
+                continue;
+            }
+            //Binary search for the first entry of the hand, entries are sorted by key then position
+            MappedByteBuffer index = file.getIndex();
+            int low = 0;
+            int high = file.count;
+            long first = (long) key << 32;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (index.getLong(INDEX_HEADER + middle * 8) < first) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            for (int i = low; i < file.count; ++i) {
+                long entry = index.getLong(INDEX_HEADER + i * 8);
+                if ((int) (entry >>> 32) != key) {
+                    break;
+                }
+                record.set(buffer, (int) entry, -1);
+                visitor.visit(record);
+                ++count;
+            }
+        }
+        return count;
+    }//End forEachByHand()
+
+    /**
+     * Packs the sorted values of a hand into an int, as the digits of a base 14 number. Values are from 1 to 13
+     * so no digit is 0, which keeps hands of different sizes apart, and 8 digits still fit in 31 bits.
+     */
+    static int handKey(int[] values, int count) {
+        int[] sorted = Arrays.copyOf(values, count);
+        Arrays.sort(sorted);
+        int key = 0;
+        for (int value : sorted) {
+            key = key * KEY_BASE + value;
+        }
+        return key;
+    }
+
+    /**
+     * Waits for full segments to be sealed, forces every record to disk and stops the commit and sealing threads.
+     * Records already appended can still be read.
+     */
+    @Override
+    public void close() throws IOException {
+        Thread thread;
+        synchronized (this) {
+            if (this.closed) {
+                return;
+            }
+            this.closed = true;
+            thread = this.committer;
+            while (!this.sealing.isEmpty()) {
+                try {
+                    this.wait();
+                } catch (InterruptedException err) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for a segment to be sealed");
+                }
+            }
+            if (this.sealer != null) {
+                this.sealer.shutdown();
+            }
+        }
+        if (thread != null) {
+            thread.interrupt();
+        }
+        long last = this.getRecordCount() - 1;
+        if (last >= 0) {
+            this.commit(last);
+        }
+    }
+
+    private static Path indexPath(Path segment) {
+        String name = segment.getFileName().toString();
+        return segment.resolveSibling(name.substring(0, name.length() - ".log".length()) + ".idx");
+    }
+
+    /**
+     * Maps a file, growing it to the size given when mapping it for writing.
+     * @param size The size to map for writing, ignored when reading.
+     */
+    private static MappedByteBuffer map(Path path, FileChannel.MapMode mode, int size) throws IOException {
+        if (mode == FileChannel.MapMode.READ_ONLY) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                return channel.map(mode, 0, channel.size());
+            }
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE)) {
+            return channel.map(mode, 0, Math.max(size, channel.size()));
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package twentyfourpoints;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Checks every answer in a SubmissionLog again and counts how the verdicts compare with those given at the time,
+ * for finding out what a change to the rules or the checker would have done to past answers.
+ *
+ * Segments are read straight from their mappings, so the log is read at the speed of the disk, or of memory
+ * once it is cached. Each worker thread takes the next segment not yet taken and checks its records with its
+ * own Verifiers, one per target, so the threads share nothing until their counts are added up at the end.
+ *
+ *     java twentyfourpoints.SubmissionReplay [directory] [threads]
+ * @version 2.0
+ */
+public class SubmissionReplay {
+
+    private static final Verdict[] VERDICTS = Verdict.values();
+
+    private final int threads;
+    private Limits limits = Limits.DEFAULT;
+    private long records;
+
+    /**
+     * @param threads The number of worker threads.
+     */
+    public SubmissionReplay(int threads) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("There must be at least 1 thread");
+        }
+        this.threads = threads;
+    }
+
+    /**
+     * @param limits The limits answers are held to when checked again, or null for none.
+     */
+    public void setLimits(Limits limits) {
+        this.limits = limits;
+    }
+
+    /**
+     * @return The number of records checked by the last replay.
+     */
+    public long getRecordCount() {
+        return this.records;
+    }
+
+    /**
+     * Checks every record in the log again.
+     * @return How many records went from each verdict to each other verdict, indexed by the ordinal of the verdict
+     *         in the log and then of the new verdict. The last row counts records with a verdict this version
+     *         does not know.
+     * @throws IOException If a segment could not be read.
+     */
+    public long[][] replay(SubmissionLog log) throws IOException, InterruptedException {
+        int segments = log.getSegmentCount();
+        AtomicInteger next = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(this.threads, runnable -> {
+            Thread thread = new Thread(runnable, "replay");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ArrayList<Future<long[][]>> results = new ArrayList<>();
+        for (int i = 0; i < this.threads; ++i) {
+            results.add(workers.submit(() -> {
+                long[][] counts = new long[VERDICTS.length + 1][VERDICTS.length];
+                HashMap<Integer, Verifier> verifiers = new HashMap<>();
+                SubmissionLog.RecordVisitor visitor = record -> {
+                    Verifier verifier = verifiers.get(record.getTarget());
+                    if (verifier == null) {
+                        verifier = new Verifier(null, record.getTarget());
+                        verifier.setLimits(this.limits);
+                        verifiers.put(record.getTarget(), verifier);
+                    }
+                    Verdict old = record.getVerdict();
+                    Verdict verdict = verifier.verify(record.getValues(), record.getExpression());
+                    ++counts[old == null ? VERDICTS.length : old.ordinal()][verdict.ordinal()];
+                };
+                for (int segment = next.getAndIncrement(); segment < segments; segment = next.getAndIncrement()) {
+                    log.forEach(segment, visitor);
+                }
+                return counts;
+            }));
+        }
+        long[][] total = new long[VERDICTS.length + 1][VERDICTS.length];
+        long records = 0;
+        try {
+            for (Future<long[][]> result : results) {
+                long[][] counts = result.get();
+                for (int old = 0; old < counts.length; ++old) {
+                    for (int verdict = 0; verdict < VERDICTS.length; ++verdict) {
+                        total[old][verdict] += counts[old][verdict];
+                        records += counts[old][verdict];
+                    }
+                }
+            }
+        } catch (ExecutionException err) {
+            if (err.getCause() instanceof IOException) {
+                throw (IOException) err.getCause();
+            }
+            throw new IllegalStateException("Replay failed", err.getCause());
+        } finally {
+            workers.shutdownNow();
+        }
+        this.records = records;
+        return total;
+    }//End replay()
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Path directory = args.length > 0 ? Paths.get(args[0]) : SubmissionLog.DEFAULT_DIRECTORY;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        try (SubmissionLog log = SubmissionLog.open(directory)) {
+            long bytes = 0;
+            for (int segment = 0; segment < log.getSegmentCount(); ++segment) {
+                bytes += log.getSegmentBytes(segment);
+            }
+            SubmissionReplay replay = new SubmissionReplay(threads);
+            long start = System.nanoTime();
+            long[][] counts = replay.replay(log);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d records in %d segments, %.1f MB in %.2f s (%.1f MB/s)%n", replay.getRecordCount(),
+                    log.getSegmentCount(), bytes / 1e6, seconds, bytes / 1e6 / seconds);
+            long changed = 0;
+            for (int old = 0; old < counts.length; ++old) {
+                for (int verdict = 0; verdict < VERDICTS.length; ++verdict) {
+                    if (old != verdict && counts[old][verdict] > 0) {
+                        changed += counts[old][verdict];
+                        System.out.printf("%s -> %s: %d%n", old < VERDICTS.length ? VERDICTS[old] : "unknown",
+                                VERDICTS[verdict], counts[old][verdict]);
+                    }
+                }
+            }
+            System.out.println(changed == 0 ? "No verdict changed" : changed + " verdicts changed");
+        }
+    }//End main()
+}
@@ -0,0 +1,361 @@
+package twentyfourpoints;
+
+import java.util.Arrays;
+
+/**
+ * Solves hands of up to eight cards for any target. Every subset of the cards is numbered by a bit mask,
+ * and the values a subset can make are found by splitting it into two smaller subsets in every way and
+ * combining each value of one side with each value of the other. The values of each subset are worked out
+ * once and kept, so once a hand has been searched asking about another target costs little more than a lookup.
+ *
+ * The number of values grows very quickly with the size of a subset (four cards make about a thousand,
+ * seven make millions), so only subsets of up to five cards have all their values kept. Whether a larger
+ * subset can make a value is answered by walking the values of the smaller side of each split and looking
+ * up what the larger side would have to make, and these answers are remembered for that subset as well.
+ *
+ * Values are exact fractions, results that do not fit in a Rational are left out.
+ * A SubsetSolver holds the results for one hand and should not be shared between threads.
+ * @version 2.0
+ */
+public class SubsetSolver {
+
+    public static final int MAX_CARDS = 8;
+    //Largest subset that has every value it can make stored
+    private static final int STORED_SIZE = 5;
+
+    //Ways of combining a value 'a' from one side of a split with a value 'b' from the other
+    private static final int ADD = 0;
+    private static final int MULTIPLY = 1;
+    private static final int SUBTRACT = 2;          //a-b
+    private static final int SUBTRACT_REVERSED = 3; //b-a
+    private static final int DIVIDE = 4;            //a/b
+    private static final int DIVIDE_REVERSED = 5;   //b/a
+    private static final int OPERATIONS = 6;
+
+    //Precedence of each kind of expression, used to decide where parentheses are needed.
+    private static final int ADDITIVE = 1;
+    private static final int MULTIPLICATIVE = 2;
+    private static final int NUMBER = 3;
+
+    private static final long NONE = 0; //Never a packed Rational, returned when an operation has no result
+
+    private final int[] hand;
+    private final int full; //Mask of every card
+    private final RationalSet[] stored;  //Every value of each small subset, null until worked out
+    private final long[][] storedValues; //The same values as arrays, for walking through
+    private final RationalSet[] reachable;   //Values found to be reachable by each large subset
+    private final RationalSet[] unreachable; //Values found to be unreachable by each large subset
+    private int precedence; //Precedence of the last expression built
+
+    /**
+     * @param hand The values of the cards, from 1 to 8 of them.
+     */
+    public SubsetSolver(int... hand) {
+        if (hand.length < 1 || hand.length > MAX_CARDS) {
+            throw new IllegalArgumentException("A hand must have between 1 and " + MAX_CARDS + " cards");
+        }
+        this.hand = hand.clone();
+        this.full = (1 << hand.length) - 1;
+        this.stored = new RationalSet[1 << hand.length];
+        this.storedValues = new long[1 << hand.length][];
+        this.reachable = new RationalSet[1 << hand.length];
+        this.unreachable = new RationalSet[1 << hand.length];
+    }
+
+    /**
+     * @return The values of the cards.
+     */
+    public int[] getHand() {
+        return this.hand.clone();
+    }
+
+    /**
+     * @param target The value to make.
+     * @return True if the cards can make the target using every card once, otherwise false.
+     */
+    public boolean isSolvable(int target) {
+        return this.canMake(this.full, Rational.valueOf(target));
+    }
+
+    /**
+     * @param target The value to make.
+     * @return An expression using every card once that evaluates to the target, or null if there is none.
+     */
+    public String findSolution(int target) {
+        long value = Rational.valueOf(target);
+        return this.canMake(this.full, value) ? this.build(this.full, value) : null;
+    }
+
+    /**
+     * Finds every whole number in a range the cards can make, sharing all the work between targets.
+     * @param lowest The lowest target.
+     * @param highest The highest target.
+     * @return The targets that can be made, in ascending order.
+     */
+    public int[] findTargets(int lowest, int highest) {
+        int[] targets = new int[16];
+        int count = 0;
+        for (long target = lowest; target <= highest; ++target) {
+            if (this.isSolvable((int) target)) {
+                if (count == targets.length) {
+                    targets = Arrays.copyOf(targets, count * 2);
+                }
+                targets[count++] = (int) target;
+            }
+        }
+        return Arrays.copyOf(targets, count);
+    }
+
+    /**
+     * @return The number of values stored for every subset of the cards so far.
+     */
+    public long getStoredValueCount() {
+        long count = 0;
+        for (int mask = 1; mask <= this.full; ++mask) {
+            count += this.stored[mask] == null ? 0 : this.stored[mask].size();
+            count += this.reachable[mask] == null ? 0 : this.reachable[mask].size();
+            count += this.unreachable[mask] == null ? 0 : this.unreachable[mask].size();
+        }
+        return count;
+    }
+
+    /**
+     * @return Every value the subset can make, working them out the first time they are needed.
+     */
+    private long[] valuesOf(int mask) {
+        if (this.storedValues[mask] == null) {
+            RationalSet values = new RationalSet();
+            if (Integer.bitCount(mask) == 1) {
+                values.add(Rational.valueOf(this.hand[Integer.numberOfTrailingZeros(mask)]));
+            } else {
+                //Every split where the first side holds the lowest card, so each split is only seen once.
+                int lowest = mask & -mask;
+                for (int first = (mask - 1) & mask; first != 0; first = (first - 1) & mask) {
+                    if ((first & lowest) == 0) {
+                        continue;
+                    }
+                    long[] left = this.valuesOf(first);
+                    long[] right = this.valuesOf(mask ^ first);
+                    for (long a : left) {
+                        for (long b : right) {
+                            for (int operation = 0; operation < OPERATIONS; ++operation) {
+                                long result = apply(operation, a, b);
+                                if (result != NONE) {
+                                    values.add(result);
+                                }
+                            }
+                        }
+                    }
+                }
+            }
+            this.stored[mask] = values;
+            this.storedValues[mask] = values.toArray();
+        }
+        return this.storedValues[mask];
+    }
+
+    /**
+     * @param mask The subset of the cards to use.
+     * @param value A packed Rational.
+     * @return True if the subset can make the value using each of its cards once, otherwise false.
+     */
+    private boolean canMake(int mask, long value) {
+        if (Integer.bitCount(mask) <= STORED_SIZE) {
+            this.valuesOf(mask);
+            return this.stored[mask].contains(value);
+        }
+        if (this.reachable[mask] == null) {
+            this.reachable[mask] = new RationalSet();
+            this.unreachable[mask] = new RationalSet();
+        } else if (this.reachable[mask].contains(value)) {
+            return true;
+        } else if (this.unreachable[mask].contains(value)) {
+            return false;
+        }
+        boolean found = this.findSplit(mask, value, null);
+        (found ? this.reachable[mask] : this.unreachable[mask]).add(value);
+        return found;
+    }
+
+    /**
+     * Looks for a split of the subset and a value of each side that make the value.
+     * @param split If not null, filled with the smaller side, its value, the operation and the larger side's value.
+     * @return True if such a split exists, otherwise false.
+     */
+    private boolean findSplit(int mask, long value, long[] split) {
+        int lowest = mask & -mask;
+        for (int first = (mask - 1) & mask; first != 0; first = (first - 1) & mask) {
+            if ((first & lowest) == 0) {
+                continue;
+            }
+            //Walk the values of the side with fewer cards and look up what the other side must make.
+            int small = Integer.bitCount(first) <= Integer.bitCount(mask ^ first) ? first : mask ^ first;
+            int large = mask ^ small;
+            for (long a : this.valuesOf(small)) {
+                for (int operation = 0; operation < OPERATIONS; ++operation) {
+                    long b = this.inverse(operation, a, value, large);
+                    if (b != NONE && this.canMake(large, b)) {
+                        if (split != null) {
+                            split[0] = small;
+                            split[1] = a;
+                            split[2] = operation;
+                            split[3] = b;
+                        }
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Finds the value b the other side must make so that combining a and b gives the value.
+     * @return The value b, or NONE if there is none.
+     */
+    private long inverse(int operation, long a, long value, int other) {
+        int an = Rational.numerator(a);
+        int ad = Rational.denominator(a);
+        int vn = Rational.numerator(value);
+        int vd = Rational.denominator(value);
+        try {
+            switch (operation) {
+                case ADD:
+                    return Rational.subtract(vn, vd, an, ad);
+                case MULTIPLY:
+                    if (an == 0) {
+                        //Zero times anything is zero, and the other side can always make the sum of its cards.
+                        return vn == 0 ? this.sumOf(other) : NONE;
+                    }
+                    return Rational.divide(vn, vd, an, ad);
+                case SUBTRACT:
+                    return Rational.subtract(an, ad, vn, vd);
+                case SUBTRACT_REVERSED:
+                    return Rational.add(vn, vd, an, ad);
+                case DIVIDE:
+                    return vn == 0 || an == 0 ? NONE : Rational.divide(an, ad, vn, vd);
+                default:
+                    return an == 0 ? NONE : Rational.multiply(vn, vd, an, ad);
+            }
+        } catch (ArithmeticException err) {
+            return NONE;
+        }
+    }
+
+    /**
+     * @return The sum of the cards in the subset, which the subset can always make.
+     */
+    private long sumOf(int mask) {
+        long sum = 0;
+        for (int i = 0; i < this.hand.length; ++i) {
+            if ((mask & (1 << i)) != 0) {
+                sum += this.hand[i];
+            }
+        }
+        if (sum != (int) sum) {
+            return NONE;
+        }
+        return Rational.valueOf((int) sum);
+    }
+
+    private static long apply(int operation, long a, long b) {
+        int an = Rational.numerator(a);
+        int ad = Rational.denominator(a);
+        int bn = Rational.numerator(b);
+        int bd = Rational.denominator(b);
+        try {
+            switch (operation) {
+                case ADD:
+                    return Rational.add(an, ad, bn, bd);
+                case MULTIPLY:
+                    return Rational.multiply(an, ad, bn, bd);
+                case SUBTRACT:
+                    return Rational.subtract(an, ad, bn, bd);
+                case SUBTRACT_REVERSED:
+                    return Rational.subtract(bn, bd, an, ad);
+                case DIVIDE:
+                    return bn == 0 ? NONE : Rational.divide(an, ad, bn, bd);
+                default:
+                    return an == 0 ? NONE : Rational.divide(bn, bd, an, ad);
+            }
+        } catch (ArithmeticException err) {
+            return NONE;
+        }
+    }
+
+    /**
+     * Builds an expression for a value the subset is known to make, only adding the parentheses that are needed.
+     */
+    private String build(int mask, long value) {
+        if (Integer.bitCount(mask) == 1) {
+            this.precedence = NUMBER;
+            return Integer.toString(this.hand[Integer.numberOfTrailingZeros(mask)]);
+        }
+        //Stored subsets do not remember how each value was made, and larger ones are not stored at all,
+        //so both are searched for the same way.
+        long[] split = new long[4];
+        if (!this.findSplit(mask, value, split)) {
+            throw new IllegalStateException("The value can not be made from the subset");
+        }
+        int small = (int) split[0];
+        int operation = (int) split[2];
+        String a = this.build(small, split[1]);
+        int aPrecedence = this.precedence;
+        String b = this.build(mask ^ small, split[3]);
+        int bPrecedence = this.precedence;
+
+        switch (operation) {
+            case ADD:
+                return this.render(a, aPrecedence, '+', b, bPrecedence);
+            case MULTIPLY:
+                return this.render(a, aPrecedence, '*', b, bPrecedence);
+            case SUBTRACT:
+                return this.render(a, aPrecedence, '-', b, bPrecedence);
+            case SUBTRACT_REVERSED:
+                return this.render(b, bPrecedence, '-', a, aPrecedence);
+            case DIVIDE:
+                return this.render(a, aPrecedence, '/', b, bPrecedence);
+            default:
+                return this.render(b, bPrecedence, '/', a, aPrecedence);
+        }
+    }//End build()
+
+    private String render(String left, int leftPrecedence, char operator, String right, int rightPrecedence) {
+        int precedence = (operator == '+' || operator == '-') ? ADDITIVE : MULTIPLICATIVE;
+        StringBuilder builder = new StringBuilder(left.length() + right.length() + 5);
+        if (leftPrecedence < precedence) {
+            builder.append('(').append(left).append(')');
+        } else {
+            builder.append(left);
+        }
+        builder.append(operator);
+        if (rightPrecedence < precedence
+                || (rightPrecedence == precedence && (operator == '-' || operator == '/'))) {
+            builder.append('(').append(right).append(')');
+        } else {
+            builder.append(right);
+        }
+        this.precedence = precedence;
+        return builder.toString();
+    }
+
+    /**
+     *     java twentyfourpoints.SubsetSolver target value value ...
+     */
+    public static void main(String[] args) {
+        if (args.length < 2) {
+            System.err.println("Usage: java twentyfourpoints.SubsetSolver <target> <value> [value ...]");
+            System.exit(2);
+        }
+        int target = Integer.parseInt(args[0]);
+        int[] hand = new int[args.length - 1];
+        for (int i = 0; i < hand.length; ++i) {
+            hand[i] = Integer.parseInt(args[i + 1]);
+        }
+        long start = System.nanoTime();
+        SubsetSolver solver = new SubsetSolver(hand);
+        String solution = solver.findSolution(target);
+        System.out.printf("%s (%.1f ms, %d values stored)%n", solution == null ? "No solution" : solution,
+                (System.nanoTime() - start) / 1e6, solver.getStoredValueCount());
+    }
+}
@@ -0,0 +1,325 @@
+package twentyfourpoints;
+
+/**
+ * Reads an expression a single time, doing every check the GUI makes along the way: each character is
+ * checked to be a digit, operator or parenthesis, numbers of any length are read and crossed off against
+ * the values of the hand using a count of each value (no sorting), and the infix to postfix algorithm
+ * writes the program straight into opcode and operand arrays that can be evaluated without copying.
+ * The order of the tokens is also checked, so a missing operand or an unmatched parenthesis is reported
+ * where it happens instead of as a failure while evaluating.
+ *
+ * When a check fails the Verdict says which one and getErrorPosition() gives the index of the character
+ * where the problem was found, or -1 if it concerns the whole expression (such as too few numbers).
+ * Checks are reported in the same order the GUI makes them: characters, then how many numbers were used,
+ * then whether they can be read, then whether they match the cards, then the order of the tokens.
+ * Given Limits, a Tokenizer rejects an expression as soon as it breaks one, with the verdict LIMIT_EXCEEDED,
+ * before any of the other checks that come later in the text.
+ * A Tokenizer reuses its buffers between calls and should not be shared between threads.
+ * @version 2.0
+ */
+public class Tokenizer {
+
+    private final CharStack operators = new CharStack(); //Operators and '(' waiting to be added to the program
+    private final IntStack openPositions = new IntStack(); //Positions of the '(' on the operator stack
+    private final int[] counts = new int[Rules.HIGHEST_VALUE + 1]; //Cards of each value not yet used
+
+    private byte[] opcodes = new byte[32];
+    private int[] operands = new int[32];
+    private int length; //Number of opcodes in the program
+    private int maxDepth;
+
+    private int numberCount; //Numbers found in the expression
+    private int errorPosition;
+    private Limits limits; //Null if expressions are not limited
+    private Limits.Limit exceeded; //The limit broken by the last expression, or null
+
+    /**
+     * Create a tokenizer that does not limit expressions until setLimits() is called.
+     */
+    public Tokenizer() {
+    }
+
+    /**
+     * Checks and parses an expression.
+     * @param expression The expression to read.
+     * @param hand The values of the cards that must be used, or null to skip checking the numbers.
+     * @return Null if the expression passed every check and can be evaluated, otherwise the check that failed.
+     */
+    public Verdict parse(CharSequence expression, int[] hand) {
+        long start = Metrics.start();
+        try {
+            return this.read(expression, hand);
+        } finally {
+            Metrics.stop(Metrics.Timer.PARSE, start);
+        }
+    }
+
+    /**
+     * @param limits The limits expressions are held to, or null for none.
+     */
+    public void setLimits(Limits limits) {
+        this.limits = limits;
+    }
+
+    public Limits getLimits() {
+        return this.limits;
+    }
+
+    private Verdict read(CharSequence expression, int[] hand) {
+        this.reset(hand);
+        int maxDigits = this.limits == null ? Integer.MAX_VALUE : this.limits.getMaxDigits();
+        int maxDepth = this.limits == null ? Integer.MAX_VALUE : this.limits.getMaxDepth();
+        int maxOperators = this.limits == null ? Integer.MAX_VALUE : this.limits.getMaxOperators();
+        int openCount = 0;      //Parentheses open at this point
+        int operatorCount = 0;
+
+        int numberError = -1;   //Position of the first number too large to read
+        int mismatch = -1;      //Position of the first number that is not one of the cards
+        int orderError = -1;    //Position of the first token in the wrong place
+        boolean expectOperand = true;
+        int depth = 0;          //Values that will be on the stack at this point of the program
+
+        int index = 0;
+        int end = expression.length();
+        if (this.limits != null && end > this.limits.getMaxLength()) {
+            return this.reject(Limits.Limit.LENGTH, this.limits.getMaxLength());
+        }
+        while (index < end) {
+            char token = expression.charAt(index);
+            if (Character.isDigit(token)) {
+                int start = index;
+                long number = 0;
+                while (index < end && Character.isDigit(expression.charAt(index))) {
+                    if (index - start == maxDigits) {
+                        return this.reject(Limits.Limit.DIGITS, index);
+                    }
+                    if (number <= Integer.MAX_VALUE) {
+                        number = number * 10 + Character.digit(expression.charAt(index), 10);
+                    }
+                    ++index;
+                }
+                ++this.numberCount;
+                if (number > Integer.MAX_VALUE) {
+                    numberError = numberError < 0 ? start : numberError;
+                } else if (hand != null && !this.useCard((int) number)) {
+                    mismatch = mismatch < 0 ? start : mismatch;
+                }
+                if (!expectOperand) {
+                    orderError = orderError < 0 ? start : orderError;
+                }
+                this.emit(CompiledExpression.PUSH, (int) number);
+                this.maxDepth = Math.max(this.maxDepth, ++depth);
+                expectOperand = false;
+                continue;
+            }
+
+            switch (token) {
+                case '(':
+                    if (++openCount > maxDepth) {
+                        return this.reject(Limits.Limit.DEPTH, index);
+                    }
+                    if (!expectOperand) {
+                        orderError = orderError < 0 ? index : orderError;
+                    }
+                    this.operators.push(token);
+                    this.openPositions.push(index);
+                    break;
+                case ')':
+                    if (expectOperand) {
+                        orderError = orderError < 0 ? index : orderError;
+                    }
+                    //Pop operators until the matching '('
+                    while (!this.operators.isEmpty() && this.operators.peek() != '(') {
+                        this.emit(opcodeOf(this.operators.pop()), 0);
+                        --depth;
+                    }
+                    if (this.operators.isEmpty()) {
+                        orderError = orderError < 0 ? index : orderError;
+                    } else {
+                        this.operators.pop();
+                        this.openPositions.pop();
+                        --openCount;
+                    }
+                    expectOperand = false;
+                    break;
+                case '+':
+                case '-':
+                case '*':
+                case '/':
+                    if (++operatorCount > maxOperators) {
+                        return this.reject(Limits.Limit.OPERATORS, index);
+                    }
+                    if (expectOperand) {
+                        orderError = orderError < 0 ? index : orderError;
+                    }
+                    //Pop operators of equal or greater precedence, stopping at a '('
+                    while (!this.operators.isEmpty() && this.operators.peek() != '('
+                            && precedence(this.operators.peek()) >= precedence(token)) {
+                        this.emit(opcodeOf(this.operators.pop()), 0);
+                        --depth;
+                    }
+                    this.operators.push(token);
+                    expectOperand = true;
+                    break;
+                default:
+                    this.errorPosition = index;
+                    return Verdict.INVALID_CHARACTER;
+            }
+            ++index;
+        }//End while loop
+
+        if (expectOperand) {
+            orderError = orderError < 0 ? end : orderError;
+        }
+        //Append the operators left on the stack, any '(' left was never closed
+        while (!this.operators.isEmpty()) {
+            char operator = this.operators.pop();
+            if (operator == '(') {
+                int open = this.openPositions.pop();
+                orderError = orderError < 0 ? open : Math.min(orderError, open);
+            } else {
+                this.emit(opcodeOf(operator), 0);
+            }
+        }
+
+        if (hand != null && this.numberCount < hand.length) {
+            this.errorPosition = -1;
+            return Verdict.TOO_FEW_NUMBERS;
+        }
+        if (numberError >= 0) {
+            this.errorPosition = numberError;
+            return Verdict.NUMBER_ERROR;
+        }
+        if (hand != null && (mismatch >= 0 || this.numberCount != hand.length)) {
+            this.errorPosition = mismatch;
+            return Verdict.NUMBERS_MISMATCH;
+        }
+        if (orderError >= 0) {
+            this.errorPosition = orderError;
+            return Verdict.OPERATOR_ORDER;
+        }
+        return null;
+    }//End read()
+
+    /**
+     * Stops reading an expression that broke one of the limits.
+     */
+    private Verdict reject(Limits.Limit limit, int position) {
+        Metrics.error(Metrics.ErrorType.LIMIT);
+        this.exceeded = limit;
+        this.errorPosition = position;
+        return Verdict.LIMIT_EXCEEDED;
+    }
+
+    /**
+     * Clears the results of the last expression and counts the cards of each value in the hand.
+     */
+    private void reset(int[] hand) {
+        this.operators.reset();
+        this.openPositions.reset();
+        this.length = 0;
+        this.maxDepth = 0;
+        this.numberCount = 0;
+        this.errorPosition = -1;
+        this.exceeded = null;
+        if (hand != null) {
+            for (int value = 0; value < this.counts.length; ++value) {
+                this.counts[value] = 0;
+            }
+            for (int value : hand) {
+                if (value >= 1 && value <= Rules.HIGHEST_VALUE) {
+                    ++this.counts[value];
+                }
+            }
+        }
+    }
+
+    /**
+     * Crosses a number off the cards not yet used.
+     * @return True if there was an unused card with this value, otherwise false.
+     */
+    private boolean useCard(int number) {
+        if (number < 1 || number > Rules.HIGHEST_VALUE || this.counts[number] == 0) {
+            return false;
+        }
+        --this.counts[number];
+        return true;
+    }
+
+    private void emit(byte opcode, int operand) {
+        if (this.length == this.opcodes.length) {
+            byte[] largerOpcodes = new byte[this.length * 2];
+            int[] largerOperands = new int[this.length * 2];
+            System.arraycopy(this.opcodes, 0, largerOpcodes, 0, this.length);
+            System.arraycopy(this.operands, 0, largerOperands, 0, this.length);
+            this.opcodes = largerOpcodes;
+            this.operands = largerOperands;
+        }
+        this.opcodes[this.length] = opcode;
+        this.operands[this.length++] = operand;
+    }
+
+    private static int precedence(char operator) {
+        return (operator == '*' || operator == '/') ? 2 : 1;
+    }
+
+    private static byte opcodeOf(char operator) {
+        switch (operator) {
+            case '+':
+                return CompiledExpression.ADD;
+            case '-':
+                return CompiledExpression.SUBTRACT;
+            case '*':
+                return CompiledExpression.MULTIPLY;
+            default:
+                return CompiledExpression.DIVIDE;
+        }
+    }
+
+    /**
+     * @return The position of the character where the last check failed, or -1 if it concerns the whole expression.
+     */
+    public int getErrorPosition() {
+        return this.errorPosition;
+    }
+
+    /**
+     * @return The limit the last expression broke, or null if it did not break one.
+     */
+    public Limits.Limit getExceededLimit() {
+        return this.exceeded;
+    }
+
+    /**
+     * @return The number of numbers read from the last expression.
+     */
+    public int getNumberCount() {
+        return this.numberCount;
+    }
+
+    /**
+     * Evaluates the last expression that passed every check, using whole number arithmetic.
+     * @param stack The stack to use, reset before it is used.
+     */
+    public int evaluate(IntStack stack) throws ArithmeticException {
+        stack.ensureCapacity(this.maxDepth);
+        return CompiledExpression.evaluate(this.opcodes, this.operands, this.length, stack);
+    }
+
+    /**
+     * Evaluates the last expression that passed every check, using exact fractions.
+     * @param stack The stack to use, reset before it is used.
+     * @return The result as a packed Rational.
+     */
+    public long evaluateRational(RationalStack stack) throws ArithmeticException {
+        stack.ensureCapacity(this.maxDepth);
+        return CompiledExpression.evaluateRational(this.opcodes, this.operands, this.length, stack);
+    }
+
+    /**
+     * @return A copy of the last program parsed that can be kept and evaluated any number of times.
+     */
+    public CompiledExpression toProgram() {
+        return CompiledExpression.copyOf(this.opcodes, this.operands, this.length);
+    }
+}
@@ -0,0 +1,315 @@
+package twentyfourpoints;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs timed rounds in which every player answers the same hand, checking answers on a pool of worker threads
+ * and ranking players on a Leaderboard by hands solved and time to a correct answer.
+ *
+ * startRound() deals a hand and tells every Listener about it. Players answer with submit() from any thread:
+ * the time is taken as the answer arrives, so time spent waiting for a worker never counts against the player,
+ * and the answer is checked on a worker by that worker's own Verifier. Only a player's first correct answer to
+ * a round is scored. Answers that arrive after the round's time is up, or that answer an earlier round, are
+ * given the verdict TOO_LATE without being checked.
+ * Both the overall leaderboard and each round's own ranking can be read at any time while answers are scored.
+ *
+ *     java twentyfourpoints.Tournament [players] [rounds] [threads] [round seconds]
+ * runs a tournament of simulated players answering as fast as they can and prints the leaderboard.
+ * @version 2.0
+ */
+public class Tournament implements Closeable {
+
+    /**
+     * Told about every round as it starts, for sending the hand to the players.
+     */
+    public interface Listener {
+        void roundStarted(Round round);
+    }
+
+    /**
+     * One hand and the time allowed to answer it.
+     */
+    public static final class Round {
+        private final int number;
+        private final int[] cards;
+        private final int[] values;
+        private final long start;    //System.nanoTime() when the hand was dealt
+        private final long deadline; //System.nanoTime() when answers stop being accepted
+        private final Set<Integer> solvedBy = ConcurrentHashMap.newKeySet();
+        private final Leaderboard results = new Leaderboard();
+
+        Round(int number, int[] cards, long start, long deadline) {
+            this.number = number;
+            this.cards = cards;
+            this.values = new int[cards.length];
+            Dealer.values(cards, this.values);
+            this.start = start;
+            this.deadline = deadline;
+        }
+
+        /**
+         * @return The number of the round, counting from 1.
+         */
+        public int getNumber() {
+            return this.number;
+        }
+
+        /**
+         * @return The card numbers of the hand, from 1 to 52.
+         */
+        public int[] getCards() {
+            return this.cards.clone();
+        }
+
+        public long getStart() {
+            return this.start;
+        }
+
+        public long getDeadline() {
+            return this.deadline;
+        }
+
+        /**
+         * @return The players who solved the hand, fastest first.
+         */
+        public Leaderboard getResults() {
+            return this.results;
+        }
+    }//End class Round
+
+    private final ExecutorService workers;
+    private final ThreadLocal<Verifier> verifiers;
+    private final Dealer dealer;
+    private final Dealer.HandFilter filter; //Null to deal any hand
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final CopyOnWriteArrayList<String> names = new CopyOnWriteArrayList<>();
+    private final Leaderboard leaderboard = new Leaderboard();
+    private final AtomicLong answers = new AtomicLong();
+    private volatile Round round; //Null until the first round starts
+    private volatile SubmissionLog log; //Null if answers are not kept
+
+    /**
+     * @param threads The number of worker threads checking answers.
+     * @param dealer Deals the hand of each round.
+     * @param filter Decides which hands may be dealt, or null to deal any hand.
+     */
+    public Tournament(int threads, Dealer dealer, Dealer.HandFilter filter) {
+        if (threads < 1) {
+            throw new IllegalArgumentException("There must be at least one thread");
+        }
+        this.dealer = dealer;
+        this.filter = filter;
+        this.workers = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "tournament");
+            thread.setDaemon(true);
+            return thread;
+        });
+        //Answers come from any player, so hold them to the same limits as the game server
+        this.verifiers = ThreadLocal.withInitial(() -> {
+            Verifier verifier = new Verifier();
+            verifier.setLimits(Limits.DEFAULT);
+            return verifier;
+        });
+    }
+
+    public void addListener(Listener listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Keeps every answer checked from now on in a log. The tournament does not commit or close the log.
+     * @param log The log to append to, or null to stop keeping answers.
+     */
+    public void setLog(SubmissionLog log) {
+        this.log = log;
+    }
+
+    /**
+     * Adds a player to the tournament and the leaderboard.
+     * @return The player's number, used to submit answers.
+     */
+    public synchronized int join(String name) {
+        this.names.add(name);
+        int player = this.names.size() - 1;
+        this.leaderboard.join(player);
+        return player;
+    }
+
+    public String getName(int player) {
+        return this.names.get(player);
+    }
+
+    public int getPlayerCount() {
+        return this.names.size();
+    }
+
+    /**
+     * Deals a new hand and tells every listener, on this thread. Answers to the previous round are no longer accepted.
+     * @param millis The time allowed to answer.
+     * @return The new round.
+     */
+    public synchronized Round startRound(long millis) {
+        int[] cards = new int[Rules.HAND_SIZE];
+        if (this.filter != null) {
+            this.dealer.deal(cards, this.filter);
+        } else {
+            this.dealer.deal(cards);
+        }
+        long start = System.nanoTime();
+        Round previous = this.round;
+        Round next = new Round(previous == null ? 1 : previous.number + 1, cards, start, start + millis * 1_000_000);
+        this.round = next;
+        for (Listener listener : this.listeners) {
+            listener.roundStarted(next);
+        }
+        return next;
+    }
+
+    /**
+     * @return The round being played, or null before the first round.
+     */
+    public Round getRound() {
+        return this.round;
+    }
+
+    /**
+     * Accepts an answer and checks it on a worker thread.
+     * @param player The player's number from join().
+     * @param roundNumber The round being answered.
+     * @param expression The answer, copied before this returns.
+     * @return The verdict, once the answer has been checked and scored.
+     */
+    public CompletableFuture<Verdict> submit(int player, int roundNumber, CharSequence expression) {
+        long received = System.nanoTime();
+        Round current = this.round;
+        if (player < 0 || player >= this.names.size()) {
+            throw new IllegalArgumentException("Unknown player " + player);
+        }
+        this.answers.incrementAndGet();
+        if (current == null || current.number != roundNumber || received - current.deadline > 0) {
+            return CompletableFuture.completedFuture(Verdict.TOO_LATE);
+        }
+        String answer = expression.toString();
+        return CompletableFuture.supplyAsync(() -> this.check(current, player, answer, received), this.workers);
+    }
+
+    /**
+     * Checks an answer on a worker and scores it if it is the player's first correct answer to the round.
+     */
+    private Verdict check(Round round, int player, String answer, long received) {
+        Verifier verifier = this.verifiers.get();
+        Verdict verdict = verifier.verify(round.values, answer);
+        if (verdict == Verdict.CORRECT && round.solvedBy.add(player)) {
+            long time = received - round.start;
+            round.results.recordSolve(player, time);
+            this.leaderboard.recordSolve(player, time);
+        }
+        SubmissionLog log = this.log;
+        if (log != null) {
+            try {
+                log.append(round.values, verifier.getTarget(), answer, verdict);
+            } catch (IOException err) {
+                //The player still gets the verdict when the log can not be written
+                System.err.println("Could not log an answer: " + err.getMessage());
+            }
+        }
+        return verdict;
+    }
+
+    /**
+     * @return The overall ranking of every player.
+     */
+    public Leaderboard getLeaderboard() {
+        return this.leaderboard;
+    }
+
+    /**
+     * @return The number of answers submitted.
+     */
+    public long getAnswerCount() {
+        return this.answers.get();
+    }
+
+    /**
+     * Stops the worker threads. Answers not yet checked are dropped.
+     */
+    @Override
+    public void close() {
+        this.workers.shutdownNow();
+    }
+
+    public static void main(String[] args) throws Exception {
+        int players = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+        long roundMillis = args.length > 3 ? Long.parseLong(args[3]) * 1000 : 5000;
+        Dealer.HandFilter filter;
+        try {
+            filter = Dealer.solvableOnly(SolvabilityTable.load(SolvabilityTable.DEFAULT_PATH));
+        } catch (IOException err) {
+            filter = hand -> !new Solver().solve(hand).isEmpty();
+        }
+
+        SplittableRandom random = new SplittableRandom(24);
+        Solver solver = new Solver();
+        long reads = 0;
+        try (Tournament tournament = new Tournament(threads, new Dealer(24), filter)) {
+            for (int i = 0; i < players; ++i) {
+                tournament.join("player " + (i + 1));
+            }
+            long start = System.nanoTime();
+            for (int r = 0; r < rounds; ++r) {
+                Round round = tournament.startRound(roundMillis);
+                int[] values = round.values;
+                List<String> solutions = solver.solve(values);
+                //Every player answers, some get it wrong first and some never get it right.
+                //The leaderboard is read all the while, as a live display would.
+                List<CompletableFuture<Verdict>> verdicts = new ArrayList<>();
+                CountDownLatch answered = new CountDownLatch(1);
+                for (int player = 0; player < players; ++player) {
+                    if (random.nextInt(4) == 0) {
+                        verdicts.add(tournament.submit(player, round.getNumber(), values[0] + "+" + values[1]));
+                    }
+                    if (random.nextInt(10) != 0) {
+                        String answer = solutions.get(random.nextInt(solutions.size()));
+                        verdicts.add(tournament.submit(player, round.getNumber(), answer));
+                    }
+                    if (player % 64 == 0) {
+                        tournament.getLeaderboard().top(10);
+                        ++reads;
+                    }
+                }
+                CompletableFuture.allOf(verdicts.toArray(new CompletableFuture<?>[0])).thenRun(answered::countDown);
+                while (!answered.await(1, TimeUnit.MILLISECONDS)) {
+                    tournament.getLeaderboard().top(10);
+                    ++reads;
+                }
+                System.out.printf("Round %d: %s, solved by %d players%n", round.getNumber(),
+                        Arrays.toString(values), round.getResults().size());
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            System.out.printf("%d answers in %.2f s (%.0f answers/s), %d leaderboard reads while scoring%n",
+                    tournament.getAnswerCount(), seconds, tournament.getAnswerCount() / seconds, reads);
+            System.out.println("Leaderboard:");
+            int place = 0;
+            for (Leaderboard.Standing standing : tournament.getLeaderboard().top(10)) {
+                System.out.printf("%3d. %-12s %2d solved in %.3f s%n", ++place, tournament.getName(standing.getPlayer()),
+                        standing.getSolved(), standing.getTime() / 1e9);
+            }
+        }
+    }//End main()
+}
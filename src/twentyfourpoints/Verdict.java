@@ -0,0 +1,64 @@
+package twentyfourpoints;
+
+/**
+ * The outcome of checking an expression against a hand, along with the message the GUI shows for it.
+ * @version 2.0
+ */
+public enum Verdict {
+    CORRECT("Correct!", "Correct! Your expression equals %2$d.", false),
+    INCORRECT("Incorrect", "Sorry, your expression does not evaluate to %2$d.", false),
+    INVALID_CHARACTER("Error", "Only parentheses, numbers, +, -, *, and / operators can be entered."
+            + " Please make sure there are no spaces.", true),
+    TOO_FEW_NUMBERS("Invalid Expression", "%1$s numbers must be used", true),
+    NUMBERS_MISMATCH("Error", "Numbers do not match with values of cards shown", true),
+    NUMBER_ERROR("Error", "Error with processing of numbers.", true),
+    OPERATOR_ORDER("Error", "Error with order of operators/operands", true),
+    UNKNOWN_OPERATOR("Error", "Unknown operator found", true),
+    ARITHMETIC_ERROR("Error", "Division by zero or a number too large was found", true),
+    MALFORMED_RECORD("Error", "The record is not in the form hand,expression", true),
+    LIMIT_EXCEEDED("Error", "The expression is too long, too deeply nested, or has too many digits or operators", true),
+    TOO_LATE("Too late", "The round is over, answers are no longer accepted.", true);
+
+    private static final String[] COUNTS = {"No", "One", "Two", "Three", "Four", "Five", "Six", "Seven", "Eight"};
+
+    private final String title;
+    private final String message;
+    private final boolean error;
+
+    Verdict(String title, String message, boolean error) {
+        this.title = title;
+        this.message = message;
+        this.error = error;
+    }
+
+    /**
+     * @return The title of the alert shown for this verdict.
+     */
+    public String getTitle() {
+        return this.title;
+    }
+
+    /**
+     * @return The message shown to the player for this verdict, for a hand of four cards and a target of 24.
+     */
+    public String getMessage() {
+        return this.getMessage(Rules.HAND_SIZE, Rules.TARGET);
+    }
+
+    /**
+     * @param cards The number of cards in the hand.
+     * @param target The value the expression must evaluate to.
+     * @return The message shown to the player for this verdict.
+     */
+    public String getMessage(int cards, int target) {
+        String count = cards >= 0 && cards < COUNTS.length ? COUNTS[cards] : Integer.toString(cards);
+        return String.format(this.message, count, target);
+    }
+
+    /**
+     * @return True if the expression could not be checked, false if it was evaluated.
+     */
+    public boolean isError() {
+        return this.error;
+    }
+}
@@ -0,0 +1,188 @@
+package twentyfourpoints;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A cache of verdicts shared between threads, so the same answer to the same hand is only checked once.
+ * Keys are built from the sorted values of the hand, the target and the text of the expression exactly as it
+ * was entered. The text is deliberately not normalized: every character the tokenizer reads can change the
+ * verdict (a space is an invalid character, a leading zero can make a number too large) and the error position
+ * stored with it counts characters of the text as entered, so two texts can only share a verdict if they are
+ * the same. Answers that are repeated, such as (1+2+3)*4, are repeated character for character.
+ *
+ * The cache is split into segments, each a least recently used map guarded by its own lock, so threads
+ * working on different keys rarely wait on each other. Instead of a number of entries the cache is limited
+ * by an estimate of the memory its entries use, so very long expressions can not grow it without limit.
+ * Hits, misses and evictions are counted with LongAdders, which are cheap to update from many threads.
+ * @version 2.0
+ */
+public class VerdictCache {
+
+    private static final int SEGMENTS = 16;
+    //Rough size of a map entry, its key String and the boxed value, not counting the characters of the key
+    private static final int ENTRY_OVERHEAD = 120;
+
+    /**
+     * One part of the cache, holding the keys whose hash falls into it.
+     */
+    private static class Segment {
+        private final LinkedHashMap<String, Integer> entries = new LinkedHashMap<>(64, 0.75f, true);
+        private long weight; //Estimated bytes used by the entries
+    }
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final long segmentLimit;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * @param maxBytes The most memory, in bytes, the entries of the cache should take up.
+     */
+    public VerdictCache(long maxBytes) {
+        if (maxBytes < SEGMENTS * ENTRY_OVERHEAD) {
+            throw new IllegalArgumentException("The cache must be allowed at least " + SEGMENTS * ENTRY_OVERHEAD + " bytes");
+        }
+        this.segmentLimit = maxBytes / SEGMENTS;
+        for (int i = 0; i < SEGMENTS; ++i) {
+            this.segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Builds the key for a hand and expression. The values of the hand are sorted so the order
+     * the cards were dealt in does not matter.
+     * @param hand The values of the cards.
+     * @param expression The expression entered.
+     * @return The key used to store the verdict.
+     */
+    public static String key(int[] hand, CharSequence expression) {
+        return key(hand, Rules.TARGET, expression);
+    }
+
+    /**
+     * Builds the key for a hand, target and expression, so verifiers with different targets can share the cache.
+     * @param hand The values of the cards.
+     * @param target The value the expression must evaluate to.
+     * @param expression The expression entered.
+     * @return The key used to store the verdict.
+     */
+    public static String key(int[] hand, int target, CharSequence expression) {
+        StringBuilder key = new StringBuilder(hand.length + 12 + expression.length());
+        //Insertion sort the values straight into the key, each value as a single char.
+        for (int value : hand) {
+            int position = key.length();
+            while (position > 0 && key.charAt(position - 1) > (char) value) {
+                --position;
+            }
+            key.insert(position, (char) value);
+        }
+        //The values are below '0' so the digits of the target can not be mistaken for one.
+        return key.append(target).append(',').append(expression).toString();
+    }
+
+    private static long weigh(String key) {
+        return ENTRY_OVERHEAD + 2L * key.length();
+    }
+
+    private Segment segmentFor(String key) {
+        int hash = key.hashCode();
+        return this.segments[(hash ^ (hash >>> 16)) & (SEGMENTS - 1)];
+    }
+
+    /**
+     * @param key A key built with key().
+     * @return The value stored for the key, or -1 if it is not in the cache.
+     */
+    public int get(String key) {
+        Segment segment = this.segmentFor(key);
+        Integer value;
+        synchronized (segment) {
+            value = segment.entries.get(key);
+        }
+        if (value == null) {
+            this.misses.increment();
+            return -1;
+        }
+        this.hits.increment();
+        return value;
+    }
+
+    /**
+     * Stores a value, evicting the least recently used entries of its segment until it fits.
+     * Entries too large to ever fit are not stored.
+     * @param key A key built with key().
+     * @param value The value to store, must not be negative.
+     */
+    public void put(String key, int value) {
+        long weight = weigh(key);
+        if (weight > this.segmentLimit) {
+            return;
+        }
+        Segment segment = this.segmentFor(key);
+        int evicted = 0;
+        synchronized (segment) {
+            Integer previous = segment.entries.put(key, value);
+            if (previous == null) {
+                segment.weight += weight;
+            }
+            Iterator<Map.Entry<String, Integer>> eldest = segment.entries.entrySet().iterator();
+            while (segment.weight > this.segmentLimit && eldest.hasNext()) {
+                Map.Entry<String, Integer> entry = eldest.next();
+                segment.weight -= weigh(entry.getKey());
+                eldest.remove();
+                ++evicted;
+            }
+        }
+        if (evicted > 0) {
+            this.evictions.add(evicted);
+        }
+    }
+
+    public long getHits() {
+        return this.hits.sum();
+    }
+
+    public long getMisses() {
+        return this.misses.sum();
+    }
+
+    public long getEvictions() {
+        return this.evictions.sum();
+    }
+
+    /**
+     * @return The number of entries in the cache.
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : this.segments) {
+            synchronized (segment) {
+                size += segment.entries.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return The estimated memory used by the entries of the cache, in bytes.
+     */
+    public long getWeight() {
+        long weight = 0;
+        for (Segment segment : this.segments) {
+            synchronized (segment) {
+                weight += segment.weight;
+            }
+        }
+        return weight;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d entries (%d bytes), %d hits, %d misses, %d evictions",
+                this.size(), this.getWeight(), this.getHits(), this.getMisses(), this.getEvictions());
+    }
+}
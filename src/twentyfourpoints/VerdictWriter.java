@@ -0,0 +1,79 @@
+package twentyfourpoints;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes verdicts to a file, one per line, through a fixed size buffer that is written out whenever it fills up.
+ * Also counts how many of each verdict have been written.
+ * @version 2.0
+ */
+public class VerdictWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte[][] LINES = new byte[Verdict.values().length][];
+
+    static {
+        for (Verdict verdict : Verdict.values()) {
+            LINES[verdict.ordinal()] = (verdict.name() + "\n").getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final long[] counts = new long[Verdict.values().length];
+
+    /**
+     * Opens the file for writing, replacing anything already in it.
+     * @param path The file verdicts are written to.
+     */
+    public VerdictWriter(Path path) throws IOException {
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * @param verdict The verdict to add as the next line of the file.
+     */
+    public void write(Verdict verdict) throws IOException {
+        byte[] line = LINES[verdict.ordinal()];
+        if (this.buffer.remaining() < line.length) {
+            this.flush();
+        }
+        this.buffer.put(line);
+        ++this.counts[verdict.ordinal()];
+    }
+
+    /**
+     * Writes out everything held in the buffer.
+     */
+    public void flush() throws IOException {
+        this.buffer.flip();
+        while (this.buffer.hasRemaining()) {
+            this.channel.write(this.buffer);
+        }
+        this.buffer.clear();
+    }
+
+    /**
+     * @param verdict The verdict being counted.
+     * @return The number of times the verdict has been written.
+     */
+    public long getCount(Verdict verdict) {
+        return this.counts[verdict.ordinal()];
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            this.flush();
+        } finally {
+            this.channel.close();
+        }
+    }
+}
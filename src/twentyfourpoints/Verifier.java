@@ -0,0 +1,129 @@
+package twentyfourpoints;
+
+/**
+ * Checks a player's expression against the hand dealt, applying the same rules as the GUI does when
+ * Calculate is pressed: only digits, operators and parentheses may be used, the numbers used must be the
+ * values of the cards, and the expression must evaluate to exactly 24. Hands of any size and other targets
+ * can be checked the same way by giving the target when the Verifier is created.
+ * The expression is read once by a Tokenizer, so when a check fails getErrorPosition() tells where.
+ * A VerdictCache can be placed in front of the checks so answers that are submitted again are not re-checked.
+ * A Verifier reuses its tokenizer and evaluation stack between calls and should not be shared between threads,
+ * although any number of Verifiers can share the same cache.
+ * @version 2.0
+ */
+public class Verifier {
+
+    private final Tokenizer tokenizer = new Tokenizer();
+    private final RationalStack stack = new RationalStack();
+    private final VerdictCache cache; //Null if verdicts are not cached
+    private final int target;
+    private int errorPosition = -1;
+
+    private static final Verdict[] VERDICTS = Verdict.values();
+    private static final int MAX_CACHED_POSITION = 0x7FFFFF; //Error position plus one must fit in 23 bits
+
+    /**
+     * Create a verifier that checks every expression.
+     */
+    public Verifier() {
+        this(null);
+    }
+
+    /**
+     * Create a verifier that looks in the cache before checking an expression.
+     * @param cache The cache of earlier verdicts, or null to check every expression.
+     */
+    public Verifier(VerdictCache cache) {
+        this(cache, Rules.TARGET);
+    }
+
+    /**
+     * Create a verifier for a target other than 24.
+     * @param cache The cache of earlier verdicts, or null to check every expression.
+     * @param target The value expressions must evaluate to.
+     */
+    public Verifier(VerdictCache cache, int target) {
+        this.cache = cache;
+        this.target = target;
+    }
+
+    /**
+     * Holds expressions to limits on their size, rejecting them with LIMIT_EXCEEDED as soon as one is broken.
+     * Verifiers that share a cache should use the same limits.
+     * @param limits The limits, or null for none.
+     */
+    public void setLimits(Limits limits) {
+        this.tokenizer.setLimits(limits);
+    }
+
+    /**
+     * @return The value expressions must evaluate to.
+     */
+    public int getTarget() {
+        return this.target;
+    }
+
+    /**
+     * @param hand The values of the cards dealt, any number of them.
+     * @param expression The expression the player entered.
+     * @return The outcome of checking the expression.
+     */
+    public Verdict verify(int[] hand, CharSequence expression) {
+        long start = Metrics.start();
+        Verdict verdict = this.lookup(hand, expression);
+        Metrics.stop(Metrics.Timer.VERIFY, start);
+        Metrics.verdict(verdict);
+        return verdict;
+    }
+
+    /**
+     * Finds the verdict in the cache, or checks the expression if it is not there.
+     */
+    private Verdict lookup(int[] hand, CharSequence expression) {
+        Limits limits = this.tokenizer.getLimits();
+        if (this.cache == null || (limits != null && expression.length() > limits.getMaxLength())) {
+            //An expression over the length limit is rejected before it is read, so it is not worth
+            //copying it into a key, which would cost as much as the expression is long.
+            return this.check(hand, expression);
+        }
+        String key = VerdictCache.key(hand, this.target, expression);
+        int cached = this.cache.get(key);
+        if (cached >= 0) {
+            //The verdict is stored in the low byte and the error position, plus one, above it.
+            this.errorPosition = (cached >>> 8) - 1;
+            return VERDICTS[cached & 0xFF];
+        }
+        Verdict verdict = this.check(hand, expression);
+        if (this.errorPosition < MAX_CACHED_POSITION) { //Positions further in do not fit above the verdict
+            this.cache.put(key, verdict.ordinal() | ((this.errorPosition + 1) << 8));
+        }
+        return verdict;
+    }
+
+    /**
+     * Runs every check on the expression.
+     */
+    private Verdict check(int[] hand, CharSequence expression) {
+        Verdict verdict = this.tokenizer.parse(expression, hand);
+        this.errorPosition = this.tokenizer.getErrorPosition();
+        if (verdict != null) {
+            return verdict;
+        }
+
+        //Check if the expression used is equal to the target
+        try {
+            long result = this.tokenizer.evaluateRational(this.stack);
+            return result == Rational.valueOf(this.target) ? Verdict.CORRECT : Verdict.INCORRECT;
+        }
+        catch (ArithmeticException err) {
+            return Verdict.ARITHMETIC_ERROR;
+        }
+    }//End check()
+
+    /**
+     * @return The position of the character where the last check failed, or -1 if there is no single position.
+     */
+    public int getErrorPosition() {
+        return this.errorPosition;
+    }
+}